@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubComments;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubIssues;
+
+import com.google.gson.Gson;
+
+/**
+ * Benchmark input derived from the <code>resources/issues.json</code> sample
+ * of the tests bundle, scaled to the requested size.
+ */
+public class BenchmarkData {
+
+	private static final String ISSUES_RESOURCE = "org/eclipse/mylyn/github/tests/resources/issues.json";
+
+	private static final String[] SENTENCES = {
+			"The marshaling code fails for nested types, see #3 for details. ",
+			"Same problem as eclipse-github-plugin/org.eclipse.mylyn.github#12 but on 3.5. ",
+			"I could not reproduce this with the current build, the stack trace is attached. ",
+			"Duplicate of dgreen99#7, closing. ",
+			"Steps to reproduce: open the task editor, edit the description and submit. " };
+
+	private static GitHubIssue[] sample;
+
+	/**
+	 * @return the issues of the sample, repeated and renumbered to
+	 *         <code>count</code> issues
+	 */
+	public static GitHubIssue[] issues(int count) throws IOException {
+		GitHubIssue[] sample = sample();
+		GitHubIssue[] issues = new GitHubIssue[count];
+		for (int i = 0; i < count; i++) {
+			GitHubIssue template = sample[i % sample.length];
+			GitHubIssue issue = new GitHubIssue(Integer.toString(i + 1),
+					template.getUser(), template.getTitle(), template.getBody());
+			issue.setState(template.getState());
+			issue.setCreated_at(template.getCreated_at());
+			issue.setUpdated_at(template.getUpdated_at());
+			issue.setClosed_at(template.getClosed_at());
+			issues[i] = issue;
+		}
+		return issues;
+	}
+
+	/**
+	 * @return the comments of an issue with <code>count</code> comments
+	 */
+	public static List<GitHubComment> comments(int count) throws IOException {
+		GitHubIssue[] sample = sample();
+		List<GitHubComment> comments = new ArrayList<GitHubComment>(count);
+		for (int i = 0; i < count; i++) {
+			GitHubIssue template = sample[i % sample.length];
+			GitHubComment comment = new GitHubComment();
+			comment.setId(Integer.toString(i + 1));
+			comment.setUser(template.getUser());
+			comment.setBody(SENTENCES[i % SENTENCES.length]);
+			comment.setCreated_at(template.getCreated_at());
+			comments.add(comment);
+		}
+		return comments;
+	}
+
+	/**
+	 * @return the JSON of an issue list response with <code>count</code>
+	 *         issues
+	 */
+	public static String issuesJson(int count) throws IOException {
+		return new Gson().toJson(new GitHubIssues(issues(count)));
+	}
+
+	/**
+	 * @return the JSON of a comment list response with <code>count</code>
+	 *         comments
+	 */
+	public static String commentsJson(int count) throws IOException {
+		List<GitHubComment> comments = comments(count);
+		return new Gson().toJson(new GitHubComments(comments
+				.toArray(new GitHubComment[comments.size()])));
+	}
+
+	/**
+	 * @return issue text of at least <code>length</code> characters with
+	 *         task references every few sentences
+	 */
+	public static String text(int length) {
+		StringBuilder text = new StringBuilder(length + 128);
+		for (int i = 0; text.length() < length; i++) {
+			text.append(SENTENCES[i % SENTENCES.length]);
+			if (i % 10 == 9) {
+				text.append('\n');
+			}
+		}
+		return text.toString();
+	}
+
+	private static synchronized GitHubIssue[] sample() throws IOException {
+		if (sample == null) {
+			InputStream in = BenchmarkData.class.getClassLoader()
+					.getResourceAsStream(ISSUES_RESOURCE);
+			if (in == null) {
+				throw new IOException("Missing resource " + ISSUES_RESOURCE);
+			}
+			Reader reader = new InputStreamReader(in, "UTF-8");
+			try {
+				sample = new Gson().fromJson(reader, GitHubIssues.class)
+						.getIssues();
+			} finally {
+				reader.close();
+			}
+		}
+		return sample;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Runs the benchmarks with the allocation profiler, writes the results as
+ * JSON and compares score and allocated bytes per operation with a saved
+ * baseline.
+ * <p>
+ * Usage:
+ * <code>BenchmarkRunner [include regexp] [result file] [baseline file]</code>
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Changes above this ratio are reported as regressions
+	 */
+	private static final double TOLERANCE = 0.10;
+
+	private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+	public static void main(String[] args) throws Exception {
+		String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+		String resultFile = args.length > 1 ? args[1] : "jmh-result.json";
+		String baselineFile = args.length > 2 ? args[2] : null;
+
+		Options options = new OptionsBuilder().include(include).addProfiler(
+				GCProfiler.class).resultFormat(ResultFormatType.JSON).result(
+				resultFile).build();
+		Collection<RunResult> results = new Runner(options).run();
+
+		if (baselineFile != null) {
+			int regressions = compare(results, readBaseline(new File(
+					baselineFile)));
+			if (regressions > 0) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of benchmarks that regressed
+	 */
+	private static int compare(Collection<RunResult> results,
+			Map<String, double[]> baseline) {
+		int regressions = 0;
+		System.out.println();
+		System.out.println(String.format("%-70s %10s %10s", "Benchmark",
+				"score", "alloc"));
+		for (RunResult result : results) {
+			String key = key(result.getParams());
+			double[] expected = baseline.get(key);
+			if (expected == null) {
+				// not checked for regressions
+				System.out.println(String.format("%-70s %21s", key,
+						"no baseline"));
+				continue;
+			}
+			Result primary = result.getPrimaryResult();
+			double score = primary.getScore();
+			double allocation = allocation(result);
+			double scoreChange = change(expected[0], score);
+			double allocationChange = change(expected[1], allocation);
+			// timings are noisy, only report them when outside the error
+			boolean regressed = change(expected[0], score
+					- primary.getScoreError()) > TOLERANCE
+					|| allocationChange > TOLERANCE;
+			if (regressed) {
+				regressions++;
+			}
+			System.out.println(String.format("%-70s %+9.1f%% %+9.1f%%%s", key,
+					scoreChange * 100, allocationChange * 100,
+					regressed ? "  REGRESSION" : ""));
+		}
+		return regressions;
+	}
+
+	private static double change(double expected, double actual) {
+		if (expected <= 0 || Double.isNaN(actual)) {
+			return 0;
+		}
+		return (actual - expected) / expected;
+	}
+
+	private static double allocation(RunResult result) {
+		for (Map.Entry<String, Result> entry : result.getSecondaryResults()
+				.entrySet()) {
+			if (entry.getKey().endsWith(ALLOCATION)) {
+				return entry.getValue().getScore();
+			}
+		}
+		return Double.NaN;
+	}
+
+	private static String key(BenchmarkParams params) {
+		Map<String, String> values = new TreeMap<String, String>();
+		for (String name : params.getParamsKeys()) {
+			values.put(name, params.getParam(name));
+		}
+		return key(params.getBenchmark(), values);
+	}
+
+	private static String key(String benchmark, Map<String, String> params) {
+		String name = benchmark.substring(benchmark.lastIndexOf('.',
+				benchmark.lastIndexOf('.') - 1) + 1);
+		return params.isEmpty() ? name : name + params;
+	}
+
+	/**
+	 * Read the score and allocated bytes per operation of each benchmark from
+	 * a JMH JSON result file
+	 */
+	private static Map<String, double[]> readBaseline(File file)
+			throws IOException {
+		Map<String, double[]> baseline = new HashMap<String, double[]>();
+		Reader reader = new InputStreamReader(new FileInputStream(file),
+				"UTF-8");
+		try {
+			JsonArray runs = new JsonParser().parse(reader).getAsJsonArray();
+			for (JsonElement element : runs) {
+				JsonObject run = element.getAsJsonObject();
+				Map<String, String> params = new TreeMap<String, String>();
+				if (run.has("params")) {
+					for (Map.Entry<String, JsonElement> param : run
+							.getAsJsonObject("params").entrySet()) {
+						params.put(param.getKey(), param.getValue()
+								.getAsString());
+					}
+				}
+				double allocation = Double.NaN;
+				if (run.has("secondaryMetrics")) {
+					for (Map.Entry<String, JsonElement> metric : run
+							.getAsJsonObject("secondaryMetrics").entrySet()) {
+						if (metric.getKey().endsWith(ALLOCATION)) {
+							allocation = metric.getValue().getAsJsonObject()
+									.get("score").getAsDouble();
+						}
+					}
+				}
+				baseline.put(key(run.get("benchmark").getAsString(), params),
+						new double[] {
+								run.getAsJsonObject("primaryMetric").get(
+										"score").getAsDouble(), allocation });
+			}
+		} finally {
+			reader.close();
+		}
+		return baseline;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.text.hyperlink.IHyperlink;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.ui.internal.GitHubRepositoryConnectorUI;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Detection of task references in large issue text by
+ * {@link GitHubRepositoryConnectorUI#findHyperlinks}, for the whole text as
+ * done when rendering and at a caret position as done on hover. Cross
+ * repository references look up the repository manager, so this benchmark
+ * has to run inside a workbench.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HyperlinkBenchmark {
+
+	@Param( { "10000", "100000", "1000000" })
+	public int length;
+
+	private GitHubRepositoryConnectorUI connectorUI;
+
+	private TaskRepository repository;
+
+	private String text;
+
+	@Setup
+	public void setup() {
+		connectorUI = new GitHubRepositoryConnectorUI();
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, GitHub
+				.createGitHubUrl("eclipse-github-plugin",
+						"org.eclipse.mylyn.github"));
+		text = BenchmarkData.text(length);
+	}
+
+	@Benchmark
+	public IHyperlink[] findAll() {
+		return connectorUI.findHyperlinks(repository, text, -1, 0);
+	}
+
+	@Benchmark
+	public IHyperlink[] findAtCaret() {
+		return connectorUI.findHyperlinks(repository, text, text.length() / 2,
+				0);
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.benchmarks;
+
+import java.io.StringReader;
+
+import org.eclipse.mylyn.github.internal.GitHubCompactIssue;
+import org.eclipse.mylyn.github.internal.GitHubInterner;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubJsonDecoder;
+
+/**
+ * Retained heap of decoded issues compared to their
+ * {@link GitHubCompactIssue} form, measured as the used heap after garbage
+ * collection. Both include the title and body strings.
+ * <p>
+ * Usage: <code>IssueFootprintBenchmark [issues]</code>
+ */
+public class IssueFootprintBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		// load the classes and caches used for generating and decoding
+		GitHubJsonDecoder.decodeIssues(new StringReader(BenchmarkData
+				.issuesJson(10)));
+		long base = usedHeap();
+		String json = BenchmarkData.issuesJson(count);
+		GitHubIssue[] issues = GitHubJsonDecoder.decodeIssues(
+				new StringReader(json)).getIssues();
+		json = null;
+		long wire = usedHeap() - base;
+
+		GitHubInterner interner = new GitHubInterner();
+		GitHubCompactIssue[] compact = new GitHubCompactIssue[issues.length];
+		for (int i = 0; i < issues.length; i++) {
+			compact[i] = GitHubCompactIssue.from(issues[i], interner);
+		}
+		issues = null;
+		long compacted = usedHeap() - base;
+
+		System.out.println(String.format("%d issues", compact.length));
+		System.out.println(String.format("%-14s %12d bytes  %6d bytes/issue",
+				"GitHubIssue", wire, wire / count));
+		System.out.println(String.format("%-14s %12d bytes  %6d bytes/issue",
+				"compact", compacted, compacted / count));
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// repeat until the collector has nothing left to free
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(50);
+			long now = runtime.totalMemory() - runtime.freeMemory();
+			if (now >= used) {
+				break;
+			}
+			used = now;
+		}
+		return used;
+	}
+}
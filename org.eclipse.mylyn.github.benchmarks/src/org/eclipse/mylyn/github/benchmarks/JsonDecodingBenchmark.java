@@ -0,0 +1,87 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.mylyn.github.internal.GitHubComments;
+import org.eclipse.mylyn.github.internal.GitHubIssues;
+import org.eclipse.mylyn.github.internal.GitHubJsonDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+/**
+ * Decoding of issue and comment list responses, with Gson as done for the
+ * other API types and with the {@link GitHubJsonDecoder} used for lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms1g", "-Xmx1g" })
+public class JsonDecodingBenchmark {
+
+	@Param( { "1000", "5000", "10000", "100000" })
+	public int count;
+
+	private Gson gson;
+
+	private String issues;
+
+	private String comments;
+
+	@Setup
+	public void setup() throws IOException {
+		gson = new Gson();
+		issues = BenchmarkData.issuesJson(count);
+		comments = BenchmarkData.commentsJson(count);
+	}
+
+	@Benchmark
+	public GitHubIssues gsonIssues() {
+		return gson.fromJson(new StringReader(issues), GitHubIssues.class);
+	}
+
+	@Benchmark
+	public GitHubComments gsonComments() {
+		return gson.fromJson(new StringReader(comments), GitHubComments.class);
+	}
+
+	@Benchmark
+	public GitHubIssues decoderIssues() throws IOException {
+		return GitHubJsonDecoder.decodeIssues(new StringReader(issues));
+	}
+
+	@Benchmark
+	public GitHubComments decoderComments() throws IOException {
+		return GitHubJsonDecoder.decodeComments(new StringReader(comments));
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubTaskDataHandler;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of an issue and its comments to task data by
+ * {@link GitHubTaskDataHandler#createPartialTaskData}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskDataBenchmark {
+
+	@Param( { "0", "10", "100", "1000" })
+	public int comments;
+
+	private TaskRepository repository;
+
+	private GitHubTaskDataHandler handler;
+
+	private GitHubIssue issue;
+
+	private List<GitHubComment> issueComments;
+
+	private NullProgressMonitor monitor;
+
+	@Setup
+	public void setup() throws IOException {
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, GitHub
+				.createGitHubUrl("eclipse-github-plugin",
+						"org.eclipse.mylyn.github"));
+		handler = new GitHubTaskDataHandler(new GitHubRepositoryConnector());
+		issue = BenchmarkData.issues(1)[0];
+		issueComments = BenchmarkData.comments(comments);
+		monitor = new NullProgressMonitor();
+	}
+
+	@Benchmark
+	public TaskData createPartialTaskData() {
+		return handler.createPartialTaskData(repository, monitor,
+				"eclipse-github-plugin", "org.eclipse.mylyn.github", issue,
+				issueComments);
+	}
+}
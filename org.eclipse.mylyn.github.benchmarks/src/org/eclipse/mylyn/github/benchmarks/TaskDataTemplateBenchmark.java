@@ -0,0 +1,169 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubDateCodec;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubTaskAttributes;
+import org.eclipse.mylyn.github.internal.GitHubTaskDataHandler;
+import org.eclipse.mylyn.github.internal.GitHubTaskOperation;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Building the partial task data of a 10k issue query result, as
+ * {@link GitHubTaskDataHandler#createPartialTaskData} does from its attribute
+ * and operation templates, and as it did before by setting the meta data of
+ * each attribute. Scores and allocations are per task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskDataTemplateBenchmark {
+
+	private static final int ISSUES = 10000;
+
+	private TaskRepository repository;
+
+	private GitHubTaskDataHandler handler;
+
+	private TaskAttributeMapper mapper;
+
+	private GitHubIssue[] issues;
+
+	private NullProgressMonitor monitor;
+
+	@Setup
+	public void setup() throws IOException {
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, GitHub
+				.createGitHubUrl("eclipse-github-plugin",
+						"org.eclipse.mylyn.github"));
+		handler = new GitHubTaskDataHandler(new GitHubRepositoryConnector());
+		mapper = handler.getAttributeMapper(repository);
+		issues = BenchmarkData.issues(ISSUES);
+		monitor = new NullProgressMonitor();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ISSUES)
+	public void templates(Blackhole blackhole) {
+		for (GitHubIssue issue : issues) {
+			blackhole.consume(handler.createPartialTaskData(repository,
+					monitor, "eclipse-github-plugin",
+					"org.eclipse.mylyn.github", issue, null));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ISSUES)
+	public void metaDataPerAttribute(Blackhole blackhole) {
+		for (GitHubIssue issue : issues) {
+			blackhole.consume(createPartialTaskData(issue));
+		}
+	}
+
+	/**
+	 * task data as built before the templates
+	 */
+	private TaskData createPartialTaskData(GitHubIssue issue) {
+		TaskData data = new TaskData(mapper, GitHub.CONNECTOR_KIND, repository
+				.getRepositoryUrl(), issue.getNumber());
+		data.setVersion("2");
+
+		TaskAttribute operationAttribute = data.getRoot().createAttribute(
+				TaskAttribute.OPERATION);
+		operationAttribute.getMetaData().setType(TaskAttribute.TYPE_OPERATION);
+		if (issue.getState() != null) {
+			addOperation(data, issue, GitHubTaskOperation.LEAVE, true);
+			if (issue.getState().equals("open")) {
+				addOperation(data, issue, GitHubTaskOperation.CLOSE, false);
+			} else if (issue.getState().equals("closed")) {
+				addOperation(data, issue, GitHubTaskOperation.REOPEN, false);
+			}
+		}
+
+		createAttribute(data, GitHubTaskAttributes.KEY, issue.getNumber());
+		createAttribute(data, GitHubTaskAttributes.TITLE, issue.getTitle());
+		createAttribute(data, GitHubTaskAttributes.BODY, issue.getBody());
+		createAttribute(data, GitHubTaskAttributes.STATUS, issue.getState());
+		createAttribute(data, GitHubTaskAttributes.CREATION_DATE,
+				GitHubDateCodec.toAttributeValue(issue.getCreated_at()));
+		createAttribute(data, GitHubTaskAttributes.MODIFICATION_DATE,
+				GitHubDateCodec.toAttributeValue(issue.getUpdated_at()));
+		createAttribute(data, GitHubTaskAttributes.CLOSED_DATE,
+				GitHubDateCodec.toAttributeValue(issue.getClosed_at()));
+		createAttribute(data, GitHubTaskAttributes.NEWCOMMENT, null);
+
+		for (GitHubTaskAttributes attribute : GitHubTaskAttributes.values()) {
+			if (attribute.isRequiredForFullTaskData()
+					&& data.getRoot().getAttribute(attribute.getId()) == null) {
+				break;
+			}
+		}
+		data.setPartial(true);
+		return data;
+	}
+
+	private static void addOperation(TaskData data, GitHubIssue issue,
+			GitHubTaskOperation operation, boolean asDefault) {
+		TaskAttribute attribute = data.getRoot().createAttribute(
+				TaskAttribute.PREFIX_OPERATION + operation.getId());
+		String label = operation == GitHubTaskOperation.LEAVE ? operation
+				.getLabel()
+				+ issue.getState() : operation.getLabel();
+		TaskOperation.applyTo(attribute, operation.getId(), label);
+		if (asDefault) {
+			TaskOperation.applyTo(data.getRoot().getAttribute(
+					TaskAttribute.OPERATION), operation.getId(), label);
+		}
+	}
+
+	private static void createAttribute(TaskData data,
+			GitHubTaskAttributes attribute, String value) {
+		TaskAttribute attr = data.getRoot().createAttribute(attribute.getId());
+		attr.getMetaData().defaults().setType(attribute.getType()).setKind(
+				attribute.getKind()).setLabel(attribute.getLabel())
+				.setReadOnly(attribute.isReadOnly());
+		if (value != null) {
+			attr.addValue(value);
+		}
+	}
+}
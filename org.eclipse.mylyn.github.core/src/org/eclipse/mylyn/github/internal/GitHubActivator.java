@@ -1,5 +1,7 @@
 package org.eclipse.mylyn.github.internal;
 
+import java.io.File;
+
 import org.eclipse.core.net.proxy.IProxyService;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
@@ -15,11 +17,14 @@ public class GitHubActivator implements BundleActivator {
 
 	private ServiceTracker proxyServiceTracker;
 
+	private BundleContext context;
+
 	public GitHubActivator() {
 	}
 
 	public void start(BundleContext context) throws Exception {
 		instance = this;
+		this.context = context;
 		
 		proxyServiceTracker = new ServiceTracker(context,
 				IProxyService.class.getName(), null);
@@ -33,4 +38,12 @@ public class GitHubActivator implements BundleActivator {
 	public IProxyService getProxyService() {
 		return (IProxyService) proxyServiceTracker.getService();
 	}
+
+	/**
+	 * @return the directory of the local issue stores, or null if the
+	 *         platform has no file system support
+	 */
+	public File getIssueStoreDirectory() {
+		return context.getDataFile("issues");
+	}
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fails requests fast while a host is down instead of letting every
+ * synchronization thread block on it.
+ * <p>
+ * After {@link #DEFAULT_FAILURE_THRESHOLD} consecutive failures the circuit of
+ * the host opens and requests are rejected. Once the open time has passed a
+ * single probe request is let through: if it succeeds the circuit closes
+ * again, otherwise it stays open for another period. A probe that is not sent
+ * after all, or that gets no outcome within another open time, lets the next
+ * request probe instead.
+ */
+public class GitHubCircuitBreaker {
+
+	/**
+	 * Default number of consecutive failures that open the circuit.
+	 */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/**
+	 * Default time (in milliseconds) requests are rejected before a probe is
+	 * sent.
+	 */
+	public static final long DEFAULT_OPEN_TIME = 30 * 1000;
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private static class Circuit {
+		private State state = State.CLOSED;
+		private int failures;
+		private long openedAt;
+	}
+
+	private final Map<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+	private final int failureThreshold;
+
+	private final long openTime;
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	public GitHubCircuitBreaker() {
+		this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_TIME);
+	}
+
+	public GitHubCircuitBreaker(int failureThreshold, long openTime) {
+		this.failureThreshold = failureThreshold;
+		this.openTime = openTime;
+	}
+
+	/**
+	 * Check that a request may be sent to the host.
+	 *
+	 * @throws GitHubServiceException
+	 *             if the circuit of the host is open
+	 */
+	public void checkRequest(String host) throws GitHubServiceException {
+		synchronized (circuits) {
+			Circuit circuit = getCircuit(host);
+			if (circuit.state == State.CLOSED) {
+				return;
+			}
+			long now = System.currentTimeMillis();
+			if (now - circuit.openedAt >= openTime) {
+				// let one probe through, the time is also the deadline of the
+				// probe
+				circuit.state = State.HALF_OPEN;
+				circuit.openedAt = now;
+				return;
+			}
+			rejected.incrementAndGet();
+			throw new GitHubServiceException(host
+					+ " is not responding, retrying in "
+					+ Math.max(1, (circuit.openedAt + openTime - now) / 1000)
+					+ " seconds");
+		}
+	}
+
+	public void recordSuccess(String host) {
+		synchronized (circuits) {
+			Circuit circuit = getCircuit(host);
+			circuit.state = State.CLOSED;
+			circuit.failures = 0;
+		}
+	}
+
+	public void recordFailure(String host) {
+		synchronized (circuits) {
+			Circuit circuit = getCircuit(host);
+			circuit.failures++;
+			if (circuit.state == State.HALF_OPEN
+					|| circuit.failures >= failureThreshold) {
+				circuit.state = State.OPEN;
+				circuit.openedAt = System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * Record a request that was not sent or has no outcome, e.g. because it
+	 * was interrupted. If it was the probe, the next request probes.
+	 */
+	public void recordAbort(String host) {
+		synchronized (circuits) {
+			Circuit circuit = getCircuit(host);
+			if (circuit.state == State.HALF_OPEN) {
+				circuit.state = State.OPEN;
+				circuit.openedAt -= openTime;
+			}
+		}
+	}
+
+	public State getState(String host) {
+		synchronized (circuits) {
+			return getCircuit(host).state;
+		}
+	}
+
+	/**
+	 * @return the number of requests rejected because a circuit was open
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	private Circuit getCircuit(String host) {
+		Circuit circuit = circuits.get(host);
+		if (circuit == null) {
+			circuit = new Circuit();
+			circuits.put(host, circuit);
+		}
+		return circuit;
+	}
+}
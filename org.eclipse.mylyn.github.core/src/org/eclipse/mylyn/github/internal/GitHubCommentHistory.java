@@ -0,0 +1,199 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The comments known for each issue of one repository, with the highest
+ * comment id seen as watermark. Comments are only ever added on GitHub
+ * unless one is edited or deleted, so a fetched comment list usually is the
+ * known list followed by comments above the watermark. Only those are
+ * indexed again.
+ * <p>
+ * Only the id and a hash of the body of each known comment are kept, the
+ * comments themselves are in the issue store. The history keeps the issues
+ * used most recently, up to a maximum number; the comments of an issue that
+ * was dropped are refreshed by the next merge. It is updated and read by
+ * sync threads concurrently.
+ */
+public class GitHubCommentHistory {
+
+	/**
+	 * How fetched comments differ from the known comments.
+	 */
+	public enum Change {
+		/**
+		 * the same comments as known
+		 */
+		NONE,
+		/**
+		 * the known comments followed by new ones
+		 */
+		APPENDED,
+		/**
+		 * comments were edited or deleted, or none were known
+		 */
+		REFRESHED
+	}
+
+	public static final int DEFAULT_MAX_ISSUES = 1000;
+
+	private static class Comments {
+
+		private final long[] ids;
+
+		private final int[] bodyHashes;
+
+		private final long watermark;
+
+		private Comments(List<GitHubComment> comments) {
+			ids = new long[comments.size()];
+			bodyHashes = new int[comments.size()];
+			long watermark = -1;
+			for (int i = 0; i < ids.length; i++) {
+				GitHubComment comment = comments.get(i);
+				ids[i] = parseId(comment);
+				bodyHashes[i] = hash(comment.getBody());
+				watermark = Math.max(watermark, ids[i]);
+			}
+			this.watermark = watermark;
+		}
+
+		/**
+		 * @return true if the comment is the known one at the index and was
+		 *         not edited
+		 */
+		private boolean isSame(int index, GitHubComment comment) {
+			return ids[index] == parseId(comment)
+					&& bodyHashes[index] == hash(comment.getBody());
+		}
+	}
+
+	/**
+	 * known comments by issue number, the least recently used first
+	 */
+	private final Map<String, Comments> issues;
+
+	public GitHubCommentHistory() {
+		this(DEFAULT_MAX_ISSUES);
+	}
+
+	/**
+	 * @param maxIssues
+	 *            - the number of issues to keep the comments of
+	 */
+	public GitHubCommentHistory(final int maxIssues) {
+		issues = new LinkedHashMap<String, Comments>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, Comments> eldest) {
+				return size() > maxIssues;
+			}
+		};
+	}
+
+	/**
+	 * Merge fetched comments of an issue into the known ones.
+	 *
+	 * @param fetched
+	 *            - all comments of the issue, in the order GitHub lists them
+	 * @return how the fetched comments differ from the known ones
+	 */
+	public synchronized Change merge(String number,
+			List<GitHubComment> fetched) {
+		Comments known = issues.get(number);
+		if (known == null || fetched.size() < known.ids.length) {
+			issues.put(number, new Comments(fetched));
+			return Change.REFRESHED;
+		}
+		int size = known.ids.length;
+		for (int i = 0; i < size; i++) {
+			if (!known.isSame(i, fetched.get(i))) {
+				issues.put(number, new Comments(fetched));
+				return Change.REFRESHED;
+			}
+		}
+		if (fetched.size() == size) {
+			return Change.NONE;
+		}
+		long watermark = known.watermark;
+		for (int i = size; i < fetched.size(); i++) {
+			long id = parseId(fetched.get(i));
+			if (id <= watermark) {
+				// a known comment moved, or ids are missing
+				issues.put(number, new Comments(fetched));
+				return Change.REFRESHED;
+			}
+			watermark = id;
+		}
+		issues.put(number, new Comments(fetched));
+		return Change.APPENDED;
+	}
+
+	/**
+	 * Forget the comments of an issue, the next merge refreshes them.
+	 */
+	public synchronized void remove(String number) {
+		issues.remove(number);
+	}
+
+	/**
+	 * @return the number of known comments of the issue, or -1 if none are
+	 *         known
+	 */
+	public synchronized int getCommentCount(String number) {
+		Comments known = issues.get(number);
+		return known == null ? -1 : known.ids.length;
+	}
+
+	/**
+	 * @return the number of issues with known comments
+	 */
+	public synchronized int size() {
+		return issues.size();
+	}
+
+	/**
+	 * @return the highest comment id seen for the issue, or -1
+	 */
+	public synchronized long getWatermark(String number) {
+		Comments known = issues.get(number);
+		return known == null ? -1 : known.watermark;
+	}
+
+	private static int hash(String body) {
+		return body == null ? 0 : body.hashCode();
+	}
+
+	/**
+	 * @return the comment id, or -1 if it has none
+	 */
+	private static long parseId(GitHubComment comment) {
+		try {
+			return comment.getId() == null ? -1 : Long.parseLong(comment
+					.getId());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
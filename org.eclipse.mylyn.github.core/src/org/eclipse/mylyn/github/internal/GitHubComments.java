@@ -7,6 +7,22 @@ public class GitHubComments {
 
 	private GitHubComment[] comments;
 
+	/**
+	 * Create an empty container, used when unmarshaling JSON
+	 */
+	public GitHubComments() {
+	}
+
+	/**
+	 * Create a container of the given comments
+	 * 
+	 * @param comments
+	 *            - The comments decoded from a response
+	 */
+	public GitHubComments(GitHubComment[] comments) {
+		this.comments = comments;
+	}
+
 	/**
 	 * Getter for all issues inside this object
 	 * 
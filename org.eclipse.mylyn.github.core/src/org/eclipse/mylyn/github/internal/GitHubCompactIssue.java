@@ -0,0 +1,183 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+/**
+ * Immutable issue for caches holding many issues: the number and dates are
+ * kept as primitives, the state as an enum, and user names and label sets are
+ * shared through a {@link GitHubInterner}. Title and body are the strings of
+ * the decoded {@link GitHubIssue}.
+ */
+public class GitHubCompactIssue {
+
+	public enum State {
+		OPEN("open"), CLOSED("closed");
+
+		private final String value;
+
+		private State(String value) {
+			this.value = value;
+		}
+
+		/**
+		 * @return the state as used by the GitHub API
+		 */
+		public String getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the state of the GitHub API value, or null if unknown
+		 */
+		public static State fromValue(String value) {
+			for (State state : values()) {
+				if (state.value.equals(value)) {
+					return state;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final int number;
+
+	private final State state;
+
+	private final String user;
+
+	private final String[] labels;
+
+	private final String title;
+
+	private final String body;
+
+	private final long createdAt;
+
+	private final long updatedAt;
+
+	private final long closedAt;
+
+	private GitHubCompactIssue(int number, State state, String user,
+			String[] labels, String title, String body, long createdAt,
+			long updatedAt, long closedAt) {
+		this.number = number;
+		this.state = state;
+		this.user = user;
+		this.labels = labels;
+		this.title = title;
+		this.body = body;
+		this.createdAt = createdAt;
+		this.updatedAt = updatedAt;
+		this.closedAt = closedAt;
+	}
+
+	/**
+	 * Convert a decoded issue.
+	 *
+	 * @throws NumberFormatException
+	 *             if the issue has no number, e.g. a new issue
+	 */
+	public static GitHubCompactIssue from(GitHubIssue issue,
+			GitHubInterner interner) {
+		return new GitHubCompactIssue(Integer.parseInt(issue.getNumber()),
+				State.fromValue(issue.getState()), interner.intern(issue
+						.getUser()), interner.intern(issue.getLabels()), issue
+						.getTitle(), issue.getBody(), GitHubDateCodec
+						.parse(issue.getCreated_at()), GitHubDateCodec
+						.parse(issue.getUpdated_at()), GitHubDateCodec
+						.parse(issue.getClosed_at()));
+	}
+
+	/**
+	 * @return an issue as decoded from the GitHub API, with dates in UTC
+	 */
+	public GitHubIssue toIssue() {
+		GitHubIssue issue = new GitHubIssue(Integer.toString(number), user,
+				title, body);
+		issue.setState(state == null ? null : state.getValue());
+		issue.setCreated_at(GitHubDateCodec.format(createdAt));
+		issue.setUpdated_at(GitHubDateCodec.format(updatedAt));
+		issue.setClosed_at(GitHubDateCodec.format(closedAt));
+		issue.setLabels(labels.clone());
+		return issue;
+	}
+
+	public int getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return the state, or null if unknown
+	 */
+	public State getState() {
+		return state;
+	}
+
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * @return the number of labels
+	 */
+	public int getLabelCount() {
+		return labels.length;
+	}
+
+	public String getLabel(int index) {
+		return labels[index];
+	}
+
+	public boolean hasLabel(String label) {
+		for (String l : labels) {
+			if (l.equals(label)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getBody() {
+		return body;
+	}
+
+	/**
+	 * @return the creation time in milliseconds, or -1 if unknown
+	 */
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	/**
+	 * @return the modification time in milliseconds, or -1 if unknown
+	 */
+	public long getUpdatedAt() {
+		return updatedAt;
+	}
+
+	/**
+	 * @return the time the issue was closed in milliseconds, or -1 if it is
+	 *         open
+	 */
+	public long getClosedAt() {
+		return closedAt;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes and reads the binary files of the {@link GitHubIssueStore} and the
+ * {@link GitHubOutbox}.
+ */
+final class GitHubDataFile {
+
+	/**
+	 * Writes the content of a file.
+	 */
+	interface Content {
+
+		void write(Output out) throws IOException;
+	}
+
+	/**
+	 * Output stream that also writes strings of any length.
+	 */
+	static class Output extends DataOutputStream {
+
+		Output(OutputStream out) {
+			super(out);
+		}
+
+		/**
+		 * Strings are written as UTF-8 since {@link #writeUTF} is limited to
+		 * 64k, e.g. for long issue bodies.
+		 */
+		void writeString(String value) throws IOException {
+			if (value == null) {
+				writeInt(-1);
+			} else {
+				byte[] bytes = value.getBytes("UTF-8");
+				writeInt(bytes.length);
+				write(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Input stream that also reads the strings of an {@link Output}.
+	 */
+	static class Input extends DataInputStream {
+
+		Input(InputStream in) {
+			super(in);
+		}
+
+		String readString() throws IOException {
+			int length = readInt();
+			if (length < 0) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			readFully(bytes);
+			return new String(bytes, "UTF-8");
+		}
+	}
+
+	private GitHubDataFile() {
+	}
+
+	/**
+	 * Replace the file with the content. A temporary file is written first
+	 * so that a failed write does not leave a truncated file behind.
+	 *
+	 * @param prefix
+	 *            - the prefix of the temporary file
+	 */
+	static void write(File file, String prefix, Content content)
+			throws IOException {
+		File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		File temp = File.createTempFile(prefix, ".tmp", directory);
+		try {
+			Output out = new Output(new BufferedOutputStream(
+					new FileOutputStream(temp)));
+			try {
+				content.write(out);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				// renaming does not replace an existing file on all platforms
+				file.delete();
+				if (!temp.renameTo(file)) {
+					throw new IOException("Cannot rename " + temp);
+				}
+			}
+			temp = null;
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return the content of the file, to be closed by the caller
+	 */
+	static Input read(File file) throws IOException {
+		return new Input(new BufferedInputStream(new FileInputStream(file)));
+	}
+}
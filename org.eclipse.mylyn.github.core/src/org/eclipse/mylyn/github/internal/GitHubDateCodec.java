@@ -0,0 +1,155 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+/**
+ * Converts GitHub dates such as <code>2010/02/04 21:03:54 -0800</code> to and
+ * from milliseconds since the epoch, the form Mylyn stores date attributes in.
+ * Unlike {@link java.text.SimpleDateFormat} it has no state, so it can be used
+ * from any number of threads, and parsing creates no objects.
+ */
+public final class GitHubDateCodec {
+
+	/**
+	 * length of <code>2010/02/04 21:03:54 -0800</code>
+	 */
+	private static final int LENGTH = 25;
+
+	private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+	private GitHubDateCodec() {
+	}
+
+	/**
+	 * @return the time of the date in milliseconds, or -1 if the date is null
+	 *         or not a GitHub date
+	 */
+	public static long parse(String date) {
+		if (date == null || date.length() != LENGTH
+				|| date.charAt(4) != '/' || date.charAt(7) != '/'
+				|| date.charAt(10) != ' ' || date.charAt(13) != ':'
+				|| date.charAt(16) != ':' || date.charAt(19) != ' ') {
+			return -1;
+		}
+		int year = digits(date, 0, 4);
+		int month = digits(date, 5, 2);
+		int day = digits(date, 8, 2);
+		int hour = digits(date, 11, 2);
+		int minute = digits(date, 14, 2);
+		int second = digits(date, 17, 2);
+		int offsetHours = digits(date, 21, 2);
+		int offsetMinutes = digits(date, 23, 2);
+		char sign = date.charAt(20);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+				|| hour < 0 || hour > 23 || minute < 0 || minute > 59
+				|| second < 0 || second > 60 || offsetHours < 0
+				|| offsetMinutes < 0 || (sign != '+' && sign != '-')) {
+			return -1;
+		}
+		int offset = offsetHours * 60 + offsetMinutes;
+		if (sign == '-') {
+			offset = -offset;
+		}
+		return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+				+ ((hour * 60L + minute - offset) * 60 + second) * 1000;
+	}
+
+	/**
+	 * @return the GitHub date of the time in UTC, or null if the time is
+	 *         negative
+	 */
+	public static String format(long time) {
+		if (time < 0) {
+			return null;
+		}
+		long days = time / MILLIS_PER_DAY;
+		int millisOfDay = (int) (time % MILLIS_PER_DAY);
+		// civil from days, see daysFromCivil
+		long z = days + 719468;
+		long era = z / 146097;
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra
+				/ 146096) / 365;
+		int dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+		int seconds = millisOfDay / 1000;
+		char[] date = "0000/00/00 00:00:00 +0000".toCharArray();
+		put(date, 0, 4, year);
+		put(date, 5, 2, month);
+		put(date, 8, 2, day);
+		put(date, 11, 2, seconds / 3600);
+		put(date, 14, 2, seconds / 60 % 60);
+		put(date, 17, 2, seconds % 60);
+		return new String(date);
+	}
+
+	/**
+	 * @return the Mylyn attribute value of a GitHub date, or null if the date
+	 *         is null or not a GitHub date
+	 */
+	public static String toAttributeValue(String date) {
+		long time = parse(date);
+		return time < 0 ? null : Long.toString(time);
+	}
+
+	/**
+	 * @return the number of days from 1970-01-01 to the date of the proleptic
+	 *         Gregorian calendar
+	 */
+	private static long daysFromCivil(int year, int month, int day) {
+		// years start in March so that the leap day is the last day
+		if (month <= 2) {
+			year--;
+		}
+		int era = (year >= 0 ? year : year - 399) / 400;
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+				+ day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/**
+	 * @return the value of the decimal digits, or -1 if there is a non digit
+	 */
+	private static int digits(String text, int start, int count) {
+		int value = 0;
+		for (int i = start; i < start + count; i++) {
+			int digit = text.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private static void put(char[] text, int start, int count, int value) {
+		for (int i = start + count - 1; i >= start; i--) {
+			text[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodRetryHandler;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.eclipse.core.net.proxy.IProxyData;
+import org.eclipse.core.net.proxy.IProxyService;
+
+/**
+ * Long-lived HTTP transport shared by all calls of a {@link GitHubService}.
+ * Connections are pooled and kept alive between requests, so consecutive
+ * calls to the same host don't pay for a new TCP/TLS handshake.
+ */
+public class GitHubHttpTransport {
+
+	/**
+	 * Maximum number of pooled connections to a single host.
+	 */
+	public static final int MAX_CONNECTIONS_PER_HOST = 6;
+
+	/**
+	 * Maximum number of pooled connections over all hosts.
+	 */
+	public static final int MAX_TOTAL_CONNECTIONS = 20;
+
+	/**
+	 * Connections idle for longer than this (in milliseconds) are closed
+	 * before they can be timed out by the server.
+	 */
+	public static final long IDLE_CONNECTION_TIMEOUT = 5 * 1000L;
+
+	private static final String NO_PROXY = "";
+
+	private final MultiThreadedHttpConnectionManager connectionManager;
+
+	private final HttpClient httpClient;
+
+	/**
+	 * host configurations by proxy ("host:port"), a configuration is only
+	 * created when the proxy selected for a request changes.
+	 */
+	private final Map<String, HostConfiguration> hostConfigurations = new HashMap<String, HostConfiguration>();
+
+	private volatile long lastIdleCheck = System.currentTimeMillis();
+
+	public GitHubHttpTransport() {
+		this(MAX_CONNECTIONS_PER_HOST, MAX_TOTAL_CONNECTIONS);
+	}
+
+	public GitHubHttpTransport(int maxConnectionsPerHost,
+			int maxTotalConnections) {
+		connectionManager = new MultiThreadedHttpConnectionManager();
+		HttpConnectionManagerParams params = connectionManager.getParams();
+		params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+		params.setMaxTotalConnections(maxTotalConnections);
+		// the stale check costs a blocking read per request, connections are
+		// evicted once idle instead and a request that found its connection
+		// closed before it was sent is sent again
+		params.setStaleCheckingEnabled(false);
+		// request headers and body are written separately, don't let Nagle
+		// hold back the body on a kept-alive connection
+		params.setTcpNoDelay(true);
+		httpClient = new HttpClient(connectionManager);
+		httpClient.getParams().setParameter(HttpMethodParams.RETRY_HANDLER,
+				new UnsentRequestRetryHandler());
+	}
+
+	/**
+	 * Sends a request once more if its pooled connection failed before the
+	 * request was sent. A request that was sent may have been processed, and
+	 * every request is a POST, so it is not sent again here; failed reads are
+	 * retried by {@link GitHubService}.
+	 */
+	private static class UnsentRequestRetryHandler implements
+			HttpMethodRetryHandler {
+
+		public boolean retryMethod(HttpMethod method, IOException exception,
+				int executionCount) {
+			return executionCount <= 1 && !method.isRequestSent()
+					&& !(exception instanceof InterruptedIOException)
+					&& !(exception instanceof UnknownHostException);
+		}
+	}
+
+	/**
+	 * Execute the given method on a pooled connection. The caller must call
+	 * {@link HttpMethod#releaseConnection()} once the response has been
+	 * consumed so that the connection can be reused.
+	 *
+	 * @return the HTTP status code
+	 */
+	public int execute(HttpMethod method) throws IOException,
+			URISyntaxException {
+		closeIdleConnections();
+		return httpClient.executeMethod(hostConfiguration(method.getURI()
+				.toString()), method);
+	}
+
+	/**
+	 * Close all pooled connections. The transport remains usable, new
+	 * connections are opened on demand.
+	 */
+	public void shutdown() {
+		connectionManager.closeIdleConnections(0);
+		synchronized (hostConfigurations) {
+			hostConfigurations.clear();
+		}
+	}
+
+	private HostConfiguration hostConfiguration(String uri)
+			throws URISyntaxException {
+		String proxyHost = null;
+		int proxyPort = -1;
+		GitHubActivator activator = GitHubActivator.getInstance();
+		IProxyService proxyService = activator == null ? null : activator
+				.getProxyService();
+		if (proxyService != null) {
+			IProxyData[] proxyData = proxyService.select(new URI(uri));
+			if (proxyData.length > 0) {
+				proxyHost = proxyData[0].getHost();
+				proxyPort = proxyData[0].getPort();
+			}
+		}
+
+		String key = proxyHost == null ? NO_PROXY : proxyHost + ":"
+				+ proxyPort;
+		synchronized (hostConfigurations) {
+			HostConfiguration configuration = hostConfigurations.get(key);
+			if (configuration == null) {
+				configuration = new HostConfiguration();
+				if (proxyHost != null) {
+					configuration.setProxy(proxyHost, proxyPort);
+				}
+				hostConfigurations.put(key, configuration);
+			}
+			return configuration;
+		}
+	}
+
+	private void closeIdleConnections() {
+		long now = System.currentTimeMillis();
+		if (now - lastIdleCheck > 1000) {
+			lastIdleCheck = now;
+			connectionManager.closeIdleConnections(IDLE_CONNECTION_TIMEOUT);
+			connectionManager.deleteClosedConnections();
+		}
+	}
+}
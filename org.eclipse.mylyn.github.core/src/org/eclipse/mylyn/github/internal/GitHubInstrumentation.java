@@ -0,0 +1,140 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a {@link GitHubRepositoryConnector} for judging the effect of
+ * its optimizations, see {@link GitHubRepositoryConnector#getInstrumentation()}.
+ */
+public class GitHubInstrumentation {
+
+	private final AtomicLong concurrentFetches = new AtomicLong();
+
+	private final AtomicLong latencySaved = new AtomicLong();
+
+	private final AtomicLong submits = new AtomicLong();
+
+	private final AtomicLong submitCalls = new AtomicLong();
+
+	private final AtomicLong coalescedSubmits = new AtomicLong();
+
+	private final AtomicLong appendedComments = new AtomicLong();
+
+	private final AtomicLong refreshedComments = new AtomicLong();
+
+	/**
+	 * Record an issue and its comments requested concurrently.
+	 *
+	 * @param issueNanos
+	 *            - the duration of the issue request
+	 * @param commentsNanos
+	 *            - the duration of the comments request
+	 * @param elapsedNanos
+	 *            - the time until both were done
+	 */
+	void recordConcurrentFetch(long issueNanos, long commentsNanos,
+			long elapsedNanos) {
+		concurrentFetches.incrementAndGet();
+		latencySaved.addAndGet(Math.max(0, issueNanos + commentsNanos
+				- elapsedNanos));
+	}
+
+	/**
+	 * @return the number of issues requested concurrently with their comments
+	 */
+	public long getConcurrentFetchCount() {
+		return concurrentFetches.get();
+	}
+
+	/**
+	 * @return the time in nanoseconds saved by requesting issues and comments
+	 *         concurrently rather than one after the other
+	 */
+	public long getLatencySavedNanos() {
+		return latencySaved.get();
+	}
+
+	/**
+	 * Record a submitted task.
+	 *
+	 * @param calls
+	 *            - the number of API calls made for it
+	 */
+	void recordSubmit(int calls) {
+		submits.incrementAndGet();
+		submitCalls.addAndGet(calls);
+	}
+
+	/**
+	 * @return the number of submitted tasks
+	 */
+	public long getSubmitCount() {
+		return submits.get();
+	}
+
+	/**
+	 * @return the number of API calls made for all submitted tasks
+	 */
+	public long getSubmitCallCount() {
+		return submitCalls.get();
+	}
+
+	/**
+	 * Record a submitted task merged into changes still waiting to be sent.
+	 */
+	void recordCoalescedSubmit() {
+		coalescedSubmits.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of submitted tasks merged into earlier changes
+	 *         rather than sent on their own
+	 */
+	public long getCoalescedSubmitCount() {
+		return coalescedSubmits.get();
+	}
+
+	/**
+	 * Record fetched comments merged into the known comments of an issue.
+	 */
+	void recordCommentMerge(GitHubCommentHistory.Change change) {
+		if (change == GitHubCommentHistory.Change.APPENDED) {
+			appendedComments.incrementAndGet();
+		} else if (change == GitHubCommentHistory.Change.REFRESHED) {
+			refreshedComments.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of fetches that only added new comments to the
+	 *         known comments of an issue
+	 */
+	public long getCommentAppendCount() {
+		return appendedComments.get();
+	}
+
+	/**
+	 * @return the number of fetches that replaced the known comments of an
+	 *         issue, because none were known or comments were edited or
+	 *         deleted
+	 */
+	public long getCommentRefreshCount() {
+		return refreshedComments.get();
+	}
+}
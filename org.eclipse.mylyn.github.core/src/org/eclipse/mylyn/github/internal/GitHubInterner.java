@@ -0,0 +1,72 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares equal user names and label sets between the issues of a cache. Unlike
+ * {@link String#intern()} the values are released with the interner, so one
+ * is kept per cache, e.g. per repository.
+ */
+public class GitHubInterner {
+
+	private static final String[] NO_LABELS = new String[0];
+
+	private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+
+	private final ConcurrentMap<List<String>, String[]> labelSets = new ConcurrentHashMap<List<String>, String[]>();
+
+	/**
+	 * @return the shared string equal to the value, or null if the value is
+	 *         null
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		String existing = strings.putIfAbsent(value, value);
+		return existing != null ? existing : value;
+	}
+
+	/**
+	 * @return the shared label set equal to the labels, in the same order.
+	 *         The returned array must not be modified.
+	 */
+	public String[] intern(String[] labels) {
+		if (labels == null || labels.length == 0) {
+			return NO_LABELS;
+		}
+		String[] interned = new String[labels.length];
+		for (int i = 0; i < labels.length; i++) {
+			interned[i] = intern(labels[i]);
+		}
+		String[] existing = labelSets.putIfAbsent(Arrays.asList(interned),
+				interned);
+		return existing != null ? existing : interned;
+	}
+
+	/**
+	 * @return the number of distinct strings and label sets
+	 */
+	public int size() {
+		return strings.size() + labelSets.size();
+	}
+}
@@ -38,6 +38,8 @@ public class GitHubIssue {
 	private String created_at;
 	private String updated_at;
 	private String closed_at;
+
+	private String[] labels;
 	
 	/**
 	 * Create a new GitHub Issue Object
@@ -172,5 +174,16 @@ public class GitHubIssue {
 
 	public void setClosed_at(String closed_at) {
 		this.closed_at = closed_at;
-	}	
+	}
+
+	/**
+	 * @return the names of the labels of the issue, or null if unknown
+	 */
+	public String[] getLabels() {
+		return labels;
+	}
+
+	public void setLabels(String[] labels) {
+		this.labels = labels;
+	}
 }
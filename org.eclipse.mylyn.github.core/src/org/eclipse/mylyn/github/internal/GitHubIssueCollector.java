@@ -0,0 +1,29 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+/**
+ * Receives issues one at a time while an issue list is decoded.
+ */
+public abstract class GitHubIssueCollector {
+
+	/**
+	 * Called for each issue as soon as it has been decoded.
+	 */
+	public abstract void accept(GitHubIssue issue);
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Issue query of a state and the query text, which may contain label and
+ * author qualifiers besides the words to search for, e.g.
+ * <code>crash label:bug NOT label:wontfix -author:joe</code>. A qualifier or
+ * word is excluded if it is prefixed with <code>-</code> or preceded by
+ * <code>NOT</code>, <code>AND</code> is ignored. All words and labels must
+ * match, and any of the authors.
+ */
+public class GitHubIssueFilter {
+
+	private static final String LABEL = "label:";
+
+	private static final String AUTHOR = "author:";
+
+	private final String state;
+
+	private final String text;
+
+	private final String excludedText;
+
+	private final Set<String> labels;
+
+	private final Set<String> excludedLabels;
+
+	private final Set<String> authors;
+
+	private final Set<String> excludedAuthors;
+
+	private GitHubIssueFilter(String state, String text, String excludedText,
+			Set<String> labels, Set<String> excludedLabels,
+			Set<String> authors, Set<String> excludedAuthors) {
+		this.state = state;
+		this.text = text;
+		this.excludedText = excludedText;
+		this.labels = Collections.unmodifiableSet(labels);
+		this.excludedLabels = Collections.unmodifiableSet(excludedLabels);
+		this.authors = Collections.unmodifiableSet(authors);
+		this.excludedAuthors = Collections.unmodifiableSet(excludedAuthors);
+	}
+
+	/**
+	 * @param state
+	 *            - "open", "closed", or null or "all" for both
+	 * @param queryText
+	 *            - the query text, may be null
+	 */
+	public static GitHubIssueFilter parse(String state, String queryText) {
+		StringBuilder text = new StringBuilder();
+		StringBuilder excludedText = new StringBuilder();
+		Set<String> labels = new LinkedHashSet<String>();
+		Set<String> excludedLabels = new LinkedHashSet<String>();
+		Set<String> authors = new LinkedHashSet<String>();
+		Set<String> excludedAuthors = new LinkedHashSet<String>();
+		if (queryText != null) {
+			boolean not = false;
+			for (String token : queryText.trim().split("\\s+")) {
+				if (token.length() == 0 || token.equals("AND")) {
+					continue;
+				}
+				if (token.equals("NOT")) {
+					not = true;
+					continue;
+				}
+				String qualifier = token;
+				boolean excluded = not;
+				if (qualifier.startsWith("-")) {
+					qualifier = qualifier.substring(1);
+					excluded = true;
+				}
+				if (qualifier.startsWith(LABEL)
+						&& qualifier.length() > LABEL.length()) {
+					(excluded ? excludedLabels : labels).add(qualifier
+							.substring(LABEL.length()));
+				} else if (qualifier.startsWith(AUTHOR)
+						&& qualifier.length() > AUTHOR.length()) {
+					(excluded ? excludedAuthors : authors).add(qualifier
+							.substring(AUTHOR.length()));
+				} else if (excluded) {
+					append(excludedText, qualifier);
+				} else {
+					append(text, token);
+				}
+				not = false;
+			}
+		}
+		return new GitHubIssueFilter("all".equals(state) ? null : state, text
+				.toString(), excludedText.toString(), labels, excludedLabels,
+				authors, excludedAuthors);
+	}
+
+	private static void append(StringBuilder text, String word) {
+		if (text.length() > 0) {
+			text.append(' ');
+		}
+		text.append(word);
+	}
+
+	/**
+	 * @return the state, or null for all states
+	 */
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * @return the words to search for without the qualifiers, may be empty
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return the excluded words, may be empty
+	 */
+	public String getExcludedText() {
+		return excludedText;
+	}
+
+	public Set<String> getLabels() {
+		return labels;
+	}
+
+	public Set<String> getExcludedLabels() {
+		return excludedLabels;
+	}
+
+	public Set<String> getAuthors() {
+		return authors;
+	}
+
+	public Set<String> getExcludedAuthors() {
+		return excludedAuthors;
+	}
+
+	/**
+	 * @return true if the filter has label or author qualifiers or excluded
+	 *         words, which the GitHub search does not support
+	 */
+	public boolean hasQualifiers() {
+		return !labels.isEmpty() || !excludedLabels.isEmpty()
+				|| !authors.isEmpty() || !excludedAuthors.isEmpty()
+				|| excludedText.length() > 0;
+	}
+}
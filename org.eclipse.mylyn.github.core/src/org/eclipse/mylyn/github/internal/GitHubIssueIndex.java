@@ -0,0 +1,426 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the issues of one repository, updated as issues are
+ * synchronized. It answers queries once all issues of the repository have
+ * been indexed, see {@link #isComplete()}.
+ * <p>
+ * Titles, bodies and comments are indexed in an inverted index: text is split
+ * into lower case words of letters and digits, and an issue matches if it
+ * contains all words of the query and none of its excluded words. States, labels and authors have few
+ * distinct values shared by many issues, so they are indexed as bitmaps of
+ * issue numbers, which are dense for a repository, and filters on them are
+ * combined by set operations on the bitmaps.
+ * <p>
+ * The index holds every issue of the repository for the whole session, so the
+ * issues are kept as {@link GitHubCompactIssue}s sharing their user names and
+ * label sets, and are converted back when they are returned.
+ */
+public class GitHubIssueIndex {
+
+	private static class Document {
+		private GitHubCompactIssue issue;
+		private Set<String> issueWords = Collections.emptySet();
+		private Set<String> commentWords = Collections.emptySet();
+		/**
+		 * the number of comments indexed as comment words
+		 */
+		private int commentCount;
+	}
+
+	/**
+	 * issue numbers by word
+	 */
+	private final Map<String, Set<Integer>> postings = new HashMap<String, Set<Integer>>();
+
+	private final Map<String, BitSet> states = new HashMap<String, BitSet>();
+
+	private final Map<String, BitSet> labels = new HashMap<String, BitSet>();
+
+	private final Map<String, BitSet> authors = new HashMap<String, BitSet>();
+
+	private final BitSet numbers = new BitSet();
+
+	private final Map<Integer, Document> documents = new HashMap<Integer, Document>();
+
+	private final GitHubInterner interner = new GitHubInterner();
+
+	private boolean complete;
+
+	/**
+	 * Replace the indexed issues with all issues of the repository, keeping
+	 * the indexed comments of issues that are still present. The index is
+	 * complete afterwards.
+	 */
+	public synchronized void updateAll(Collection<GitHubIssue> issues) {
+		BitSet listed = new BitSet();
+		for (GitHubIssue issue : issues) {
+			int number = parseNumber(issue.getNumber());
+			if (number >= 0) {
+				listed.set(number);
+				update(issue);
+			}
+		}
+		BitSet removed = (BitSet) numbers.clone();
+		removed.andNot(listed);
+		for (int number = removed.nextSetBit(0); number >= 0; number = removed
+				.nextSetBit(number + 1)) {
+			Document document = documents.remove(number);
+			removePostings(number, document);
+			clearBits(number, document.issue);
+			numbers.clear(number);
+		}
+		complete = true;
+	}
+
+	/**
+	 * Index the issue, replacing an older version of it.
+	 */
+	public synchronized void update(GitHubIssue issue) {
+		int number = parseNumber(issue.getNumber());
+		if (number < 0) {
+			return;
+		}
+		Document document = documents.get(number);
+		if (document == null) {
+			document = new Document();
+			documents.put(number, document);
+			numbers.set(number);
+		} else {
+			clearBits(number, document.issue);
+		}
+		GitHubCompactIssue compact = GitHubCompactIssue.from(issue, interner);
+		setBits(number, compact);
+
+		boolean unchanged = document.issue != null
+				&& compact.getUpdatedAt() >= 0
+				&& compact.getUpdatedAt() == document.issue.getUpdatedAt();
+		document.issue = compact;
+		if (unchanged) {
+			return;
+		}
+		Set<String> words = new HashSet<String>();
+		addWords(issue.getTitle(), words);
+		addWords(issue.getBody(), words);
+		if (!words.equals(document.issueWords)) {
+			removePostings(number, document);
+			document.issueWords = words;
+			addPostings(number, document);
+		}
+	}
+
+	/**
+	 * Index the comments of the issue, replacing those indexed before.
+	 */
+	public synchronized void updateComments(String issueNumber,
+			List<GitHubComment> comments) {
+		int number = parseNumber(issueNumber);
+		Document document = documents.get(number);
+		if (document == null) {
+			// comments are only searched together with their issue
+			return;
+		}
+		document.commentCount = comments.size();
+		Set<String> words = new HashSet<String>();
+		for (GitHubComment comment : comments) {
+			addWords(comment.getBody(), words);
+		}
+		if (!words.equals(document.commentWords)) {
+			removePostings(number, document);
+			document.commentWords = words;
+			addPostings(number, document);
+		}
+	}
+
+	/**
+	 * Index the comments of the issue that follow those indexed before,
+	 * which must be unchanged.
+	 */
+	public synchronized void appendComments(String issueNumber,
+			List<GitHubComment> comments) {
+		int number = parseNumber(issueNumber);
+		Document document = documents.get(number);
+		if (document == null) {
+			return;
+		}
+		if (document.commentCount > comments.size()) {
+			updateComments(issueNumber, comments);
+			return;
+		}
+		Set<String> words = new HashSet<String>();
+		for (GitHubComment comment : comments.subList(document.commentCount,
+				comments.size())) {
+			addWords(comment.getBody(), words);
+		}
+		document.commentCount = comments.size();
+		words.removeAll(document.commentWords);
+		if (!words.isEmpty()) {
+			for (String word : words) {
+				addPosting(word, number);
+			}
+			words.addAll(document.commentWords);
+			document.commentWords = words;
+		}
+	}
+
+	/**
+	 * @return a copy of the indexed issue, or null if it is not indexed
+	 */
+	public synchronized GitHubIssue getIssue(String number) {
+		Document document = documents.get(parseNumber(number));
+		return document == null ? null : document.issue.toIssue();
+	}
+
+	/**
+	 * @return true if all issues of the repository have been indexed
+	 */
+	public synchronized boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @param text
+	 *            - the words to search for, all issues match if it has none
+	 * @param state
+	 *            - the state of the issues, e.g. "open"
+	 * @return the matching issues, ordered by number
+	 */
+	public List<GitHubIssue> search(String text, String state) {
+		return search(GitHubIssueFilter.parse(state, text));
+	}
+
+	/**
+	 * @return the issues matching the filter, ordered by number
+	 */
+	public synchronized List<GitHubIssue> search(GitHubIssueFilter filter) {
+		BitSet matches = (BitSet) numbers.clone();
+		if (filter.getState() != null) {
+			matches.and(get(states, filter.getState()));
+		}
+		for (String label : filter.getLabels()) {
+			matches.and(get(labels, label));
+		}
+		for (String label : filter.getExcludedLabels()) {
+			matches.andNot(get(labels, label));
+		}
+		if (!filter.getAuthors().isEmpty()) {
+			BitSet any = new BitSet();
+			for (String author : filter.getAuthors()) {
+				any.or(get(authors, author));
+			}
+			matches.and(any);
+		}
+		for (String author : filter.getExcludedAuthors()) {
+			matches.andNot(get(authors, author));
+		}
+
+		Set<String> excludedWords = new HashSet<String>();
+		addWords(filter.getExcludedText(), excludedWords);
+		for (String word : excludedWords) {
+			Set<Integer> posting = postings.get(word);
+			if (posting != null) {
+				for (Integer number : posting) {
+					matches.clear(number);
+				}
+			}
+		}
+
+		Set<String> words = new HashSet<String>();
+		addWords(filter.getText(), words);
+		if (!words.isEmpty() && !matches.isEmpty()) {
+			matches = matchWords(words, matches);
+		}
+
+		List<GitHubIssue> issues = new ArrayList<GitHubIssue>(matches
+				.cardinality());
+		for (int number = matches.nextSetBit(0); number >= 0; number = matches
+				.nextSetBit(number + 1)) {
+			issues.add(documents.get(number).issue.toIssue());
+		}
+		return issues;
+	}
+
+	/**
+	 * @return the candidates containing all words
+	 */
+	private BitSet matchWords(Set<String> words, BitSet candidates) {
+		List<Set<Integer>> matches = new ArrayList<Set<Integer>>();
+		for (String word : words) {
+			Set<Integer> posting = postings.get(word);
+			if (posting == null) {
+				return new BitSet();
+			}
+			matches.add(posting);
+		}
+		// check the candidates of the rarest word against the others
+		Collections.sort(matches, new Comparator<Set<Integer>>() {
+			public int compare(Set<Integer> set1, Set<Integer> set2) {
+				return set1.size() - set2.size();
+			}
+		});
+		BitSet result = new BitSet();
+		candidates: for (Integer number : matches.get(0)) {
+			if (!candidates.get(number)) {
+				continue;
+			}
+			for (int i = 1; i < matches.size(); i++) {
+				if (!matches.get(i).contains(number)) {
+					continue candidates;
+				}
+			}
+			result.set(number);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of distinct indexed words
+	 */
+	public synchronized int getWordCount() {
+		return postings.size();
+	}
+
+	private static BitSet get(Map<String, BitSet> bitmaps, String value) {
+		BitSet bitmap = bitmaps.get(value);
+		return bitmap == null ? new BitSet() : bitmap;
+	}
+
+	private void setBits(int number, GitHubCompactIssue issue) {
+		setBit(states, getState(issue), number);
+		setBit(authors, issue.getUser(), number);
+		for (int i = 0; i < issue.getLabelCount(); i++) {
+			setBit(labels, issue.getLabel(i), number);
+		}
+	}
+
+	private static String getState(GitHubCompactIssue issue) {
+		return issue.getState() == null ? null : issue.getState().getValue();
+	}
+
+	private static void setBit(Map<String, BitSet> bitmaps, String value,
+			int number) {
+		if (value == null) {
+			return;
+		}
+		BitSet bitmap = bitmaps.get(value);
+		if (bitmap == null) {
+			bitmap = new BitSet();
+			bitmaps.put(value, bitmap);
+		}
+		bitmap.set(number);
+	}
+
+	private void clearBits(int number, GitHubCompactIssue issue) {
+		clearBit(states, getState(issue), number);
+		clearBit(authors, issue.getUser(), number);
+		for (int i = 0; i < issue.getLabelCount(); i++) {
+			clearBit(labels, issue.getLabel(i), number);
+		}
+	}
+
+	private static void clearBit(Map<String, BitSet> bitmaps, String value,
+			int number) {
+		BitSet bitmap = value == null ? null : bitmaps.get(value);
+		if (bitmap != null) {
+			bitmap.clear(number);
+			if (bitmap.isEmpty()) {
+				bitmaps.remove(value);
+			}
+		}
+	}
+
+	private void addPostings(int number, Document document) {
+		for (String word : document.issueWords) {
+			addPosting(word, number);
+		}
+		for (String word : document.commentWords) {
+			addPosting(word, number);
+		}
+	}
+
+	private void addPosting(String word, int number) {
+		Set<Integer> posting = postings.get(word);
+		if (posting == null) {
+			posting = new HashSet<Integer>();
+			postings.put(word, posting);
+		}
+		posting.add(number);
+	}
+
+	private void removePostings(int number, Document document) {
+		for (String word : document.issueWords) {
+			removePosting(word, number);
+		}
+		for (String word : document.commentWords) {
+			removePosting(word, number);
+		}
+	}
+
+	private void removePosting(String word, int number) {
+		Set<Integer> posting = postings.get(word);
+		if (posting != null) {
+			posting.remove(number);
+			if (posting.isEmpty()) {
+				postings.remove(word);
+			}
+		}
+	}
+
+	/**
+	 * @return the issue number, or -1 if it is not a number
+	 */
+	private static int parseNumber(String number) {
+		try {
+			return number == null ? -1 : Integer.parseInt(number);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * add the lower case words of letters and digits of the text
+	 */
+	static void addWords(String text, Set<String> words) {
+		if (text == null) {
+			return;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length()
+					&& Character.isLetterOrDigit(text.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				words.add(text.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+	}
+}
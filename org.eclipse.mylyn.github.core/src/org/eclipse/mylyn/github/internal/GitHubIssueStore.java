@@ -0,0 +1,246 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * On-disk store of the issues and comments of one repository, one file per
+ * issue, updated whenever an issue has been retrieved. It also remembers the
+ * modification date of each issue as of the latest issue list, so that a
+ * stored issue that has not changed since can be used without a request.
+ */
+public class GitHubIssueStore {
+
+	private static final Log LOG = LogFactory.getLog(GitHubIssueStore.class);
+
+	private static final int VERSION = 1;
+
+	private static final String SUFFIX = ".issue";
+
+	/**
+	 * An issue with its comments as stored.
+	 */
+	public static class Entry {
+
+		private final GitHubIssue issue;
+
+		private final List<GitHubComment> comments;
+
+		Entry(GitHubIssue issue, List<GitHubComment> comments) {
+			this.issue = issue;
+			this.comments = Collections.unmodifiableList(comments);
+		}
+
+		public GitHubIssue getIssue() {
+			return issue;
+		}
+
+		public List<GitHubComment> getComments() {
+			return comments;
+		}
+	}
+
+	private final File directory;
+
+	/**
+	 * updated_at (in milliseconds) of each issue as of the latest list
+	 */
+	private final ConcurrentMap<String, Long> listed = new ConcurrentHashMap<String, Long>();
+
+	public GitHubIssueStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the directory of the repository within the root directory of
+	 *         all stores
+	 */
+	public static File getDirectory(File root, String repositoryUrl) {
+		return new File(root, repositoryUrl.replaceAll("[^a-zA-Z0-9.-]", "_"));
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the stored issue, or null if it is not stored, cannot be read
+	 *         or the number is not an issue number
+	 */
+	public Entry get(String number) {
+		File file = file(number);
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		try {
+			GitHubDataFile.Input in = GitHubDataFile.read(file);
+			try {
+				if (in.readInt() != VERSION) {
+					return null;
+				}
+				return read(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Discarding unreadable " + file, e);
+			}
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Store the issue with its comments, replacing the stored one. Issues
+	 * without an issue number are not stored.
+	 */
+	public void put(final GitHubIssue issue,
+			final List<GitHubComment> comments) {
+		File file = file(issue.getNumber());
+		if (file == null) {
+			return;
+		}
+		try {
+			GitHubDataFile.write(file, "issue" + issue.getNumber() + "-",
+					new GitHubDataFile.Content() {
+						public void write(GitHubDataFile.Output out)
+								throws IOException {
+							out.writeInt(VERSION);
+							GitHubIssueStore.write(out, issue, comments);
+						}
+					});
+		} catch (IOException e) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Failed to store issue " + issue.getNumber(), e);
+			}
+		}
+	}
+
+	public void remove(String number) {
+		File file = file(number);
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Remember the modification dates of listed issues until
+	 * {@link #clearListed()}.
+	 */
+	public void setListed(GitHubIssue[] issues) {
+		for (GitHubIssue issue : issues) {
+			long updated = GitHubDateCodec.parse(issue.getUpdated_at());
+			if (issue.getNumber() != null && updated >= 0) {
+				listed.put(issue.getNumber(), updated);
+			}
+		}
+	}
+
+	/**
+	 * Forget the listed issues, stored issues are requested again afterwards.
+	 */
+	public void clearListed() {
+		listed.clear();
+	}
+
+	/**
+	 * @return true if the latest list showed the stored issue with the same
+	 *         modification date
+	 */
+	public boolean isCurrent(Entry entry) {
+		Long updated = listed.get(entry.getIssue().getNumber());
+		return updated != null
+				&& updated.longValue() == GitHubDateCodec.parse(entry.getIssue()
+						.getUpdated_at());
+	}
+
+	/**
+	 * @return the file of the issue, or null if the number cannot be stored
+	 */
+	private File file(String number) {
+		if (number == null || !number.matches("\\d+")) {
+			return null;
+		}
+		return new File(directory, number + SUFFIX);
+	}
+
+	private static void write(GitHubDataFile.Output out, GitHubIssue issue,
+			List<GitHubComment> comments) throws IOException {
+		out.writeString(issue.getNumber());
+		out.writeString(issue.getUser());
+		out.writeString(issue.getTitle());
+		out.writeString(issue.getBody());
+		out.writeString(issue.getState());
+		out.writeString(issue.getCreated_at());
+		out.writeString(issue.getUpdated_at());
+		out.writeString(issue.getClosed_at());
+		String[] labels = issue.getLabels();
+		out.writeInt(labels == null ? -1 : labels.length);
+		if (labels != null) {
+			for (String label : labels) {
+				out.writeString(label);
+			}
+		}
+		out.writeInt(comments.size());
+		for (GitHubComment comment : comments) {
+			out.writeString(comment.getId());
+			out.writeString(comment.getUser());
+			out.writeString(comment.getBody());
+			out.writeString(comment.getCreated_at());
+		}
+	}
+
+	private static Entry read(GitHubDataFile.Input in) throws IOException {
+		GitHubIssue issue = new GitHubIssue(in.readString(), in.readString(),
+				in.readString(), in.readString());
+		issue.setState(in.readString());
+		issue.setCreated_at(in.readString());
+		issue.setUpdated_at(in.readString());
+		issue.setClosed_at(in.readString());
+		int labelCount = in.readInt();
+		if (labelCount >= 0) {
+			String[] labels = new String[labelCount];
+			for (int i = 0; i < labelCount; i++) {
+				labels[i] = in.readString();
+			}
+			issue.setLabels(labels);
+		}
+		int commentCount = in.readInt();
+		List<GitHubComment> comments = new ArrayList<GitHubComment>(
+				commentCount);
+		for (int i = 0; i < commentCount; i++) {
+			GitHubComment comment = new GitHubComment();
+			comment.setId(in.readString());
+			comment.setUser(in.readString());
+			comment.setBody(in.readString());
+			comment.setCreated_at(in.readString());
+			comments.add(comment);
+		}
+		return new Entry(issue, comments);
+	}
+}
@@ -23,6 +23,22 @@ public class GitHubIssues {
 
 	private GitHubIssue[] issues;
 
+	/**
+	 * Create an empty container, used when unmarshaling JSON
+	 */
+	public GitHubIssues() {
+	}
+
+	/**
+	 * Create a container of the given issues
+	 * 
+	 * @param issues
+	 *            - The issues decoded from a response
+	 */
+	public GitHubIssues(GitHubIssue[] issues) {
+		this.issues = issues;
+	}
+
 	/**
 	 * Getter for all issues inside this object
 	 * 
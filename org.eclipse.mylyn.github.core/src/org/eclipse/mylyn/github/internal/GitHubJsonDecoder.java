@@ -0,0 +1,196 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes issues and comments incrementally with a {@link GitHubJsonReader}:
+ * each issue of a list is handed to a {@link GitHubIssueCollector} as soon as
+ * it has been read. Unknown fields are skipped without building their values,
+ * and users and states are shared between the issues and comments of a
+ * response.
+ */
+public class GitHubJsonDecoder {
+
+	/**
+	 * the names of the decoded fields, pooled by the reader
+	 */
+	private static final String[] NAMES = { "issues", "issue", "comments",
+			"number", "title", "body", "user", "state", "created_at",
+			"updated_at", "closed_at", "id", "votes", "labels", "position",
+			"gravatar_id", "html_url", "pull_request_url" };
+
+	private static final String[] NO_LABELS = new String[0];
+
+	/**
+	 * Decode a <code>{"issues":[...]}</code> response.
+	 */
+	public static void decodeIssues(Reader in, GitHubIssueCollector collector)
+			throws IOException {
+		GitHubJsonReader reader = new GitHubJsonReader(in, NAMES);
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("issues")
+					&& reader.peek() == GitHubJsonReader.Token.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					collector.accept(decodeIssue(reader));
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	/**
+	 * Decode a <code>{"issues":[...]}</code> response into a list.
+	 */
+	public static GitHubIssues decodeIssues(Reader in) throws IOException {
+		final List<GitHubIssue> issues = new ArrayList<GitHubIssue>();
+		decodeIssues(in, new GitHubIssueCollector() {
+			@Override
+			public void accept(GitHubIssue issue) {
+				issues.add(issue);
+			}
+		});
+		return new GitHubIssues(issues.toArray(new GitHubIssue[issues.size()]));
+	}
+
+	/**
+	 * Decode a <code>{"comments":[...]}</code> response.
+	 */
+	public static GitHubComments decodeComments(Reader in) throws IOException {
+		List<GitHubComment> comments = new ArrayList<GitHubComment>();
+		GitHubJsonReader reader = new GitHubJsonReader(in, NAMES);
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("comments")
+					&& reader.peek() == GitHubJsonReader.Token.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					comments.add(decodeComment(reader));
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return new GitHubComments(comments
+				.toArray(new GitHubComment[comments.size()]));
+	}
+
+	/**
+	 * Decode a <code>{"issue":{...}}</code> response. An empty response
+	 * results in a {@link GitHubShowIssue} without issue.
+	 */
+	public static GitHubShowIssue decodeShowIssue(Reader in)
+			throws IOException {
+		GitHubShowIssue showIssue = new GitHubShowIssue();
+		GitHubJsonReader reader = new GitHubJsonReader(in, NAMES);
+		if (reader.peek() == GitHubJsonReader.Token.END_DOCUMENT) {
+			return showIssue;
+		}
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("issue")
+					&& reader.peek() == GitHubJsonReader.Token.BEGIN_OBJECT) {
+				showIssue.setIssue(decodeIssue(reader));
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return showIssue;
+	}
+
+	static GitHubIssue decodeIssue(GitHubJsonReader reader)
+			throws IOException {
+		GitHubIssue issue = new GitHubIssue();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("number")) {
+				issue.setNumber(reader.nextString());
+			} else if (name.equals("title")) {
+				issue.setTitle(reader.nextString());
+			} else if (name.equals("body")) {
+				issue.setBody(reader.nextString());
+			} else if (name.equals("user")) {
+				issue.setUser(reader.nextPooledString());
+			} else if (name.equals("state")) {
+				issue.setState(reader.nextPooledString());
+			} else if (name.equals("created_at")) {
+				issue.setCreated_at(reader.nextString());
+			} else if (name.equals("updated_at")) {
+				issue.setUpdated_at(reader.nextString());
+			} else if (name.equals("closed_at")) {
+				issue.setClosed_at(reader.nextString());
+			} else if (name.equals("labels")
+					&& reader.peek() == GitHubJsonReader.Token.BEGIN_ARRAY) {
+				issue.setLabels(decodeLabels(reader));
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return issue;
+	}
+
+	private static String[] decodeLabels(GitHubJsonReader reader)
+			throws IOException {
+		reader.beginArray();
+		if (!reader.hasNext()) {
+			reader.endArray();
+			return NO_LABELS;
+		}
+		List<String> labels = new ArrayList<String>(4);
+		while (reader.hasNext()) {
+			labels.add(reader.nextPooledString());
+		}
+		reader.endArray();
+		return labels.toArray(new String[labels.size()]);
+	}
+
+	static GitHubComment decodeComment(GitHubJsonReader reader)
+			throws IOException {
+		GitHubComment comment = new GitHubComment();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("id")) {
+				comment.setId(reader.nextString());
+			} else if (name.equals("body")) {
+				comment.setBody(reader.nextString());
+			} else if (name.equals("user")) {
+				comment.setUser(reader.nextPooledString());
+			} else if (name.equals("created_at")) {
+				comment.setCreated_at(reader.nextString());
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return comment;
+	}
+}
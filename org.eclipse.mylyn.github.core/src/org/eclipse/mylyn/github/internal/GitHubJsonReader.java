@@ -0,0 +1,485 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Pull parser reading JSON tokens incrementally from a {@link Reader}, so that
+ * a response can be decoded while it is read from the connection without
+ * holding the whole body in memory.
+ */
+public class GitHubJsonReader {
+
+	public enum Token {
+		BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	// scopes on the stack
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	private static final int DANGLING_NAME = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	private final Reader in;
+
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private int limit;
+
+	private int[] stack = new int[32];
+	private int stackSize;
+
+	private final StringBuilder builder = new StringBuilder();
+
+	/**
+	 * Strings up to this length are looked up in the pool before a new
+	 * string is created.
+	 */
+	private static final int MAX_POOLED_LENGTH = 32;
+
+	/**
+	 * Open addressed pool of names and short values, indexed by their hash
+	 * code. Names and values such as the user and state repeat in every
+	 * element of a list, so they are created once per response and shared.
+	 * A colliding string replaces the pooled one.
+	 */
+	private final String[] pool = new String[512];
+
+	/**
+	 * the peeked token, or null
+	 */
+	private Token token;
+
+	/**
+	 * the text of the peeked name, number or boolean. A peeked string is read
+	 * when it is consumed, so that it can be pooled or skipped.
+	 */
+	private String value;
+
+	/**
+	 * true while skipping a value: strings are scanned but not built
+	 */
+	private boolean skipping;
+
+	public GitHubJsonReader(Reader in) {
+		this.in = in;
+		stack[stackSize++] = EMPTY_DOCUMENT;
+		pool("null");
+		pool("true");
+		pool("false");
+	}
+
+	/**
+	 * Create a reader with the expected names already pooled: the names read
+	 * are then the same instances and compare equal by identity.
+	 */
+	public GitHubJsonReader(Reader in, String[] names) {
+		this(in);
+		for (String name : names) {
+			pool(name);
+		}
+	}
+
+	/**
+	 * @return the type of the next token without consuming it
+	 */
+	public Token peek() throws IOException {
+		if (token != null) {
+			return token;
+		}
+		int c;
+		switch (stack[stackSize - 1]) {
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			c = nextNonWhitespace();
+			if (c == -1) {
+				return token = Token.END_DOCUMENT;
+			}
+			return readValue(c);
+		case NONEMPTY_DOCUMENT:
+			c = nextNonWhitespace();
+			if (c == -1) {
+				return token = Token.END_DOCUMENT;
+			}
+			throw syntaxError("Expected end of document");
+		case EMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			c = nextNonWhitespace();
+			if (c == ']') {
+				stackSize--;
+				return token = Token.END_ARRAY;
+			}
+			return readValue(c);
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']') {
+				stackSize--;
+				return token = Token.END_ARRAY;
+			}
+			if (c != ',') {
+				throw syntaxError("Expected ',' or ']'");
+			}
+			return readValue(nextNonWhitespace());
+		case EMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if (c == '}') {
+				stackSize--;
+				return token = Token.END_OBJECT;
+			}
+			return readName(c);
+		case NONEMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if (c == '}') {
+				stackSize--;
+				return token = Token.END_OBJECT;
+			}
+			if (c != ',') {
+				throw syntaxError("Expected ',' or '}'");
+			}
+			return readName(nextNonWhitespace());
+		case DANGLING_NAME:
+			if (nextNonWhitespace() != ':') {
+				throw syntaxError("Expected ':'");
+			}
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			return readValue(nextNonWhitespace());
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * @return true if the current array or object has another element
+	 */
+	public boolean hasNext() throws IOException {
+		Token next = peek();
+		return next != Token.END_ARRAY && next != Token.END_OBJECT
+				&& next != Token.END_DOCUMENT;
+	}
+
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+	}
+
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+	}
+
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+		return value;
+	}
+
+	/**
+	 * @return the text of the next string, number or boolean, or null if the
+	 *         next value is null
+	 */
+	public String nextString() throws IOException {
+		return nextString(false);
+	}
+
+	/**
+	 * Like {@link #nextString()} but for values that repeat within a
+	 * response, such as user names: a short string equal to one read before
+	 * is returned as the same instance.
+	 */
+	public String nextPooledString() throws IOException {
+		return nextString(true);
+	}
+
+	private String nextString(boolean pooled) throws IOException {
+		Token next = peek();
+		if (next == Token.NULL) {
+			token = null;
+			return null;
+		}
+		if (next == Token.STRING) {
+			token = null;
+			return readString(pooled);
+		}
+		if (next != Token.NUMBER && next != Token.BOOLEAN) {
+			throw syntaxError("Expected a string but was " + next);
+		}
+		token = null;
+		return value;
+	}
+
+	/**
+	 * Skip the next value including nested arrays and objects, without
+	 * building the strings inside of it.
+	 */
+	public void skipValue() throws IOException {
+		skipping = true;
+		try {
+			int depth = 0;
+			do {
+				Token next = peek();
+				token = null;
+				if (next == Token.STRING) {
+					readString(false);
+				} else if (next == Token.BEGIN_ARRAY || next == Token.BEGIN_OBJECT) {
+					depth++;
+				} else if (next == Token.END_ARRAY
+						|| next == Token.END_OBJECT) {
+					depth--;
+				} else if (next == Token.END_DOCUMENT) {
+					throw syntaxError("Unexpected end of document");
+				}
+			} while (depth > 0);
+		} finally {
+			skipping = false;
+			value = null;
+		}
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private void expect(Token expected) throws IOException {
+		Token next = peek();
+		if (next != expected) {
+			throw syntaxError("Expected " + expected + " but was " + next);
+		}
+		token = null;
+	}
+
+	private Token readName(int c) throws IOException {
+		if (c != '"') {
+			throw syntaxError("Expected name");
+		}
+		stack[stackSize - 1] = DANGLING_NAME;
+		value = readString(true);
+		return token = Token.NAME;
+	}
+
+	private Token readValue(int c) throws IOException {
+		switch (c) {
+		case '{':
+			push(EMPTY_OBJECT);
+			return token = Token.BEGIN_OBJECT;
+		case '[':
+			push(EMPTY_ARRAY);
+			return token = Token.BEGIN_ARRAY;
+		case '"':
+			value = null;
+			return token = Token.STRING;
+		case -1:
+			throw syntaxError("Unexpected end of document");
+		default:
+			pos--;
+			value = readLiteral();
+			if (value.equals("null")) {
+				value = null;
+				return token = Token.NULL;
+			}
+			if (value.equals("true") || value.equals("false")) {
+				return token = Token.BOOLEAN;
+			}
+			return token = Token.NUMBER;
+		}
+	}
+
+	private void push(int scope) {
+		if (stackSize == stack.length) {
+			int[] newStack = new int[stackSize * 2];
+			System.arraycopy(stack, 0, newStack, 0, stackSize);
+			stack = newStack;
+		}
+		stack[stackSize++] = scope;
+	}
+
+	/**
+	 * read a string up to the closing quote, the opening quote has already
+	 * been read
+	 */
+	private String readString(boolean pooled) throws IOException {
+		builder.setLength(0);
+		while (true) {
+			int start = pos;
+			while (pos < limit) {
+				char c = buffer[pos++];
+				if (c == '"') {
+					if (skipping) {
+						return null;
+					}
+					if (builder.length() == 0) {
+						return pooled ? pool(buffer, start, pos - start - 1)
+								: new String(buffer, start, pos - start - 1);
+					}
+					builder.append(buffer, start, pos - start - 1);
+					return builder.toString();
+				} else if (c == '\\') {
+					if (!skipping) {
+						builder.append(buffer, start, pos - start - 1);
+					}
+					char escaped = readEscape();
+					if (!skipping) {
+						builder.append(escaped);
+					}
+					start = pos;
+				}
+			}
+			if (!skipping) {
+				builder.append(buffer, start, pos - start);
+			}
+			if (!fill()) {
+				throw syntaxError("Unterminated string");
+			}
+		}
+	}
+
+	private char readEscape() throws IOException {
+		if (pos == limit && !fill()) {
+			throw syntaxError("Unterminated escape sequence");
+		}
+		char c = buffer[pos++];
+		switch (c) {
+		case 'u':
+			int unicode = 0;
+			for (int i = 0; i < 4; i++) {
+				if (pos == limit && !fill()) {
+					throw syntaxError("Unterminated escape sequence");
+				}
+				int digit = Character.digit(buffer[pos++], 16);
+				if (digit == -1) {
+					throw syntaxError("Malformed unicode escape");
+				}
+				unicode = (unicode << 4) + digit;
+			}
+			return (char) unicode;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		default:
+			// '"', '\\', '/'
+			return c;
+		}
+	}
+
+	private String readLiteral() throws IOException {
+		builder.setLength(0);
+		while (true) {
+			int start = pos;
+			while (pos < limit) {
+				char c = buffer[pos];
+				if (c == ',' || c == ']' || c == '}' || c == ':' || c == ' '
+						|| c == '\t' || c == '\n' || c == '\r') {
+					if (builder.length() == 0 && pos > start
+							&& !isNumber(buffer[start])) {
+						// null, true or false
+						return pool(buffer, start, pos - start);
+					}
+					builder.append(buffer, start, pos - start);
+					return builder.toString();
+				}
+				pos++;
+			}
+			builder.append(buffer, start, pos - start);
+			if (!fill()) {
+				return builder.toString();
+			}
+		}
+	}
+
+	private static boolean isNumber(char c) {
+		return c == '-' || (c >= '0' && c <= '9');
+	}
+
+	private void pool(String value) {
+		pool[index(value.hashCode())] = value;
+	}
+
+	/**
+	 * @return the pooled string equal to the characters, or a new string
+	 *         that replaces the pooled one
+	 */
+	private String pool(char[] chars, int start, int length) {
+		if (length > MAX_POOLED_LENGTH) {
+			return new String(chars, start, length);
+		}
+		int hash = 0;
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		int index = index(hash);
+		String pooled = pool[index];
+		if (pooled != null && pooled.length() == length) {
+			int i = 0;
+			while (i < length && pooled.charAt(i) == chars[start + i]) {
+				i++;
+			}
+			if (i == length) {
+				return pooled;
+			}
+		}
+		pooled = new String(chars, start, length);
+		pool[index] = pooled;
+		return pooled;
+	}
+
+	private int index(int hash) {
+		return (hash ^ (hash >>> 16)) & (pool.length - 1);
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		while (pos < limit || fill()) {
+			char c = buffer[pos++];
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	private boolean fill() throws IOException {
+		int read = in.read(buffer, 0, buffer.length);
+		if (read <= 0) {
+			pos = limit = 0;
+			return false;
+		}
+		pos = 0;
+		limit = read;
+		return true;
+	}
+
+	private JsonParseException syntaxError(String message) {
+		return new JsonParseException(message);
+	}
+}
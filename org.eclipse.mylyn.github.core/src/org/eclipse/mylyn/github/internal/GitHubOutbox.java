@@ -0,0 +1,616 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+
+/**
+ * Changes to existing issues of one repository waiting to be sent to GitHub.
+ * Changes are kept in a file, so that they survive a restart, and sent by a
+ * background thread.
+ * <p>
+ * A change to an issue that is still waiting is merged into the waiting
+ * change, so that a burst of edits is sent as few requests as possible. The
+ * changes of one issue are sent in the order they were made, with the parts
+ * of a merged change in the order edit, comments, labels, state. If GitHub
+ * cannot be reached, denies the permission or has exhausted the rate limit,
+ * the change is kept and sending is retried later. Changes that GitHub
+ * refuses as invalid, or answers with a response that cannot be read, are
+ * dropped and reported by {@link #takeRefused}.
+ */
+public class GitHubOutbox {
+
+	private static final Log LOG = LogFactory.getLog(GitHubOutbox.class);
+
+	private static final int VERSION = 1;
+
+	/**
+	 * delay (in milliseconds) of the first retry, doubled for each failed
+	 * retry up to {@link #MAX_RETRY_DELAY}
+	 */
+	private static final long RETRY_DELAY = 15000;
+
+	private static final long MAX_RETRY_DELAY = 10 * 60 * 1000;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * Changes to one issue.
+	 */
+	public static class Change {
+
+		private final String number;
+
+		private String title;
+
+		private String body;
+
+		private final List<String> comments = new ArrayList<String>();
+
+		private final Set<String> addedLabels = new LinkedHashSet<String>();
+
+		private final Set<String> removedLabels = new LinkedHashSet<String>();
+
+		private String state;
+
+		public Change(String number) {
+			this.number = number;
+		}
+
+		public String getNumber() {
+			return number;
+		}
+
+		/**
+		 * Edit the issue, which always sets both title and body.
+		 */
+		public Change edit(String title, String body) {
+			this.title = title;
+			this.body = body;
+			return this;
+		}
+
+		public Change addComment(String comment) {
+			comments.add(comment);
+			return this;
+		}
+
+		public Change addLabel(String label) {
+			removedLabels.remove(label);
+			addedLabels.add(label);
+			return this;
+		}
+
+		public Change removeLabel(String label) {
+			addedLabels.remove(label);
+			removedLabels.add(label);
+			return this;
+		}
+
+		/**
+		 * @param state
+		 *            - "open" or "closed"
+		 */
+		public Change setState(String state) {
+			this.state = state;
+			return this;
+		}
+
+		public boolean isEdited() {
+			return title != null || body != null;
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public String getBody() {
+			return body;
+		}
+
+		/**
+		 * @return the state to change to, or null
+		 */
+		public String getState() {
+			return state;
+		}
+
+		/**
+		 * @return true if nothing has to be sent
+		 */
+		public boolean isEmpty() {
+			return getCallCount() == 0;
+		}
+
+		/**
+		 * @return the number of requests needed to send the change
+		 */
+		public int getCallCount() {
+			return (isEdited() ? 1 : 0) + comments.size() + addedLabels.size()
+					+ removedLabels.size() + (state != null ? 1 : 0);
+		}
+
+		/**
+		 * Merge a later change to the same issue into this one.
+		 */
+		void merge(Change later) {
+			if (later.isEdited()) {
+				edit(later.title, later.body);
+			}
+			comments.addAll(later.comments);
+			for (String label : later.addedLabels) {
+				addLabel(label);
+			}
+			for (String label : later.removedLabels) {
+				removeLabel(label);
+			}
+			if (later.state != null) {
+				state = later.state;
+			}
+		}
+	}
+
+	private final GitHubRepositoryConnector connector;
+
+	private final TaskRepository repository;
+
+	/**
+	 * the file the changes are kept in, or null to keep them in memory only
+	 */
+	private final File file;
+
+	/**
+	 * waiting changes by issue number, in the order of their first change
+	 */
+	private Map<String, Change> pending = new LinkedHashMap<String, Change>();
+
+	/**
+	 * the change being sent, or null
+	 */
+	private Change sending;
+
+	/**
+	 * why the dropped changes were refused, by issue number
+	 */
+	private final Map<String, IStatus> refused = new HashMap<String, IStatus>();
+
+	private final Object drainLock = new Object();
+
+	private long retryDelay = RETRY_DELAY;
+
+	private final ScheduledExecutorService executor = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "GitHub outbox-"
+							+ threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/**
+	 * whether a retry is scheduled, only used on the outbox thread
+	 */
+	private boolean retryScheduled;
+
+	private final Runnable drainTask = new Runnable() {
+		public void run() {
+			if (drain()) {
+				retryDelay = RETRY_DELAY;
+			} else if (!retryScheduled) {
+				retryScheduled = true;
+				executor.schedule(retryTask, retryDelay, TimeUnit.MILLISECONDS);
+				retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+			}
+		}
+	};
+
+	private final Runnable retryTask = new Runnable() {
+		public void run() {
+			retryScheduled = false;
+			drainTask.run();
+		}
+	};
+
+	/**
+	 * Create the outbox of a repository, loading the changes left in the
+	 * file. Call {@link #schedule()} to send them.
+	 *
+	 * @param file
+	 *            - the file to keep the changes in, or null
+	 */
+	public GitHubOutbox(GitHubRepositoryConnector connector,
+			TaskRepository repository, File file) {
+		this.connector = connector;
+		this.repository = repository;
+		this.file = file;
+		if (file != null && file.isFile()) {
+			load();
+		}
+	}
+
+	/**
+	 * Send the waiting changes in the background.
+	 */
+	public void schedule() {
+		executor.execute(drainTask);
+	}
+
+	/**
+	 * Add a change and schedule it to be sent.
+	 */
+	public void add(Change change) {
+		if (change.isEmpty()) {
+			return;
+		}
+		synchronized (this) {
+			Change waiting = pending.get(change.getNumber());
+			if (waiting != null) {
+				waiting.merge(change);
+				connector.getInstrumentation().recordCoalescedSubmit();
+			} else {
+				pending.put(change.getNumber(), change);
+			}
+			save();
+		}
+		schedule();
+	}
+
+	/**
+	 * @return the number of issues with changes that have not been sent
+	 */
+	public synchronized int size() {
+		return pending.size() + (sending != null ? 1 : 0);
+	}
+
+	/**
+	 * @return the issue with the title, body and state of the changes that
+	 *         have not been sent applied, the given issue if there are none
+	 */
+	public synchronized GitHubIssue apply(GitHubIssue issue) {
+		Change[] changes = { sending, pending.get(issue.getNumber()) };
+		GitHubIssue applied = issue;
+		for (Change change : changes) {
+			if (change == null || !change.getNumber().equals(issue.getNumber())) {
+				continue;
+			}
+			if (applied == issue) {
+				applied = copy(issue);
+			}
+			if (change.isEdited()) {
+				applied.setTitle(change.getTitle());
+				applied.setBody(change.getBody());
+			}
+			if (change.getState() != null) {
+				applied.setState(change.getState());
+			}
+		}
+		return applied;
+	}
+
+	/**
+	 * @return why the last change to the issue was refused and dropped, or
+	 *         null; each refusal is only returned once
+	 */
+	public synchronized IStatus takeRefused(String number) {
+		return refused.remove(number);
+	}
+
+	/**
+	 * Send the waiting changes on the calling thread.
+	 *
+	 * @return true if all changes were sent or dropped, false if sending has
+	 *         to be retried
+	 */
+	public boolean drain() {
+		synchronized (drainLock) {
+			while (true) {
+				Change change;
+				synchronized (this) {
+					Iterator<Change> changes = pending.values().iterator();
+					if (!changes.hasNext()) {
+						return true;
+					}
+					change = changes.next();
+					changes.remove();
+					sending = change;
+				}
+				try {
+					int calls = send(change);
+					connector.getInstrumentation().recordSubmit(calls);
+					invalidate(change);
+				} catch (GitHubServiceException e) {
+					if (GitHubRepositoryConnector.isUnavailable(e)
+							|| GitHubRepositoryConnector.isPermissionDenied(e)) {
+						// expired credentials or the rate limit may recover
+						requeue(change);
+						return false;
+					}
+					refuse(change, "GitHub refused the changes to issue "
+							+ change.getNumber() + ": " + e.getMessage(), e);
+				} catch (RuntimeException e) {
+					// sending the change again would fail the same way
+					refuse(change, "Cannot send the changes to issue "
+							+ change.getNumber() + ": " + e, e);
+				} finally {
+					synchronized (this) {
+						sending = null;
+						save();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop sending changes, waiting changes are kept.
+	 */
+	public void dispose() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * drop the rest of a change, keeping why for {@link #takeRefused}
+	 */
+	private void refuse(Change change, String message, Exception e) {
+		synchronized (this) {
+			refused.put(change.getNumber(), GitHub.createErrorStatus(message, e));
+		}
+		invalidate(change);
+	}
+
+	/**
+	 * send the change, removing and saving each part once it has been sent,
+	 * so that it is not sent again after a crash; the parts are removed
+	 * holding the lock of this outbox, which {@link #save()} and
+	 * {@link #apply} read the change with
+	 *
+	 * @return the number of requests made
+	 */
+	private int send(Change change) throws GitHubServiceException {
+		GitHubService service = connector.getService();
+		GitHubRepositoryContext context = connector.getContext(repository);
+		String user = context.getUser();
+		String project = context.getProject();
+		GitHubCredentials credentials = context.getCredentials();
+		GitHubIssue issue = new GitHubIssue(change.getNumber(), null, change
+				.getTitle(), change.getBody());
+		int number = Integer.parseInt(change.getNumber());
+		int calls = 0;
+		if (change.isEdited()) {
+			service.editIssue(user, project, issue, credentials);
+			synchronized (this) {
+				change.title = null;
+				change.body = null;
+				save();
+			}
+			calls++;
+		}
+		while (!change.comments.isEmpty()) {
+			service.addComment(user, project, change.getNumber(),
+					credentials, change.comments.get(0));
+			synchronized (this) {
+				change.comments.remove(0);
+				save();
+			}
+			calls++;
+		}
+		for (Iterator<String> labels = change.addedLabels.iterator(); labels
+				.hasNext();) {
+			service.addLabel(user, project, labels.next(), number,
+					credentials);
+			synchronized (this) {
+				labels.remove();
+				save();
+			}
+			calls++;
+		}
+		for (Iterator<String> labels = change.removedLabels.iterator(); labels
+				.hasNext();) {
+			service.removeLabel(user, project, labels.next(), number,
+					credentials);
+			synchronized (this) {
+				labels.remove();
+				save();
+			}
+			calls++;
+		}
+		if (change.getState() != null) {
+			if ("open".equals(change.getState())) {
+				service.reopenIssueStatus(user, project, issue, credentials);
+				calls++;
+			} else if ("closed".equals(change.getState())) {
+				service.closeIssueStatus(user, project, issue, credentials);
+				calls++;
+			}
+			synchronized (this) {
+				change.state = null;
+				save();
+			}
+		}
+		return calls;
+	}
+
+	/**
+	 * put the rest of a change back in front, before later changes to the
+	 * same issue
+	 */
+	private synchronized void requeue(Change change) {
+		Change later = pending.get(change.getNumber());
+		if (later != null) {
+			change.merge(later);
+			connector.getInstrumentation().recordCoalescedSubmit();
+		}
+		Map<String, Change> requeued = new LinkedHashMap<String, Change>();
+		requeued.put(change.getNumber(), change);
+		for (Change other : pending.values()) {
+			if (!other.getNumber().equals(change.getNumber())) {
+				requeued.put(other.getNumber(), other);
+			}
+		}
+		pending = requeued;
+	}
+
+	/**
+	 * the stored issue does not have the change
+	 */
+	private void invalidate(Change change) {
+		GitHubIssueStore store = connector.getIssueStore(repository);
+		if (store != null) {
+			store.remove(change.getNumber());
+		}
+	}
+
+	private static GitHubIssue copy(GitHubIssue issue) {
+		GitHubIssue copy = new GitHubIssue(issue.getNumber(), issue.getUser(),
+				issue.getTitle(), issue.getBody());
+		copy.setState(issue.getState());
+		copy.setCreated_at(issue.getCreated_at());
+		copy.setUpdated_at(issue.getUpdated_at());
+		copy.setClosed_at(issue.getClosed_at());
+		copy.setLabels(issue.getLabels());
+		return copy;
+	}
+
+	/**
+	 * write the waiting changes, including the one being sent
+	 */
+	private void save() {
+		if (file == null) {
+			return;
+		}
+		final List<Change> changes = new ArrayList<Change>();
+		if (sending != null) {
+			changes.add(sending);
+		}
+		for (Change change : pending.values()) {
+			if (change != sending) {
+				changes.add(change);
+			}
+		}
+		if (changes.isEmpty()) {
+			file.delete();
+			return;
+		}
+		try {
+			GitHubDataFile.write(file, "outbox", new GitHubDataFile.Content() {
+				public void write(GitHubDataFile.Output out) throws IOException {
+					out.writeInt(VERSION);
+					out.writeInt(changes.size());
+					for (Change change : changes) {
+						GitHubOutbox.write(out, change);
+					}
+				}
+			});
+		} catch (IOException e) {
+			if (LOG.isWarnEnabled()) {
+				LOG.warn("Failed to save outbox " + file, e);
+			}
+		}
+	}
+
+	private void load() {
+		try {
+			GitHubDataFile.Input in = GitHubDataFile.read(file);
+			try {
+				if (in.readInt() != VERSION) {
+					return;
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					Change change = read(in);
+					Change waiting = pending.get(change.getNumber());
+					if (waiting != null) {
+						waiting.merge(change);
+					} else {
+						pending.put(change.getNumber(), change);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			if (LOG.isErrorEnabled()) {
+				LOG.error("Cannot read outbox " + file, e);
+			}
+		}
+	}
+
+	private static void write(GitHubDataFile.Output out, Change change)
+			throws IOException {
+		out.writeString(change.number);
+		out.writeBoolean(change.isEdited());
+		if (change.isEdited()) {
+			out.writeString(change.title);
+			out.writeString(change.body);
+		}
+		writeStrings(out, change.comments);
+		writeStrings(out, change.addedLabels);
+		writeStrings(out, change.removedLabels);
+		out.writeString(change.state);
+	}
+
+	private static Change read(GitHubDataFile.Input in) throws IOException {
+		Change change = new Change(in.readString());
+		if (in.readBoolean()) {
+			change.edit(in.readString(), in.readString());
+		}
+		change.comments.addAll(readStrings(in));
+		change.addedLabels.addAll(readStrings(in));
+		change.removedLabels.addAll(readStrings(in));
+		change.state = in.readString();
+		return change;
+	}
+
+	private static void writeStrings(GitHubDataFile.Output out,
+			Collection<String> values) throws IOException {
+		out.writeInt(values.size());
+		for (String value : values) {
+			out.writeString(value);
+		}
+	}
+
+	private static List<String> readStrings(GitHubDataFile.Input in)
+			throws IOException {
+		int count = in.readInt();
+		List<String> values = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(in.readString());
+		}
+		return values;
+	}
+}
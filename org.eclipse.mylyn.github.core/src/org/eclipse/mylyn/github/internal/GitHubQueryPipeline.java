@@ -0,0 +1,238 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+
+/**
+ * Runs a query as a pipeline of three stages connected by bounded queues:
+ * <ol>
+ * <li>a fetcher thread reads and decodes the issue lists from the network</li>
+ * <li>a builder thread creates the partial {@link TaskData} of each issue</li>
+ * <li>the calling thread hands the task data to the
+ * {@link TaskDataCollector}</li>
+ * </ol>
+ * so the first results reach the collector while the rest of the list is
+ * still being downloaded.
+ */
+public class GitHubQueryPipeline {
+
+	/**
+	 * Default number of items buffered between two stages.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	/**
+	 * how often (in milliseconds) the progress monitor is checked for
+	 * cancellation while waiting for a result
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	/**
+	 * marks the end of the items of a queue
+	 */
+	private static final Object END = new Object();
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final GitHubRepositoryConnector connector;
+
+	private final int queueCapacity;
+
+	/**
+	 * Runs the stages of all queries of the connector, threads are released
+	 * when idle. The two stages of a query wait for each other, so a query
+	 * never waits for a thread.
+	 */
+	private final ExecutorService executor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable,
+							"GitHub query pipeline-"
+									+ threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	public GitHubQueryPipeline(GitHubRepositoryConnector connector) {
+		this(connector, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	public GitHubQueryPipeline(GitHubRepositoryConnector connector,
+			int queueCapacity) {
+		this.connector = connector;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Search the issues of the given states and deliver partial task data for
+	 * each of them to the collector.
+	 *
+	 * @return {@link Status#OK_STATUS}, {@link Status#CANCEL_STATUS} if the
+	 *         monitor was canceled, or an error status if the issues could not
+	 *         be retrieved
+	 */
+	public IStatus run(final TaskRepository repository,
+			final String[] statuses, final String queryText,
+			TaskDataCollector collector, IProgressMonitor monitor) {
+		GitHubRepositoryContext context = connector.getContext(repository);
+		final String user = context.getUser();
+		final String project = context.getProject();
+		final GitHubCredentials credentials = context.getCredentials();
+		final GitHubService service = connector.getService();
+		final GitHubTaskDataHandler taskDataHandler = connector
+				.getTaskDataHandler();
+		final BlockingQueue<Object> issues = new ArrayBlockingQueue<Object>(
+				queueCapacity);
+		final BlockingQueue<Object> taskData = new ArrayBlockingQueue<Object>(
+				queueCapacity);
+
+		Future<Object> fetcher = null;
+		Future<Object> builder = null;
+		try {
+			fetcher = executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					try {
+						for (String status : statuses) {
+							service.searchIssues(user, project, status,
+									queryText, credentials,
+									new GitHubIssueCollector() {
+										@Override
+										public void accept(GitHubIssue issue) {
+											put(issues, issue);
+										}
+									});
+						}
+					} finally {
+						put(issues, END);
+					}
+					return null;
+				}
+			});
+			builder = executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					try {
+						Object item;
+						while ((item = issues.take()) != END) {
+							put(taskData, taskDataHandler.createPartialTaskData(
+									repository, null, user, project,
+									(GitHubIssue) item, null));
+						}
+					} finally {
+						put(taskData, END);
+					}
+					return null;
+				}
+			});
+
+			Object item;
+			while ((item = poll(taskData, monitor)) != END) {
+				if (item == null) {
+					return Status.CANCEL_STATUS;
+				}
+				collector.accept((TaskData) item);
+				monitor.worked(1);
+			}
+			// the builder first: if it failed, the fetcher may be blocked on
+			// the full queue until it is canceled below
+			checkStage(builder);
+			checkStage(fetcher);
+			return Status.OK_STATUS;
+		} catch (GitHubServiceException e) {
+			return GitHub.createErrorStatus(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Status.CANCEL_STATUS;
+		} finally {
+			// aborts the stages that are still running
+			if (fetcher != null) {
+				fetcher.cancel(true);
+			}
+			if (builder != null) {
+				builder.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * rethrow the failure of a finished stage
+	 */
+	private static void checkStage(Future<Object> stage)
+			throws GitHubServiceException, InterruptedException {
+		try {
+			stage.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof GitHubServiceException) {
+				throw (GitHubServiceException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new GitHubServiceException(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * wait for the next item, returns null if the monitor was canceled
+	 */
+	private static Object poll(BlockingQueue<Object> queue,
+			IProgressMonitor monitor) throws InterruptedException {
+		while (!monitor.isCanceled()) {
+			Object item = queue.poll(CANCEL_POLL_INTERVAL,
+					TimeUnit.MILLISECONDS);
+			if (item != null) {
+				return item;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * blocks while the next stage is behind, aborts the stage if the pipeline
+	 * is canceled
+	 */
+	private static void put(BlockingQueue<Object> queue, Object item) {
+		try {
+			queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Shapes the requests sent with each {@link GitHubCredentials} with a token
+ * bucket so that concurrent synchronizations queue up instead of running into
+ * the API rate limit. The bucket is corrected with the quota reported by the
+ * server in the <code>X-RateLimit-*</code> response headers.
+ * <p>
+ * The rate limit applies to the GitHub account, so all services share the
+ * {@link #getDefault() default} limiter.
+ */
+public class GitHubRateLimiter {
+
+	/**
+	 * Requests per {@link #DEFAULT_WINDOW} allowed by the GitHub API v2.
+	 */
+	public static final int DEFAULT_LIMIT = 60;
+
+	/**
+	 * The period (in milliseconds) after which the quota has been refilled.
+	 */
+	public static final long DEFAULT_WINDOW = 60 * 1000;
+
+	/**
+	 * Longest time (in milliseconds) a request waits for the quota before it
+	 * fails.
+	 */
+	public static final long MAX_WAIT = 5 * 60 * 1000;
+
+	/**
+	 * how often (in milliseconds) the progress monitor is checked for
+	 * cancellation while waiting for the quota
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	private static final GitHubRateLimiter DEFAULT = new GitHubRateLimiter();
+
+	/**
+	 * The request budget of one account.
+	 */
+	public static class Budget {
+		private final int limit;
+		private final int remaining;
+		private final long resetTime;
+
+		public Budget(int limit, int remaining, long resetTime) {
+			this.limit = limit;
+			this.remaining = remaining;
+			this.resetTime = resetTime;
+		}
+
+		/**
+		 * @return the number of requests allowed per window
+		 */
+		public int getLimit() {
+			return limit;
+		}
+
+		/**
+		 * @return the number of requests that can be sent right now
+		 */
+		public int getRemaining() {
+			return remaining;
+		}
+
+		/**
+		 * @return the time (in milliseconds) at which the quota is reset as
+		 *         reported by the server, or 0 if unknown
+		 */
+		public long getResetTime() {
+			return resetTime;
+		}
+	}
+
+	/**
+	 * The time and the waiting of a limiter, replaced in tests.
+	 */
+	public static class Clock {
+
+		/**
+		 * @return the current time in milliseconds
+		 */
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+
+		/**
+		 * Wait on the monitor, which is held by the calling thread, until it
+		 * is notified or the time has passed.
+		 */
+		public void await(Object monitor, long millis)
+				throws InterruptedException {
+			monitor.wait(millis);
+		}
+	}
+
+	/**
+	 * token bucket of one account, guarded by its own monitor
+	 */
+	private static class Bucket {
+		private int limit;
+		private double tokens;
+		private long lastRefill;
+		private long resetTime;
+
+		Bucket(int limit, long now) {
+			this.limit = limit;
+			this.tokens = limit;
+			this.lastRefill = now;
+		}
+
+		void refill(long now, long window) {
+			if (resetTime > 0 && now >= resetTime) {
+				// the server has granted a new quota
+				tokens = limit;
+				resetTime = 0;
+			} else if (now > lastRefill && resetTime == 0) {
+				tokens = Math.min(limit, tokens + (now - lastRefill)
+						* (double) limit / window);
+			}
+			lastRefill = now;
+		}
+
+		/**
+		 * @return the time to wait for the next token
+		 */
+		long waitTime(long now, long window) {
+			if (resetTime > 0) {
+				return resetTime - now;
+			}
+			return (long) Math.ceil((1 - tokens) * window / limit);
+		}
+	}
+
+	private final Map<String, Bucket> buckets = new HashMap<String, Bucket>();
+
+	private final int defaultLimit;
+
+	private final long window;
+
+	private final Clock clock;
+
+	public GitHubRateLimiter() {
+		this(DEFAULT_LIMIT, DEFAULT_WINDOW);
+	}
+
+	public GitHubRateLimiter(int defaultLimit, long window) {
+		this(defaultLimit, window, new Clock());
+	}
+
+	public GitHubRateLimiter(int defaultLimit, long window, Clock clock) {
+		this.defaultLimit = defaultLimit;
+		this.window = window;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return the limiter shared by all services
+	 */
+	public static GitHubRateLimiter getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Take a token for a request, waits while the quota of the account is
+	 * exhausted.
+	 *
+	 * @throws GitHubServiceException
+	 *             if the quota is not refilled within {@link #MAX_WAIT}
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 */
+	public void acquire(GitHubCredentials credentials)
+			throws GitHubServiceException, InterruptedException {
+		acquire(credentials, new NullProgressMonitor());
+	}
+
+	/**
+	 * Take a token for a request like {@link #acquire(GitHubCredentials)}.
+	 *
+	 * @param monitor
+	 *            - checked while waiting, canceling it aborts the wait with an
+	 *            {@link OperationCanceledException}
+	 */
+	public void acquire(GitHubCredentials credentials, IProgressMonitor monitor)
+			throws GitHubServiceException, InterruptedException {
+		Bucket bucket = getBucket(credentials);
+		long deadline = clock.currentTimeMillis() + MAX_WAIT;
+		synchronized (bucket) {
+			while (true) {
+				long now = clock.currentTimeMillis();
+				bucket.refill(now, window);
+				if (bucket.tokens >= 1) {
+					bucket.tokens--;
+					return;
+				}
+				long wait = bucket.waitTime(now, window);
+				if (now + wait > deadline) {
+					throw new GitHubServiceException(
+							"API rate limit exceeded, no requests are allowed before "
+									+ new Date(now + wait));
+				}
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				clock.await(bucket, Math.max(1, Math.min(wait,
+						CANCEL_POLL_INTERVAL)));
+			}
+		}
+	}
+
+	/**
+	 * Correct the bucket with the quota reported by the server.
+	 *
+	 * @param limit
+	 *            the <code>X-RateLimit-Limit</code> header or -1
+	 * @param remaining
+	 *            the <code>X-RateLimit-Remaining</code> header or -1
+	 * @param resetTime
+	 *            the <code>X-RateLimit-Reset</code> header in milliseconds or
+	 *            0
+	 */
+	public void update(GitHubCredentials credentials, int limit,
+			int remaining, long resetTime) {
+		Bucket bucket = getBucket(credentials);
+		synchronized (bucket) {
+			bucket.refill(clock.currentTimeMillis(), window);
+			if (limit > 0) {
+				bucket.limit = limit;
+			}
+			if (remaining >= 0) {
+				// requests in flight are already taken from the bucket
+				bucket.tokens = Math.min(bucket.tokens, remaining);
+			}
+			if (resetTime > 0) {
+				bucket.resetTime = remaining == 0 ? resetTime : 0;
+			}
+			bucket.notifyAll();
+		}
+	}
+
+	/**
+	 * Record a request that was refused because the quota was exhausted, so
+	 * that further requests wait for the bucket to refill.
+	 */
+	public void throttled(GitHubCredentials credentials, long resetTime) {
+		Bucket bucket = getBucket(credentials);
+		synchronized (bucket) {
+			bucket.refill(clock.currentTimeMillis(), window);
+			bucket.tokens = Math.min(bucket.tokens, 0);
+			if (resetTime > 0) {
+				bucket.resetTime = resetTime;
+			}
+		}
+	}
+
+	/**
+	 * @return the current request budget of the account
+	 */
+	public Budget getBudget(GitHubCredentials credentials) {
+		Bucket bucket = getBucket(credentials);
+		synchronized (bucket) {
+			bucket.refill(clock.currentTimeMillis(), window);
+			return new Budget(bucket.limit, (int) Math.max(0, bucket.tokens),
+					bucket.resetTime);
+		}
+	}
+
+	private Bucket getBucket(GitHubCredentials credentials) {
+		String key = credentials == null || credentials.getUsername() == null ? ""
+				: credentials.getUsername();
+		synchronized (buckets) {
+			Bucket bucket = buckets.get(key);
+			if (bucket == null) {
+				bucket = new Bucket(defaultLimit, clock.currentTimeMillis());
+				buckets.put(key, bucket);
+			}
+			return bucket;
+		}
+	}
+}
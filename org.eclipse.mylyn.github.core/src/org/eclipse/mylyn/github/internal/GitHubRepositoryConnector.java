@@ -16,15 +16,37 @@
  */
 package org.eclipse.mylyn.github.internal;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.mylyn.tasks.core.AbstractRepositoryConnector;
+import org.eclipse.mylyn.tasks.core.IRepositoryListener;
 import org.eclipse.mylyn.tasks.core.IRepositoryQuery;
 import org.eclipse.mylyn.tasks.core.ITask;
 import org.eclipse.mylyn.tasks.core.TaskRepository;
@@ -35,11 +57,14 @@ import org.eclipse.mylyn.tasks.core.data.TaskMapper;
 import org.eclipse.mylyn.tasks.core.sync.ISynchronizationSession;
 
 /**
- * GitHub connector.
+ * GitHub connector. It listens to the repository manager to notice changed
+ * repository settings at once; credentials changed without notice are
+ * noticed when they are read again, see {@link #getContext}.
  * 
  * @author Christian Trutz
  */
-public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
+public class GitHubRepositoryConnector extends AbstractRepositoryConnector
+		implements IRepositoryListener {
 
 	/**
 	 * GitHub kind.
@@ -47,17 +72,109 @@ public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
 	protected static final String KIND = GitHub.CONNECTOR_KIND;
 
 	/**
-	 * GitHub service which creates, lists, deletes, etc. GitHub tasks.
+	 * GitHub service which creates, lists, deletes, etc. GitHub tasks. All
+	 * requests of this connector share its pooled HTTP transport.
 	 */
-	private final GitHubService service = new GitHubService();
+	private final GitHubService service;
 
 	/**
 	 * GitHub specific {@link AbstractTaskDataHandler}.
 	 */
 	private final GitHubTaskDataHandler taskDataHandler;
 
+	/**
+	 * Fetches task data of many issues concurrently.
+	 */
+	private final GitHubTaskDataFetcher taskDataFetcher;
+
+	/**
+	 * Runs queries that have to be searched remotely.
+	 */
+	private final GitHubQueryPipeline queryPipeline;
+
+	/**
+	 * Directory of the local issue stores, or null to not store issues.
+	 */
+	private final File issueStoreDirectory;
+
+	private final ConcurrentMap<String, GitHubIssueStore> issueStores = new ConcurrentHashMap<String, GitHubIssueStore>();
+
+	private final ConcurrentMap<String, GitHubIssueIndex> issueIndexes = new ConcurrentHashMap<String, GitHubIssueIndex>();
+
+	private final ConcurrentMap<String, GitHubOutbox> outboxes = new ConcurrentHashMap<String, GitHubOutbox>();
+
+	private final ConcurrentMap<String, GitHubCommentHistory> commentHistories = new ConcurrentHashMap<String, GitHubCommentHistory>();
+
+	private final ConcurrentMap<String, GitHubRepositoryContext> contexts = new ConcurrentHashMap<String, GitHubRepositoryContext>();
+
+	/**
+	 * how long (in milliseconds) credentials are used before they are read
+	 * again, in case their change was not reported
+	 */
+	private static final long CREDENTIALS_CHECK_INTERVAL = 30 * 1000;
+
+	private volatile long credentialsCheckInterval = CREDENTIALS_CHECK_INTERVAL;
+
+	/**
+	 * issue lists of the running full synchronization by repository URL
+	 */
+	private final ConcurrentMap<String, SynchronizationState> listings = new ConcurrentHashMap<String, SynchronizationState>();
+
+	private final GitHubInstrumentation instrumentation = new GitHubInstrumentation();
+
+	/**
+	 * how often (in milliseconds) the progress monitor is checked for
+	 * cancellation while waiting for a request
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * Runs the requests of {@link #getTaskData} concurrently, threads are
+	 * released when idle.
+	 */
+	private final ExecutorService requestExecutor = Executors
+			.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "GitHub request-"
+							+ threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
 	public GitHubRepositoryConnector() {
+		this(new GitHubService(new GitHubHttpTransport()));
+	}
+
+	/**
+	 * Create a connector that sends all requests through the given service,
+	 * e.g. one pointing at a local API stub.
+	 */
+	public GitHubRepositoryConnector(GitHubService service) {
+		this(service, getDefaultIssueStoreDirectory());
+	}
+
+	/**
+	 * Create a connector that keeps the local issue stores in the given
+	 * directory.
+	 * 
+	 * @param issueStoreDirectory
+	 *            - the directory, or null to not store issues
+	 */
+	public GitHubRepositoryConnector(GitHubService service,
+			File issueStoreDirectory) {
+		this.service = service;
+		this.issueStoreDirectory = issueStoreDirectory;
 		taskDataHandler = new GitHubTaskDataHandler(this);
+		taskDataFetcher = new GitHubTaskDataFetcher(this);
+		queryPipeline = new GitHubQueryPipeline(this);
+	}
+
+	private static File getDefaultIssueStoreDirectory() {
+		GitHubActivator activator = GitHubActivator.getInstance();
+		return activator == null ? null : activator.getIssueStoreDirectory();
 	}
 
 	/**
@@ -102,7 +219,7 @@ public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public AbstractTaskDataHandler getTaskDataHandler() {
+	public GitHubTaskDataHandler getTaskDataHandler() {
 		return this.taskDataHandler;
 	}
 
@@ -111,7 +228,6 @@ public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
 			IRepositoryQuery query, TaskDataCollector collector,
 			ISynchronizationSession session, IProgressMonitor monitor) {
 
-		IStatus result = Status.OK_STATUS;
 		String queryStatus = query.getAttribute("status");
 
 		String[] statuses;
@@ -121,60 +237,649 @@ public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
 			statuses = new String[] { queryStatus };
 		}
 
-		monitor.beginTask("Querying repository ...", statuses.length);
+		String queryText = query.getAttribute("queryText");
+		GitHubIssueFilter filter = GitHubIssueFilter.parse(queryStatus,
+				queryText);
+		GitHubIssueIndex index = getIssueIndex(repository);
+		// preSynchronization() of a full synchronization indexes all issues
+		boolean listed = session != null
+				&& session.getData() instanceof SynchronizationState;
+		if (!listed && filter.hasQualifiers()) {
+			// the GitHub search has no label or author filters
+			monitor.beginTask("Retrieving issues ...", 2);
+			try {
+				updateIssueIndex(repository, monitor);
+			} catch (GitHubServiceException e) {
+				return GitHub.createErrorStatus(e);
+			} finally {
+				monitor.done();
+			}
+		}
+
+		if (listed || filter.hasQualifiers()) {
+			// answer locally, the index has just been updated
+			GitHubRepositoryContext context = getContext(repository);
+			String user = context.getUser();
+			String project = context.getProject();
+			List<GitHubIssue> issues = index.search(filter);
+			monitor.beginTask("Querying repository ...", issues.size());
+			try {
+				for (GitHubIssue issue : issues) {
+					collector.accept(taskDataHandler.createPartialTaskData(
+							repository, monitor, user, project, issue, null));
+					monitor.worked(1);
+				}
+			} finally {
+				monitor.done();
+			}
+			return Status.OK_STATUS;
+		}
+
+		// search remotely: task data is emitted while the lists are
+		// downloaded
+		monitor.beginTask("Querying repository ...", IProgressMonitor.UNKNOWN);
 		try {
-			String user = GitHub.computeTaskRepositoryUser(repository.getUrl());
-			String project = GitHub.computeTaskRepositoryProject(repository
-					.getUrl());
-			GitHubCredentials credentials = GitHubCredentials
-					.create(repository);
-			
-			// perform query
-
-			for (String status : statuses) {
-				GitHubIssues issues = service.searchIssues(user, project,
-						status, query.getAttribute("queryText"), credentials);
-
-				// collect task data
-				for (GitHubIssue issue : issues.getIssues()) {
-					List<GitHubComment> comments = service.getIssueComments(user, project, issue.getNumber(), credentials);
-					TaskData taskData = taskDataHandler.createPartialTaskData(
-							repository, monitor,user, project, issue, comments);
-					collector.accept(taskData);
+			return queryPipeline.run(repository, statuses, queryText,
+					collector, monitor);
+		} finally {
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Index all issues of the repository.
+	 */
+	private void updateIssueIndex(TaskRepository repository,
+			IProgressMonitor monitor) throws GitHubServiceException {
+		GitHubRepositoryContext context = getContext(repository);
+		String user = context.getUser();
+		String project = context.getProject();
+		GitHubCredentials credentials = context.getCredentials();
+		List<GitHubIssue> issues = new ArrayList<GitHubIssue>();
+		IProgressMonitor previous = service.setMonitor(monitor);
+		try {
+			for (String status : new String[] { "open", "closed" }) {
+				GitHubIssue[] listed = service.searchIssues(user, project,
+						status, "", credentials).getIssues();
+				if (listed != null) {
+					issues.addAll(Arrays.asList(listed));
 				}
 				monitor.worked(1);
 			}
+		} finally {
+			service.setMonitor(previous);
+		}
+		getIssueIndex(repository).updateAll(issues);
+	}
 
-			result = Status.OK_STATUS;
+	/**
+	 * Lists all issues of the repository and marks only those tasks stale
+	 * whose issue was updated since the last full synchronization. The
+	 * listed issues are indexed for {@link #performQuery}, and stored issues
+	 * they show unchanged are used without a request until
+	 * {@link #postSynchronization}.
+	 */
+	@Override
+	public void preSynchronization(ISynchronizationSession session,
+			IProgressMonitor monitor) throws CoreException {
+		if (!session.isFullSynchronization()) {
+			return;
+		}
+		TaskRepository repository = session.getTaskRepository();
+		GitHubRepositoryContext context = getContext(repository);
+		String user = context.getUser();
+		String project = context.getProject();
+		GitHubCredentials credentials = context.getCredentials();
+
+		monitor.beginTask("Checking for changed issues ...", 2);
+		IProgressMonitor previous = service.setMonitor(monitor);
+		try {
+			SynchronizationState state = new SynchronizationState();
+			GitHubIssueStore store = getIssueStore(repository);
+			if (store != null) {
+				store.clearListed();
+			}
+			for (String status : new String[] { "open", "closed" }) {
+				GitHubIssues issues = service.searchIssues(user, project,
+						status, "", credentials);
+				state.putIssues(status, issues.getIssues());
+				monitor.worked(1);
+			}
+			if (store != null) {
+				// only a complete listing is trusted
+				store.setListed(state.getIssues("open"));
+				store.setListed(state.getIssues("closed"));
+			}
+
+			getIssueIndex(repository).updateAll(state.getIssues());
+
+			SynchronizationState last = SynchronizationState
+					.parse(repository.getSynchronizationTimeStamp());
+			boolean changed = false;
+			for (ITask task : session.getTasks()) {
+				GitHubIssue issue = state.getIssue(task.getTaskId());
+				if (issue == null || last.isUpdatedSince(issue)) {
+					session.markStale(task);
+					changed = true;
+				}
+			}
+			if (state.watermark < last.watermark) {
+				// nothing was updated since the last synchronization
+				state.watermark = last.watermark;
+				state.latest = last.latest;
+			}
+			changed |= state.watermark != last.watermark
+					|| !last.latest.containsAll(state.latest);
+			session.setNeedsPerformQueries(changed);
+			session.setData(state);
+			listings.put(repository.getRepositoryUrl(), state);
 		} catch (GitHubServiceException e) {
-			result = GitHub.createErrorStatus(e);
+			throw new CoreException(GitHub.createErrorStatus(e));
+		} finally {
+			service.setMonitor(previous);
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Persists the watermark of a successful full synchronization. The issue
+	 * lists of the synchronization are no longer trusted afterwards.
+	 */
+	@Override
+	public void postSynchronization(ISynchronizationSession event,
+			IProgressMonitor monitor) throws CoreException {
+		if (event.isFullSynchronization()
+				&& event.getData() instanceof SynchronizationState) {
+			SynchronizationState state = (SynchronizationState) event
+					.getData();
+			listings.remove(event.getTaskRepository().getRepositoryUrl(),
+					state);
+			GitHubIssueStore store = getIssueStore(event.getTaskRepository());
+			if (store != null) {
+				store.clearListed();
+			}
+			if (event.getStatus() == null && state.watermark >= 0) {
+				event.getTaskRepository().setSynchronizationTimeStamp(
+						state.toTimeStamp());
+			}
+		}
+	}
+
+	/**
+	 * Issue lists of a full synchronization and the resulting watermark, the
+	 * latest updated_at of all issues. updated_at only has a precision of
+	 * seconds, so the numbers of the issues updated at the watermark are kept
+	 * as well: an issue updated within the same second after the lists were
+	 * retrieved is only recognized by its number.
+	 */
+	private static class SynchronizationState {
+		private final Map<String, GitHubIssue[]> issuesByStatus = new HashMap<String, GitHubIssue[]>();
+		private final Map<String, GitHubIssue> issuesByNumber = new HashMap<String, GitHubIssue>();
+		private long watermark = -1;
+
+		/**
+		 * numbers of the issues updated at the watermark
+		 */
+		private Set<String> latest = new HashSet<String>();
+
+		/**
+		 * @param timeStamp
+		 *            - the synchronization time stamp of the repository,
+		 *            written by {@link #toTimeStamp()}
+		 * @return the watermark of the last synchronization, -1 without
+		 *         issue numbers if there was none
+		 */
+		static SynchronizationState parse(String timeStamp) {
+			SynchronizationState state = new SynchronizationState();
+			if (timeStamp != null) {
+				String[] parts = timeStamp.split(";", 2);
+				try {
+					state.watermark = Long.parseLong(parts[0]);
+				} catch (NumberFormatException e) {
+					// not set by this connector
+					return state;
+				}
+				if (parts.length > 1 && parts[1].length() > 0) {
+					state.latest.addAll(Arrays.asList(parts[1].split(",")));
+				}
+			}
+			return state;
 		}
 
-		monitor.done();
-		return result;
+		String toTimeStamp() {
+			StringBuilder timeStamp = new StringBuilder();
+			timeStamp.append(watermark).append(';');
+			for (String number : latest) {
+				if (timeStamp.charAt(timeStamp.length() - 1) != ';') {
+					timeStamp.append(',');
+				}
+				timeStamp.append(number);
+			}
+			return timeStamp.toString();
+		}
+
+		/**
+		 * @return true if the issue was updated after this watermark was
+		 *         taken, or if either has no date
+		 */
+		boolean isUpdatedSince(GitHubIssue issue) {
+			if (watermark < 0) {
+				return true;
+			}
+			long updated = GitHubDateCodec.parse(issue.getUpdated_at());
+			return updated < 0 || updated > watermark
+					|| (updated == watermark && !latest.contains(issue
+							.getNumber()));
+		}
+
+		void putIssues(String status, GitHubIssue[] issues) {
+			if (issues == null) {
+				issues = new GitHubIssue[0];
+			}
+			issuesByStatus.put(status, issues);
+			for (GitHubIssue issue : issues) {
+				issuesByNumber.put(issue.getNumber(), issue);
+				long updated = GitHubDateCodec.parse(issue.getUpdated_at());
+				if (updated > watermark) {
+					watermark = updated;
+					latest.clear();
+				}
+				if (updated == watermark) {
+					latest.add(issue.getNumber());
+				}
+			}
+		}
+
+		GitHubIssue[] getIssues(String status) {
+			GitHubIssue[] issues = issuesByStatus.get(status);
+			return issues == null ? new GitHubIssue[0] : issues;
+		}
+
+		GitHubIssue getIssue(String number) {
+			return issuesByNumber.get(number);
+		}
+
+		Collection<GitHubIssue> getIssues() {
+			return issuesByNumber.values();
+		}
 	}
 
 	@Override
 	public TaskData getTaskData(TaskRepository repository, String taskId,
 			IProgressMonitor monitor) throws CoreException {
 
-		String user = GitHub.computeTaskRepositoryUser(repository.getUrl());
-		String project = GitHub.computeTaskRepositoryProject(repository
-				.getUrl());
-		GitHubCredentials credentials = GitHubCredentials
-				.create(repository);
+		GitHubRepositoryContext context = getContext(repository);
+		String user = context.getUser();
+		String project = context.getProject();
+		GitHubCredentials credentials = context.getCredentials();
 
+		IStatus refused = getOutbox(repository).takeRefused(taskId);
+		if (refused != null) {
+			// the submitted changes have been lost
+			throw new CoreException(refused);
+		}
 		try {
-
-			GitHubIssue issue = service.showIssue(user, project, taskId, credentials);
-			List<GitHubComment> comments = service.getIssueComments(user, project, issue.getNumber(), credentials);
-			TaskData taskData = taskDataHandler.createTaskData(repository, monitor, user, project, issue, comments);
+			GitHubIssueStore.Entry entry = readIssue(repository, user,
+					project, taskId, credentials, monitor);
+			TaskData taskData = taskDataHandler.createTaskData(repository,
+					monitor, user, project, getOutbox(repository).apply(
+							entry.getIssue()), entry.getComments());
 			return taskData;
 		} catch (GitHubServiceException e) {
 			throw new CoreException(GitHub.createErrorStatus(e));
 		}
 	}
 
+	/**
+	 * Read an issue with its comments. The stored issue is used without a
+	 * request if the issue list of the running synchronization shows it
+	 * unchanged or the repository
+	 * is offline, and instead of failing if GitHub cannot be reached. The
+	 * comments are only requested if the issue has changed.
+	 */
+	GitHubIssueStore.Entry readIssue(TaskRepository repository, String user,
+			String project, String taskId, GitHubCredentials credentials,
+			IProgressMonitor monitor) throws GitHubServiceException {
+		GitHubIssueStore.Entry stored = readStoredIssue(repository, taskId);
+		if (stored != null) {
+			return stored;
+		}
+		return fetchIssue(repository, user, project, taskId, null,
+				credentials, true, monitor);
+	}
+
+	/**
+	 * @return the stored issue if it can be used without a request, or null
+	 */
+	GitHubIssueStore.Entry readStoredIssue(TaskRepository repository,
+			String taskId) {
+		GitHubIssueStore store = getIssueStore(repository);
+		GitHubIssueStore.Entry stored = store == null ? null : store
+				.get(taskId);
+		if (stored != null
+				&& (store.isCurrent(stored) || repository.isOffline())) {
+			return index(repository, stored.getIssue(), stored.getComments());
+		}
+		return null;
+	}
+
+	/**
+	 * @return the issue as listed by the running full synchronization, or
+	 *         null if no synchronization of the repository is running
+	 */
+	GitHubIssue getListedIssue(TaskRepository repository, String taskId) {
+		SynchronizationState listing = listings.get(repository
+				.getRepositoryUrl());
+		return listing == null ? null : listing.getIssue(taskId);
+	}
+
+	/**
+	 * Request an issue with its comments and store it.
+	 * 
+	 * @param listed
+	 *            - the issue as listed, used instead of requesting it, or
+	 *            null
+	 * @param concurrently
+	 *            - true to request the issue and its comments at the same
+	 *            time, which takes two request threads; false to request them
+	 *            one after the other on the calling thread, and the comments
+	 *            only if the stored issue has changed
+	 * @param monitor
+	 *            - canceling it or interrupting the thread aborts the
+	 *            requests with an {@link OperationCanceledException}
+	 */
+	GitHubIssueStore.Entry fetchIssue(TaskRepository repository, String user,
+			String project, String taskId, GitHubIssue listed,
+			GitHubCredentials credentials, boolean concurrently,
+			IProgressMonitor monitor) throws GitHubServiceException {
+		GitHubIssueStore store = getIssueStore(repository);
+		GitHubIssueStore.Entry stored = store == null ? null : store
+				.get(taskId);
+		IProgressMonitor previous = service.setMonitor(monitor);
+		try {
+			GitHubIssue issue;
+			List<GitHubComment> comments = null;
+			if (listed != null) {
+				issue = listed;
+			} else if (concurrently) {
+				GitHubIssueStore.Entry fetched = fetchConcurrently(user,
+						project, taskId, credentials, monitor);
+				issue = fetched.getIssue();
+				comments = fetched.getComments();
+			} else {
+				issue = service.showIssue(user, project, taskId, credentials);
+			}
+			long updated = GitHubDateCodec.parse(issue.getUpdated_at());
+			if (stored != null
+					&& updated >= 0
+					&& updated == GitHubDateCodec.parse(stored.getIssue()
+							.getUpdated_at())) {
+				// unchanged, fetched comments are dropped for the stored ones
+				comments = stored.getComments();
+			} else if (comments == null) {
+				comments = service.getIssueComments(user, project, issue
+						.getNumber(), credentials);
+				if (comments == null) {
+					comments = new ArrayList<GitHubComment>();
+				}
+			}
+			if (store != null) {
+				store.put(issue, comments);
+			}
+			return index(repository, issue, comments);
+		} catch (GitHubServiceException e) {
+			if (stored != null && isUnavailable(e)) {
+				return stored;
+			}
+			throw e;
+		} finally {
+			service.setMonitor(previous);
+		}
+	}
+
+	/**
+	 * Merge the comments of an issue into its comment history and index the
+	 * issue. Comments known from an earlier fetch are not indexed again.
+	 * 
+	 * @return the issue with its comments
+	 */
+	private GitHubIssueStore.Entry index(TaskRepository repository,
+			GitHubIssue issue, List<GitHubComment> comments) {
+		GitHubCommentHistory.Change change = getCommentHistory(repository)
+				.merge(issue.getNumber(), comments);
+		instrumentation.recordCommentMerge(change);
+		GitHubIssueIndex index = getIssueIndex(repository);
+		index.update(issue);
+		if (change == GitHubCommentHistory.Change.REFRESHED) {
+			index.updateComments(issue.getNumber(), comments);
+		} else {
+			index.appendComments(issue.getNumber(), comments);
+		}
+		return new GitHubIssueStore.Entry(issue, comments);
+	}
+
+	/**
+	 * Request an issue and its comments at the same time.
+	 */
+	private GitHubIssueStore.Entry fetchConcurrently(final String user,
+			final String project, final String taskId,
+			final GitHubCredentials credentials, IProgressMonitor monitor)
+			throws GitHubServiceException {
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
+		final long start = System.nanoTime();
+		final long[] elapsed = new long[2];
+		Future<GitHubIssue> issue = requestExecutor
+				.submit(new Callable<GitHubIssue>() {
+					public GitHubIssue call() throws Exception {
+						try {
+							return service.showIssue(user, project, taskId,
+									credentials);
+						} finally {
+							elapsed[0] = System.nanoTime() - start;
+						}
+					}
+				});
+		Future<List<GitHubComment>> comments = requestExecutor
+				.submit(new Callable<List<GitHubComment>>() {
+					public List<GitHubComment> call() throws Exception {
+						try {
+							return service.getIssueComments(user, project,
+									taskId, credentials);
+						} finally {
+							elapsed[1] = System.nanoTime() - start;
+						}
+					}
+				});
+		try {
+			GitHubIssue fetchedIssue = await(issue, monitor);
+			List<GitHubComment> fetchedComments = await(comments, monitor);
+			// the futures are done, so the durations are visible
+			instrumentation.recordConcurrentFetch(elapsed[0], elapsed[1], Math
+					.max(elapsed[0], elapsed[1]));
+			if (fetchedComments == null) {
+				fetchedComments = new ArrayList<GitHubComment>();
+			}
+			return new GitHubIssueStore.Entry(fetchedIssue, fetchedComments);
+		} finally {
+			issue.cancel(true);
+			comments.cancel(true);
+		}
+	}
+
+	/**
+	 * @return the result of the request
+	 * @throws OperationCanceledException
+	 *             if the monitor was canceled or the thread interrupted
+	 */
+	private static <T> T await(Future<T> future, IProgressMonitor monitor)
+			throws GitHubServiceException {
+		try {
+			while (true) {
+				if (monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				try {
+					return future.get(CANCEL_POLL_INTERVAL,
+							TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// check for cancellation
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof GitHubServiceException) {
+				throw (GitHubServiceException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new GitHubServiceException(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * @return the counters of this connector
+	 */
+	public GitHubInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+	/**
+	 * @return true if the request failed because GitHub could not be
+	 *         reached or failed itself, rather than refusing the request
+	 */
+	static boolean isUnavailable(GitHubServiceException e) {
+		e = getRootCause(e);
+		int status = e.getHttpStatusCode();
+		if (status >= 200 && status < 300) {
+			// answered, only the response could not be read
+			return false;
+		}
+		return !(e instanceof PermissionDeniedException)
+				&& (status < 400 || status >= 500);
+	}
+
+	/**
+	 * @return true if the request was refused for the credentials or the
+	 *         exhausted rate limit rather than for its content
+	 */
+	static boolean isPermissionDenied(GitHubServiceException e) {
+		return getRootCause(e) instanceof PermissionDeniedException;
+	}
+
+	private static GitHubServiceException getRootCause(
+			GitHubServiceException e) {
+		// the service wraps the exceptions of its own requests
+		while (e.getCause() instanceof GitHubServiceException) {
+			e = (GitHubServiceException) e.getCause();
+		}
+		return e;
+	}
+
+	/**
+	 * @return the context of the repository as of its settings when the
+	 *         context was created, which is replaced once the settings change
+	 *         is reported through {@link #repositorySettingsChanged} or
+	 *         {@link #updateRepositoryConfiguration}, or once changed
+	 *         credentials are noticed
+	 */
+	public GitHubRepositoryContext getContext(TaskRepository repository) {
+		String url = repository.getRepositoryUrl();
+		GitHubRepositoryContext context = contexts.get(url);
+		if (context == null
+				|| !context.isCurrent(repository, credentialsCheckInterval)) {
+			// contexts are immutable, a concurrent update creates an equal one
+			context = new GitHubRepositoryContext(repository);
+			contexts.put(url, context);
+		}
+		return context;
+	}
+
+	/**
+	 * @return the full-text index of the repository
+	 */
+	public GitHubIssueIndex getIssueIndex(TaskRepository repository) {
+		String url = repository.getRepositoryUrl();
+		GitHubIssueIndex index = issueIndexes.get(url);
+		if (index == null) {
+			index = new GitHubIssueIndex();
+			GitHubIssueIndex existing = issueIndexes.putIfAbsent(url, index);
+			if (existing != null) {
+				index = existing;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @return the comments known for the issues of the repository
+	 */
+	public GitHubCommentHistory getCommentHistory(TaskRepository repository) {
+		String url = repository.getRepositoryUrl();
+		GitHubCommentHistory history = commentHistories.get(url);
+		if (history == null) {
+			history = new GitHubCommentHistory();
+			GitHubCommentHistory existing = commentHistories.putIfAbsent(url,
+					history);
+			if (existing != null) {
+				history = existing;
+			}
+		}
+		return history;
+	}
+
+	/**
+	 * @return the local issue store of the repository, or null if issues are
+	 *         not stored
+	 */
+	public GitHubIssueStore getIssueStore(TaskRepository repository) {
+		if (issueStoreDirectory == null) {
+			return null;
+		}
+		String url = repository.getRepositoryUrl();
+		GitHubIssueStore store = issueStores.get(url);
+		if (store == null) {
+			store = new GitHubIssueStore(GitHubIssueStore.getDirectory(
+					issueStoreDirectory, url));
+			GitHubIssueStore existing = issueStores.putIfAbsent(url, store);
+			if (existing != null) {
+				store = existing;
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * @return the changes of the repository waiting to be sent
+	 */
+	public GitHubOutbox getOutbox(TaskRepository repository) {
+		String url = repository.getRepositoryUrl();
+		GitHubOutbox outbox = outboxes.get(url);
+		if (outbox == null) {
+			File file = issueStoreDirectory == null ? null : new File(
+					GitHubIssueStore.getDirectory(issueStoreDirectory, url),
+					"outbox");
+			outbox = new GitHubOutbox(this, repository, file);
+			GitHubOutbox existing = outboxes.putIfAbsent(url, outbox);
+			if (existing != null) {
+				outbox.dispose();
+				outbox = existing;
+			} else {
+				// changes left from the last session
+				outbox.schedule();
+			}
+		}
+		return outbox;
+	}
+
 	@Override
 	public String getRepositoryUrlFromTaskUrl(String taskFullUrl) {
 		if (taskFullUrl != null) {
@@ -204,9 +909,45 @@ public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
 		return repositoryUrl + "/issues/issue/" + taskId;
 	}
 
+	/**
+	 * Forgets the context of the repository, it is created again from the
+	 * current settings.
+	 */
 	@Override
 	public void updateRepositoryConfiguration(TaskRepository taskRepository,
 			IProgressMonitor monitor) throws CoreException {
+		contexts.remove(taskRepository.getRepositoryUrl());
+	}
+
+	/**
+	 * @param interval
+	 *            - how long (in milliseconds) the credentials of a repository
+	 *            are used before they are read again, unless their change is
+	 *            reported
+	 */
+	public void setCredentialsCheckInterval(long interval) {
+		credentialsCheckInterval = interval;
+	}
+
+	public void repositoryAdded(TaskRepository repository) {
+		// the context is created on first use
+	}
+
+	public void repositoryRemoved(TaskRepository repository) {
+		contexts.remove(repository.getRepositoryUrl());
+	}
+
+	/**
+	 * Forgets the context of the repository, e.g. after its credentials were
+	 * changed.
+	 */
+	public void repositorySettingsChanged(TaskRepository repository) {
+		contexts.remove(repository.getRepositoryUrl());
+	}
+
+	public void repositoryUrlChanged(TaskRepository repository,
+			String oldUrl) {
+		contexts.remove(oldUrl);
 	}
 
 	@Override
@@ -219,7 +960,7 @@ public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
 	public void updateTaskFromTaskData(TaskRepository taskRepository,
 			ITask task, TaskData taskData) {
 		if (!taskData.isNew()) {
-			task.setUrl(getTaskUrl(taskRepository.getUrl(),
+			task.setUrl(getContext(taskRepository).getTaskUrl(
 					taskData.getTaskId()));
 		}
 		new TaskMapper(taskData).applyTo(task);
@@ -228,4 +969,8 @@ public class GitHubRepositoryConnector extends AbstractRepositoryConnector {
 	public GitHubService getService() {
 		return service;
 	}
+
+	public GitHubTaskDataFetcher getTaskDataFetcher() {
+		return taskDataFetcher;
+	}
 }
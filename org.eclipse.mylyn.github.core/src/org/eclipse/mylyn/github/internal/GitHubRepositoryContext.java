@@ -0,0 +1,143 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+
+/**
+ * What the connector derives from the settings of a {@link TaskRepository}:
+ * the user and project parsed from its URL, its credentials and its
+ * attribute mapper. A context is immutable and may be shared between
+ * threads; it is replaced once a change of the settings is reported to the
+ * connector, see {@link GitHubRepositoryConnector#getContext(TaskRepository)}.
+ * Since credentials may also be changed without a report, they are read
+ * again once they have been used for a while.
+ */
+public class GitHubRepositoryContext {
+
+	private final TaskRepository repository;
+
+	private final String repositoryUrl;
+
+	private final String user;
+
+	private final String project;
+
+	private final GitHubCredentials credentials;
+
+	private final GitHubTaskAttributeMapper attributeMapper;
+
+	private final String taskUrlPrefix;
+
+	/**
+	 * when the credentials were last read, in milliseconds
+	 */
+	private volatile long credentialsRead;
+
+	public GitHubRepositoryContext(TaskRepository repository) {
+		this.repository = repository;
+		repositoryUrl = repository.getRepositoryUrl();
+		user = GitHub.computeTaskRepositoryUser(repositoryUrl);
+		project = GitHub.computeTaskRepositoryProject(repositoryUrl);
+		credentials = readCredentials(repository);
+		credentialsRead = System.currentTimeMillis();
+		attributeMapper = new GitHubTaskAttributeMapper(repository);
+		taskUrlPrefix = repositoryUrl + "/issues/issue/";
+	}
+
+	/**
+	 * @param checkInterval
+	 *            - how long (in milliseconds) the credentials are used before
+	 *            they are read again, which may be slow
+	 * @return true if the context was created for the repository with its
+	 *         current URL and credentials
+	 */
+	public boolean isCurrent(TaskRepository repository, long checkInterval) {
+		if (repository != this.repository
+				|| !repositoryUrl.equals(repository.getRepositoryUrl())) {
+			return false;
+		}
+		long now = System.currentTimeMillis();
+		if (now - credentialsRead < checkInterval) {
+			return true;
+		}
+		if (!equal(readCredentials(repository), credentials)) {
+			return false;
+		}
+		credentialsRead = now;
+		return true;
+	}
+
+	private static GitHubCredentials readCredentials(TaskRepository repository) {
+		AuthenticationCredentials authentication = repository
+				.getCredentials(AuthenticationType.REPOSITORY);
+		return authentication == null ? null : new GitHubCredentials(
+				authentication);
+	}
+
+	private static boolean equal(GitHubCredentials a, GitHubCredentials b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		return equal(a.getUsername(), b.getUsername())
+				&& equal(a.getApiToken(), b.getApiToken());
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	public TaskRepository getRepository() {
+		return repository;
+	}
+
+	/**
+	 * @return the user owning the project, or null if the URL is not a
+	 *         GitHub project URL
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * @return the project, or null if the URL is not a GitHub project URL
+	 */
+	public String getProject() {
+		return project;
+	}
+
+	/**
+	 * @return the credentials, or null if the repository has none
+	 */
+	public GitHubCredentials getCredentials() {
+		return credentials;
+	}
+
+	public TaskAttributeMapper getAttributeMapper() {
+		return attributeMapper;
+	}
+
+	/**
+	 * @return the web URL of the issue
+	 */
+	public String getTaskUrl(String taskId) {
+		return taskUrlPrefix + taskId;
+	}
+}
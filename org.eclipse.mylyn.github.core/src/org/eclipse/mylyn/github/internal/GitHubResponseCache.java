@@ -0,0 +1,193 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of decoded API responses keyed by endpoint URL and credentials. Each
+ * entry keeps the validators (ETag, Last-Modified) of its response so that it
+ * can be revalidated with a conditional request; on 304 Not Modified the
+ * decoded object is reused as is.
+ */
+public class GitHubResponseCache {
+
+	/**
+	 * Default maximum number of cached responses.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 500;
+
+	/**
+	 * A cached response.
+	 */
+	public static class Entry {
+		private final Object value;
+		private final String etag;
+		private final String lastModified;
+		private volatile long expires;
+
+		public Entry(Object value, String etag, String lastModified,
+				long expires) {
+			this.value = value;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.expires = expires;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		/**
+		 * @return an entry with the validators of this entry for the given
+		 *         value, e.g. one decoded after the validators were read
+		 */
+		public Entry withValue(Object value) {
+			return new Entry(value, etag, lastModified, expires);
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @return true if the response may be used without revalidation
+		 */
+		public boolean isFresh(long now) {
+			return now < expires;
+		}
+
+		public void setExpires(long expires) {
+			this.expires = expires;
+		}
+
+		/**
+		 * @return true if a conditional request can be made for this entry
+		 */
+		public boolean hasValidator() {
+			return etag != null || lastModified != null;
+		}
+	}
+
+	private final Map<String, Entry> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public GitHubResponseCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	public GitHubResponseCache(final int maxEntries) {
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, GitHubResponseCache.Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @return the cache key for a request to the given URL
+	 */
+	public static String createKey(String url, GitHubCredentials credentials) {
+		if (credentials == null) {
+			return url;
+		}
+		// the full token, responses must never be shared between tokens
+		return url + '\n' + credentials.getUsername() + '\n'
+				+ credentials.getApiToken();
+	}
+
+	public Entry get(String key) {
+		synchronized (entries) {
+			return entries.get(key);
+		}
+	}
+
+	public void put(String key, Entry entry) {
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Remove all entries whose URL contains the given path segment, e.g.
+	 * after a repository has been modified.
+	 */
+	public void invalidate(String pathSegment) {
+		synchronized (entries) {
+			Iterator<String> keys = entries.keySet().iterator();
+			while (keys.hasNext()) {
+				if (keys.next().indexOf(pathSegment) != -1) {
+					keys.remove();
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	void recordHit() {
+		hits.incrementAndGet();
+	}
+
+	void recordRevalidation() {
+		revalidations.incrementAndGet();
+	}
+
+	void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of responses served from the cache without a request
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of conditional requests answered with 304 Not
+	 *         Modified
+	 */
+	public long getRevalidationCount() {
+		return revalidations.get();
+	}
+
+	/**
+	 * @return the number of responses that had to be downloaded and decoded
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.Random;
+
+/**
+ * Decides whether a read that failed with an I/O error or a 5xx response is
+ * sent again, and how long to wait before. Delays grow exponentially with a
+ * random jitter so that clients do not retry in lock step.
+ * <p>
+ * Retries are limited by a budget that is refilled by a fraction of a retry
+ * for every request, so that a failing server sees at most about
+ * {@link #DEFAULT_BUDGET_RATIO} more requests than without retries.
+ */
+public class GitHubRetryPolicy {
+
+	/**
+	 * Default number of retries of a single request.
+	 */
+	public static final int DEFAULT_MAX_RETRIES = 3;
+
+	/**
+	 * Default delay (in milliseconds) before the first retry.
+	 */
+	public static final long DEFAULT_BASE_DELAY = 250;
+
+	/**
+	 * Default upper bound (in milliseconds) of the delay between retries.
+	 */
+	public static final long DEFAULT_MAX_DELAY = 8000;
+
+	/**
+	 * Retries earned by each request.
+	 */
+	public static final double DEFAULT_BUDGET_RATIO = 0.1;
+
+	/**
+	 * Retries that may be saved up in the budget.
+	 */
+	public static final int DEFAULT_MAX_BUDGET = 10;
+
+	private final int maxRetries;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final Random random = new Random();
+
+	private double budget = DEFAULT_MAX_BUDGET;
+
+	public GitHubRetryPolicy() {
+		this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+	}
+
+	public GitHubRetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+		this.maxRetries = maxRetries;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+	}
+
+	/**
+	 * Record a request, which adds to the retry budget.
+	 */
+	public synchronized void recordRequest() {
+		budget = Math.min(DEFAULT_MAX_BUDGET, budget + DEFAULT_BUDGET_RATIO);
+	}
+
+	/**
+	 * @param retry
+	 *            the number of the retry, starting with 1
+	 * @return true if the retry is allowed, it is then taken from the budget
+	 */
+	public synchronized boolean tryRetry(int retry) {
+		if (retry > maxRetries || budget < 1) {
+			return false;
+		}
+		budget--;
+		return true;
+	}
+
+	/**
+	 * @param retry
+	 *            the number of the retry, starting with 1
+	 * @param retryAfter
+	 *            the delay (in milliseconds) requested by the server with a
+	 *            <code>Retry-After</code> header, or 0
+	 * @return the time (in milliseconds) to wait before the retry
+	 */
+	public long getDelay(int retry, long retryAfter) {
+		long delay = Math.min(maxDelay, baseDelay << Math.min(retry - 1, 20));
+		long jittered;
+		synchronized (random) {
+			// "equal jitter": at least half of the exponential delay
+			jittered = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+		}
+		return Math.max(jittered, Math.min(retryAfter, maxDelay));
+	}
+}
@@ -16,24 +16,33 @@
  */
 package org.eclipse.mylyn.github.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.eclipse.core.net.proxy.IProxyData;
-import org.eclipse.core.net.proxy.IProxyService;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
 /**
  * Facility to perform API operations on a GitHub issue tracker.
@@ -45,13 +54,44 @@ public class GitHubService {
 	/**
 	 * GitHub Issues API Documentation: http://develop.github.com/p/issues.html
 	 */
-	private final String gitURLBase = "https://github.com/api/v2/json/";
+	public static final String DEFAULT_API_URL = "https://github.com/api/v2/json/";
+
+	private final String gitURLBase;
 
 	private final String gitIssueRoot = "issues/";
 	private final String gitUserRoot = "user/";
 
 	private final Gson gson;
 
+	private final GitHubHttpTransport transport;
+
+	private final GitHubResponseCache responseCache = new GitHubResponseCache();
+
+	private final GitHubRateLimiter rateLimiter;
+
+	private final GitHubSingleFlight singleFlight = new GitHubSingleFlight();
+
+	/**
+	 * How often a request refused because of the API rate limit is queued
+	 * again before the refusal is reported.
+	 */
+	private static final int MAX_RATE_LIMITED_ATTEMPTS = 3;
+
+	private volatile GitHubRetryPolicy retryPolicy = new GitHubRetryPolicy();
+
+	private volatile GitHubCircuitBreaker circuitBreaker = new GitHubCircuitBreaker();
+
+	/**
+	 * how often (in milliseconds) the progress monitor is checked for
+	 * cancellation while waiting to retry a request
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	/**
+	 * progress monitors of the threads sending requests
+	 */
+	private final ThreadLocal<IProgressMonitor> monitors = new ThreadLocal<IProgressMonitor>();
+
 	/**
 	 * Helper class, describing all of the possible GitHub API actions.
 	 */
@@ -75,6 +115,50 @@ public class GitHubService {
 	 * Constructor, create the client and JSON/Java interface object.
 	 */
 	public GitHubService() {
+		this(new GitHubHttpTransport());
+	}
+
+	/**
+	 * Constructor, create the JSON/Java interface object and use the given
+	 * transport for all requests.
+	 * 
+	 * @param transport
+	 *            - The pooled HTTP transport to send requests with
+	 */
+	public GitHubService(GitHubHttpTransport transport) {
+		this(transport, GitHubRateLimiter.getDefault());
+	}
+
+	/**
+	 * Constructor, create the JSON/Java interface object and use the given
+	 * transport and rate limiter for all requests.
+	 * 
+	 * @param transport
+	 *            - The pooled HTTP transport to send requests with
+	 * @param rateLimiter
+	 *            - Shapes the requests to the API rate limit
+	 */
+	public GitHubService(GitHubHttpTransport transport,
+			GitHubRateLimiter rateLimiter) {
+		this(DEFAULT_API_URL, transport, rateLimiter);
+	}
+
+	/**
+	 * Constructor, create the JSON/Java interface object for the API at the
+	 * given URL.
+	 * 
+	 * @param apiUrl
+	 *            - The base URL of the API, ending with a slash
+	 * @param transport
+	 *            - The pooled HTTP transport to send requests with
+	 * @param rateLimiter
+	 *            - Shapes the requests to the API rate limit
+	 */
+	public GitHubService(String apiUrl, GitHubHttpTransport transport,
+			GitHubRateLimiter rateLimiter) {
+		this.gitURLBase = apiUrl;
+		this.transport = transport;
+		this.rateLimiter = rateLimiter;
 		gson = new Gson();
 	}
 
@@ -93,7 +177,8 @@ public class GitHubService {
 
 		try {
 			String url = gitURLBase + gitUserRoot + EMAILS;
-			method = executeMethod(url, credentials, null, null, null);
+			method = executeMethod(createMethod(url, credentials, null, null,
+					null), credentials, true);
 
 			// if we reach here we know that credentials were good
 			success = true;
@@ -137,25 +222,84 @@ public class GitHubService {
 	public GitHubIssues searchIssues(final String user, final String repo,
 			final String state, final String searchTerm,
 			final GitHubCredentials credentials) throws GitHubServiceException {
-		GitHubIssues issues = null;
-		PostMethod method = null;
+		String url = searchUrl(user, repo, state, searchTerm);
+		return read(url, credentials, GitHubIssues.class);
+	}
+
+	/**
+	 * Search the GitHub Issues API for a given search term and hand each issue
+	 * to the collector as soon as it has been decoded from the response, the
+	 * response is never held in memory as a whole. The decoded issues of a
+	 * response with validators are cached, so that the search is revalidated
+	 * with a conditional request next time.
+	 * 
+	 * @param user
+	 *            - The user the repository is owned by
+	 * @param repo
+	 *            - The Git repository where the issue tracker is hosted
+	 * @param state
+	 *            - The issue state you want to filter your search by
+	 * @param searchTerm
+	 *            - The text search term to find in the issues.
+	 * @param credentials
+	 *            - The credentials to connect with.
+	 * @param collector
+	 *            - Receives the issues of the search results
+	 * 
+	 * @throws GitHubServiceException
+	 * 
+	 * @see #searchIssues(String, String, String, String, GitHubCredentials)
+	 */
+	public void searchIssues(final String user, final String repo,
+			final String state, final String searchTerm,
+			final GitHubCredentials credentials,
+			final GitHubIssueCollector collector)
+			throws GitHubServiceException {
+		String url = searchUrl(user, repo, state, searchTerm);
+		String key = GitHubResponseCache.createKey(url, credentials);
+		GitHubResponseCache.Entry cached = responseCache.get(key);
+		if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+			responseCache.recordHit();
+			collect((GitHubIssues) cached.getValue(), collector);
+			return;
+		}
+
+		PostMethod method = createMethod(url, credentials, null, null, null);
 		try {
-			// build URL
-			String url;
-			if (searchTerm.trim().length() == 0) { // no search term: list all
-				url = gitURLBase + gitIssueRoot + LIST + user + "/" + repo
-						+ "/" + state;
-			} else {
-				url = gitURLBase + gitIssueRoot + SEARCH + user + "/" + repo
-						+ "/" + state + "/" + searchTerm;
+			setValidators(method, cached);
+			executeMethod(method, credentials, true);
+
+			if (cached != null
+					&& method.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+				responseCache.recordRevalidation();
+				cached.setExpires(expires(method));
+				collect((GitHubIssues) cached.getValue(), collector);
+				return;
 			}
 
-			// execute HTTP POST method
-			method = executeMethod(url, credentials, null, null, null);
-
-			// transform JSON to Java object
-			String responseBody = new String(method.getResponseBody());
-			issues = gson.fromJson(responseBody, GitHubIssues.class);
+			responseCache.recordMiss();
+			final GitHubResponseCache.Entry entry = new GitHubResponseCache.Entry(
+					null, headerValue(method, "ETag"), headerValue(method,
+							"Last-Modified"), expires(method));
+			if (!entry.hasValidator()
+					&& !entry.isFresh(System.currentTimeMillis())) {
+				GitHubJsonDecoder.decodeIssues(responseReader(method),
+						collector);
+				return;
+			}
+			// keep the decoded issues for conditional requests, they are
+			// still handed to the collector while the response is read
+			final List<GitHubIssue> issues = new ArrayList<GitHubIssue>();
+			GitHubJsonDecoder.decodeIssues(responseReader(method),
+					new GitHubIssueCollector() {
+						@Override
+						public void accept(GitHubIssue issue) {
+							issues.add(issue);
+							collector.accept(issue);
+						}
+					});
+			responseCache.put(key, entry.withValue(new GitHubIssues(issues
+					.toArray(new GitHubIssue[issues.size()]))));
 		} catch (GitHubServiceException e) {
 			throw e;
 		} catch (final RuntimeException runtimeException) {
@@ -163,10 +307,28 @@ public class GitHubService {
 		} catch (final Exception exception) {
 			throw new GitHubServiceException(exception);
 		} finally {
-			if (method != null)
-				method.releaseConnection();
+			method.releaseConnection();
+		}
+	}
+
+	private static void collect(GitHubIssues issues,
+			GitHubIssueCollector collector) {
+		if (issues.getIssues() != null) {
+			for (GitHubIssue issue : issues.getIssues()) {
+				collector.accept(issue);
+			}
+		}
+	}
+
+	private String searchUrl(String user, String repo, String state,
+			String searchTerm) {
+		if (searchTerm == null || searchTerm.trim().length() == 0) {
+			// no search term: list all
+			return gitURLBase + gitIssueRoot + LIST + user + "/" + repo + "/"
+					+ state;
 		}
-		return issues;
+		return gitURLBase + gitIssueRoot + SEARCH + user + "/" + repo + "/"
+				+ state + "/" + searchTerm;
 	}
 
 	/**
@@ -204,6 +366,7 @@ public class GitHubService {
 
 			// execute HTTP POST method
 			method = executeMethod(url, credentials, null, null, null);
+			invalidate(user, repo);
 
 			// Check the response, make sure the action was successful
 			final String response = method.getResponseBodyAsString();
@@ -212,7 +375,7 @@ public class GitHubService {
 			}
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("Response: " + method.getResponseBodyAsString());
+				LOG.debug("Response: " + response);
 				LOG.debug("URL: " + method.getURI());
 			}
 		} catch (GitHubServiceException e) {
@@ -258,6 +421,7 @@ public class GitHubService {
 
 			// execute HTTP GET method
 			method = executeMethod(url, credentials, null, null, null);
+			invalidate(user, repo);
 
 			// Check the response, make sure the action was successful
 			final String response = method.getResponseBodyAsString();
@@ -265,7 +429,7 @@ public class GitHubService {
 				success = true;
 			}
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("Response: " + method.getResponseBodyAsString());
+				LOG.debug("Response: " + response);
 				LOG.debug("URL: " + method.getURI());
 			}
 		} catch (GitHubServiceException e) {
@@ -311,19 +475,20 @@ public class GitHubService {
 
 			method = executeMethod(url, credentials, issue.getBody(),
 					issue.getTitle(), null);
+			invalidate(user, repo);
 
-			showIssue = gson.fromJson(new String(method.getResponseBody()),
-					GitHubShowIssue.class);
+			final String response = method.getResponseBodyAsString();
+			showIssue = GitHubJsonDecoder.decodeShowIssue(new StringReader(
+					response));
 
 			if (showIssue == null || showIssue.getIssue() == null) {
 				if (LOG.isErrorEnabled()) {
-					LOG.error("Unexpected server response: "
-							+ method.getResponseBodyAsString());
+					LOG.error("Unexpected server response: " + response);
 				}
 				throw new GitHubServiceException("Unexpected server response");
 			}
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("Response: " + method.getResponseBodyAsString());
+				LOG.debug("Response: " + response);
 				LOG.debug("URL: " + method.getURI());
 			}
 			return showIssue.getIssue();
@@ -369,21 +534,23 @@ public class GitHubService {
 
 			method = executeMethod(url, credentials, issue.getBody(),
 					issue.getTitle(), null);
+			invalidate(user, repo);
 
-			GitHubShowIssue showIssue = gson.fromJson(
-					method.getResponseBodyAsString(), GitHubShowIssue.class);
+			final String response = method.getResponseBodyAsString();
+			GitHubShowIssue showIssue = decodeChangedIssue(response);
 
 			// Make sure the changes were made properly
 			if (showIssue == null || showIssue.getIssue() == null) {
 				if (LOG.isErrorEnabled()) {
-					LOG.error("Unexpected server response: "
-							+ method.getResponseBodyAsString());
+					LOG.error("Unexpected server response: " + response);
 				}
-				throw new GitHubServiceException("Unexpected server response");
+				// the request was answered, sending it again would not help
+				throw new GitHubServiceException("Unexpected server response",
+						method.getStatusLine());
 			}
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("Response: " + method.getResponseBodyAsString());
+				LOG.debug("Response: " + response);
 				LOG.debug("URL: " + method.getURI());
 			}
 			return showIssue.getIssue();
@@ -401,21 +568,63 @@ public class GitHubService {
 	public GitHubIssue showIssue(final String user, final String repo,
 			final String issueNumber, final GitHubCredentials credentials)
 			throws GitHubServiceException {
-		PostMethod method = null;
-		try {
-			// Build URL
-			String url = gitURLBase + gitIssueRoot + SHOW + user + "/" + repo
-					+ "/" + issueNumber;
+		// Build URL
+		String url = gitURLBase + gitIssueRoot + SHOW + user + "/" + repo
+				+ "/" + issueNumber;
 
-			// execute HTTP POST method
-			method = executeMethod(url, credentials, null, null, null);
+		GitHubShowIssue issue = read(url, credentials, GitHubShowIssue.class);
+		return issue.getIssue();
+	}
+
+	/**
+	 * Read and decode a resource, revalidating a cached response with a
+	 * conditional request. Concurrent reads of the same resource share one
+	 * request. The decoded object is shared with other callers reading the
+	 * same resource and must not be modified.
+	 */
+	private <T> T read(final String url, final GitHubCredentials credentials,
+			final Class<T> type) throws GitHubServiceException {
+		final String key = GitHubResponseCache.createKey(url, credentials);
+		GitHubResponseCache.Entry cached = responseCache.get(key);
+		if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+			responseCache.recordHit();
+			return type.cast(cached.getValue());
+		}
+
+		return singleFlight.execute(key, new Callable<T>() {
+			public T call() throws GitHubServiceException {
+				return fetch(url, key, credentials, type);
+			}
+		});
+	}
 
-			// transform JSON to Java object
-			GitHubShowIssue issue = gson
-					.fromJson(new String(method.getResponseBody()),
-							GitHubShowIssue.class);
+	private <T> T fetch(String url, String key, GitHubCredentials credentials,
+			Class<T> type) throws GitHubServiceException {
+		GitHubResponseCache.Entry cached = responseCache.get(key);
+		PostMethod method = createMethod(url, credentials, null, null, null);
+		try {
+			setValidators(method, cached);
+			executeMethod(method, credentials, true);
+
+			if (cached != null
+					&& method.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+				responseCache.recordRevalidation();
+				cached.setExpires(expires(method));
+				return type.cast(cached.getValue());
+			}
 
-			return issue.getIssue();
+			// transform JSON to Java object while reading the response
+			T value = decode(responseReader(method), type);
+			responseCache.recordMiss();
+			if (value != null) {
+				GitHubResponseCache.Entry entry = new GitHubResponseCache.Entry(
+						value, headerValue(method, "ETag"), headerValue(
+								method, "Last-Modified"), expires(method));
+				if (entry.hasValidator() || entry.isFresh(System.currentTimeMillis())) {
+					responseCache.put(key, entry);
+				}
+			}
+			return value;
 		} catch (GitHubServiceException e) {
 			throw e;
 		} catch (final RuntimeException runtimeException) {
@@ -423,14 +632,208 @@ public class GitHubService {
 		} catch (final Exception exception) {
 			throw new GitHubServiceException(exception);
 		} finally {
-			if (method != null) {
-				method.releaseConnection();
+			method.releaseConnection();
+		}
+	}
+
+	/**
+	 * make the request conditional on the cached response
+	 */
+	private static void setValidators(PostMethod method,
+			GitHubResponseCache.Entry cached) {
+		if (cached != null) {
+			if (cached.getEtag() != null) {
+				method.setRequestHeader("If-None-Match", cached.getEtag());
+			}
+			if (cached.getLastModified() != null) {
+				method.setRequestHeader("If-Modified-Since", cached
+						.getLastModified());
+			}
+		}
+	}
+
+	/**
+	 * Decode issues and comments with the streaming decoder, other responses
+	 * with Gson.
+	 */
+	private <T> T decode(Reader reader, Class<T> type) throws IOException {
+		if (type == GitHubIssues.class) {
+			return type.cast(GitHubJsonDecoder.decodeIssues(reader));
+		}
+		if (type == GitHubShowIssue.class) {
+			return type.cast(GitHubJsonDecoder.decodeShowIssue(reader));
+		}
+		if (type == GitHubComments.class) {
+			return type.cast(GitHubJsonDecoder.decodeComments(reader));
+		}
+		return gson.fromJson(reader, type);
+	}
+
+	/**
+	 * @return a reader on the response body as it is received, decoded with
+	 *         the response charset or UTF-8
+	 */
+	private static Reader responseReader(PostMethod method) throws IOException {
+		InputStream stream = method.getResponseBodyAsStream();
+		if (stream == null) {
+			stream = new ByteArrayInputStream(new byte[0]);
+		}
+		Header contentType = method.getResponseHeader("Content-Type");
+		String charset = "UTF-8";
+		if (contentType != null
+				&& contentType.getValue().toLowerCase().indexOf("charset=") != -1) {
+			charset = method.getResponseCharSet();
+		}
+		return new InputStreamReader(stream, charset);
+	}
+
+	private static String host(PostMethod method) throws GitHubServiceException {
+		try {
+			return method.getURI().getHost();
+		} catch (URIException e) {
+			throw new GitHubServiceException(e);
+		}
+	}
+
+	/**
+	 * @return the value of an integer header, or -1 if it is missing or
+	 *         malformed
+	 */
+	private static int intHeader(PostMethod method, String name) {
+		String value = headerValue(method, name);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return -1;
+	}
+
+	private static String headerValue(PostMethod method, String name) {
+		Header header = method.getResponseHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * @return until when the response may be used without revalidation, based
+	 *         on the Cache-Control max-age or the Expires header
+	 */
+	private static long expires(PostMethod method) {
+		long now = System.currentTimeMillis();
+		String cacheControl = headerValue(method, "Cache-Control");
+		if (cacheControl != null) {
+			for (String directive : cacheControl.split(",")) {
+				directive = directive.trim();
+				if (directive.equals("no-cache") || directive.equals("no-store")) {
+					return now;
+				}
+				if (directive.startsWith("max-age=")) {
+					try {
+						return now + 1000L
+								* Long.parseLong(directive.substring(8));
+					} catch (NumberFormatException e) {
+						// ignore
+					}
+				}
+			}
+		}
+		String expires = headerValue(method, "Expires");
+		if (expires != null) {
+			try {
+				return DateUtil.parseDate(expires).getTime();
+			} catch (DateParseException e) {
+				// ignore
 			}
 		}
+		return now;
+	}
+
+	/**
+	 * Drop cached responses of a repository after it has been modified.
+	 */
+	private void invalidate(String user, String repo) {
+		responseCache.invalidate("/" + user + "/" + repo + "/");
+	}
+
+	/**
+	 * Coalesces concurrent reads of the same resource, see
+	 * {@link GitHubSingleFlight#getCoalescedCount()}.
+	 */
+	public GitHubSingleFlight getSingleFlight() {
+		return singleFlight;
+	}
+
+	/**
+	 * Set the policy for retrying failed reads.
+	 */
+	public void setRetryPolicy(GitHubRetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	public GitHubRetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Set the circuit breaker that rejects requests while a host is down.
+	 */
+	public void setCircuitBreaker(GitHubCircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	public GitHubCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Shapes the requests sent with each credentials to the API rate limit.
+	 */
+	public GitHubRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	/**
+	 * Set the progress monitor of the requests sent by the calling thread.
+	 * Canceling it aborts requests waiting for the rate limiter or for a retry
+	 * with an {@link OperationCanceledException}.
+	 * 
+	 * @param monitor
+	 *            - the monitor, or null to never abort the waits
+	 * @return the monitor set before, to be restored by the caller
+	 */
+	public IProgressMonitor setMonitor(IProgressMonitor monitor) {
+		IProgressMonitor previous = monitors.get();
+		if (monitor == null) {
+			monitors.remove();
+		} else {
+			monitors.set(monitor);
+		}
+		return previous;
+	}
+
+	/**
+	 * Cache of decoded responses for issue lists, issues and comments.
+	 */
+	public GitHubResponseCache getResponseCache() {
+		return responseCache;
 	}
 
 	private PostMethod executeMethod(String url, GitHubCredentials credentials,
 			String body, String title, String comment) throws GitHubServiceException {
+		return executeMethod(createMethod(url, credentials, body, title, comment),
+				credentials, false);
+	}
+
+	private PostMethod createMethod(String url, GitHubCredentials credentials,
+			String body, String title, String comment)
+			throws GitHubServiceException {
+		if (credentials == null) {
+			// every request is authenticated with the login and API token
+			throw new GitHubServiceException("Missing credentials, "
+					+ "set the user name and API token of the repository");
+		}
 
 		// Create the HTTP POST method
 		PostMethod method = new PostMethod(url);
@@ -454,17 +857,103 @@ public class GitHubService {
 		}
 
 		method.setRequestBody(nameValuePairs.toArray(new NameValuePair[] {}));
+		return method;
+	}
+
+	/**
+	 * Send the request once the rate limiter allows it. Requests refused
+	 * because the quota was exhausted are queued again instead of failing.
+	 * Reads that fail with an I/O error or a server error are retried
+	 * according to the {@link GitHubRetryPolicy}; while the host keeps failing
+	 * the {@link GitHubCircuitBreaker} rejects requests without sending them.
+	 * 
+	 * @param idempotent
+	 *            - true if the request only reads and may be sent again
+	 */
+	private PostMethod executeMethod(PostMethod method,
+			GitHubCredentials credentials, boolean idempotent)
+			throws GitHubServiceException {
+		String host = host(method);
+		GitHubRetryPolicy retryPolicy = this.retryPolicy;
+		GitHubCircuitBreaker circuitBreaker = this.circuitBreaker;
+		retryPolicy.recordRequest();
+		IProgressMonitor monitor = monitors.get();
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
 
 		int status;
+		int rateLimitedAttempts = 0;
+		int retries = 0;
+		while (true) {
+			circuitBreaker.checkRequest(host);
+			IOException failure = null;
+			status = -1;
+			boolean sent = false;
+			try {
+				rateLimiter.acquire(credentials, monitor);
+				status = transport.execute(method);
+				sent = true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new GitHubServiceException(e);
+			} catch (IOException e) {
+				method.releaseConnection();
+				failure = e;
+				sent = true;
+			} catch (URISyntaxException e) {
+				method.releaseConnection();
+				throw new GitHubServiceException(e);
+			} finally {
+				if (!sent) {
+					// no outcome, the circuit must not wait for one
+					circuitBreaker.recordAbort(host);
+				}
+			}
 
-		try {
-			status = httpClient(url).executeMethod(method);
-		} catch (HttpException e) {
-			throw new GitHubServiceException(e);
-		} catch (IOException e) {
-			throw new GitHubServiceException(e);
-		} catch (URISyntaxException e) {
-			throw new GitHubServiceException(e);
+			if (failure == null) {
+				int remaining = intHeader(method, "X-RateLimit-Remaining");
+				long resetTime = intHeader(method, "X-RateLimit-Reset") * 1000L;
+				rateLimiter.update(credentials, intHeader(method,
+						"X-RateLimit-Limit"), remaining, resetTime);
+				if (status == HttpStatus.SC_FORBIDDEN && remaining == 0
+						&& ++rateLimitedAttempts <= MAX_RATE_LIMITED_ATTEMPTS) {
+					// the request was not processed, send it again when the
+					// quota has been refilled; the host itself did answer
+					circuitBreaker.recordSuccess(host);
+					method.releaseConnection();
+					rateLimiter.throttled(credentials, resetTime);
+					continue;
+				}
+				if (status < 500) {
+					circuitBreaker.recordSuccess(host);
+					break;
+				}
+			}
+
+			circuitBreaker.recordFailure(host);
+			if (!idempotent || !retryPolicy.tryRetry(++retries)) {
+				if (failure != null) {
+					throw new GitHubServiceException(failure);
+				}
+				break;
+			}
+			long retryAfter = 0;
+			if (failure == null) {
+				retryAfter = Math.max(0, intHeader(method, "Retry-After")) * 1000L;
+				method.releaseConnection();
+			}
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Retrying " + method.getPath() + " after "
+						+ (failure != null ? failure.toString() : "HTTP "
+								+ status));
+			}
+			try {
+				sleep(retryPolicy.getDelay(retries, retryAfter), monitor);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new GitHubServiceException(e);
+			}
 		}
 		switch (status) {
 		case HttpStatus.SC_OK:
@@ -473,29 +962,36 @@ public class GitHubService {
 		case HttpStatus.SC_CREATED:
 			// Do nothing
 			break;
+		case HttpStatus.SC_NOT_MODIFIED:
+			// conditional request, the cached response is still valid
+			break;
 		case HttpStatus.SC_UNAUTHORIZED:
 		case HttpStatus.SC_FORBIDDEN:
+			// return the pooled connection, callers only release it on success
+			method.releaseConnection();
 			throw new PermissionDeniedException(method.getStatusLine());
 		default:
+			method.releaseConnection();
 			throw new GitHubServiceException(method.getStatusLine());
 		}
 
 		return method;
 	}
 
-	private HttpClient httpClient(String uri) throws URISyntaxException {
-		HttpClient httpClient = new HttpClient();
-
-		IProxyService proxyService = GitHubActivator.getInstance()
-				.getProxyService();
-		IProxyData[] proxyData = proxyService.select(new URI(uri));
-		if (proxyData.length > 0) {
-			String proxyHost = proxyData[0].getHost();
-			int proxyPort = proxyData[0].getPort();
-			httpClient.getHostConfiguration().setProxy(proxyHost, proxyPort);
+	/**
+	 * wait in short slices so that canceling the monitor aborts the wait
+	 */
+	private static void sleep(long millis, IProgressMonitor monitor)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + millis;
+		long remaining = millis;
+		while (remaining > 0) {
+			if (monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			Thread.sleep(Math.min(remaining, CANCEL_POLL_INTERVAL));
+			remaining = deadline - System.currentTimeMillis();
 		}
-
-		return httpClient;
 	}
 
 	/**
@@ -547,6 +1043,38 @@ public class GitHubService {
 
 	}
 
+	/**
+	 * Change the status of an existing issue to open without editing it.
+	 * 
+	 * @return the issue with changes
+	 * 
+	 * @throws GitHubServiceException
+	 * 
+	 *             API Doc: issues/reopen/:user/:repo/:number API POST
+	 *             Variables: login, api-token
+	 */
+	public GitHubIssue reopenIssueStatus(String user, String repo,
+			GitHubIssue issue, GitHubCredentials credentials)
+			throws GitHubServiceException {
+		return changeIssueStatus(user, repo, REOPEN, issue, credentials);
+	}
+
+	/**
+	 * Change the status of an existing issue to closed without editing it.
+	 * 
+	 * @return the issue with changes
+	 * 
+	 * @throws GitHubServiceException
+	 * 
+	 *             API Doc: issues/close/:user/:repo/:number API POST
+	 *             Variables: login, api-token
+	 */
+	public GitHubIssue closeIssueStatus(String user, String repo,
+			GitHubIssue issue, GitHubCredentials credentials)
+			throws GitHubServiceException {
+		return changeIssueStatus(user, repo, CLOSE, issue, credentials);
+	}
+
 	private GitHubIssue changeIssueStatus(final String user, final String repo,
 			String githubOperation, final GitHubIssue issue,
 			final GitHubCredentials credentials) throws GitHubServiceException {
@@ -558,21 +1086,23 @@ public class GitHubService {
 					+ "/" + repo + "/" + issue.getNumber();
 
 			method = executeMethod(url, credentials, null, null, null);
+			invalidate(user, repo);
 
-			GitHubShowIssue showIssue = gson.fromJson(
-					method.getResponseBodyAsString(), GitHubShowIssue.class);
+			final String response = method.getResponseBodyAsString();
+			GitHubShowIssue showIssue = decodeChangedIssue(response);
 
 			// Make sure the changes were made properly
 			if (showIssue == null || showIssue.getIssue() == null) {
 				if (LOG.isErrorEnabled()) {
-					LOG.error("Unexpected server response: "
-							+ method.getResponseBodyAsString());
+					LOG.error("Unexpected server response: " + response);
 				}
-				throw new GitHubServiceException("Unexpected server response");
+				// the request was answered, sending it again would not help
+				throw new GitHubServiceException("Unexpected server response",
+						method.getStatusLine());
 			}
 
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("Response: " + method.getResponseBodyAsString());
+				LOG.debug("Response: " + response);
 				LOG.debug("URL: " + method.getURI());
 			}
 			return showIssue.getIssue();
@@ -587,30 +1117,31 @@ public class GitHubService {
 		}
 	}
 
-	public List<GitHubComment> getIssueComments(String user, String project, String taskId, final GitHubCredentials credentials)
-			throws GitHubServiceException {
-		PostMethod method = null;
+	/**
+	 * @return the decoded response to a change, or null if it is not JSON,
+	 *         such as the error page of a proxy
+	 */
+	private static GitHubShowIssue decodeChangedIssue(String response)
+			throws IOException {
 		try {
-			// Build URL
-			String url =  gitURLBase + gitIssueRoot + COMMENTS + user + "/" + project + "/" + taskId;
-			method = executeMethod(url, credentials, null, null, null);
-			GitHubComments ghComments = gson.fromJson(method.getResponseBodyAsString(), GitHubComments.class);
+			return GitHubJsonDecoder.decodeShowIssue(new StringReader(response));
+		} catch (JsonParseException e) {
+			return null;
+		}
+	}
 
-			List<GitHubComment> comments = new ArrayList<GitHubComment>();
-			for (GitHubComment comment : ghComments.getComments()) {
-				comments.add(comment);
-			}
+	public List<GitHubComment> getIssueComments(String user, String project, String taskId, final GitHubCredentials credentials)
+			throws GitHubServiceException {
+		// Build URL
+		String url =  gitURLBase + gitIssueRoot + COMMENTS + user + "/" + project + "/" + taskId;
+		GitHubComments ghComments = read(url, credentials, GitHubComments.class);
 
-			return comments;
-		} catch (RuntimeException e) {
-			throw e;
-		} catch (Exception e) {
-			throw new GitHubServiceException(e);
-		} finally {
-			if (method != null) {
-				method.releaseConnection();
-			}
+		List<GitHubComment> comments = new ArrayList<GitHubComment>();
+		for (GitHubComment comment : ghComments.getComments()) {
+			comments.add(comment);
 		}
+
+		return comments;
 	}
 
 	public void addComment(String user, String project, String taskId,
@@ -619,8 +1150,9 @@ public class GitHubService {
 		try {
 			String url = gitURLBase + gitIssueRoot + COMMENT + user + "/" + project + "/" + taskId;
 			method = executeMethod(url, credentials, null, null, commentText);
-		} catch (RuntimeException e){
-
+			invalidate(user, project);
+		} catch (final RuntimeException runTimeException) {
+			throw runTimeException;
 		} catch (Exception e) {
 			throw new GitHubServiceException(e);
 		} finally {
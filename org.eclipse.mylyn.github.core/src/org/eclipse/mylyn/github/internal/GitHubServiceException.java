@@ -48,6 +48,11 @@ public class GitHubServiceException extends Exception {
 		super(message);
 	}
 	
+	protected GitHubServiceException(String message, StatusLine statusLine) {
+		super(message);
+		httpStatusCode = statusLine.getStatusCode();
+	}
+
 	protected GitHubServiceException(StatusLine statusLine) {
 		this(String.format("HTTP %s: %s",statusLine.getStatusCode(),statusLine.getReasonPhrase()));
 		httpStatusCode = statusLine.getStatusCode();
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller executes the
+ * call, callers arriving while it is in flight wait for it and share its
+ * result or failure.
+ */
+public class GitHubSingleFlight {
+
+	private final ConcurrentMap<String, FutureTask<Object>> inFlight = new ConcurrentHashMap<String, FutureTask<Object>>();
+
+	private final AtomicLong executed = new AtomicLong();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Execute the call unless a call with the same key is in flight, in which
+	 * case its result is returned.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String key, final Callable<T> call)
+			throws GitHubServiceException {
+		FutureTask<Object> task = new FutureTask<Object>(
+				new Callable<Object>() {
+					public Object call() throws Exception {
+						return call.call();
+					}
+				});
+		FutureTask<Object> existing = inFlight.putIfAbsent(key, task);
+		if (existing == null) {
+			executed.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				inFlight.remove(key, task);
+			}
+			existing = task;
+		} else {
+			coalesced.incrementAndGet();
+		}
+
+		try {
+			return (T) existing.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GitHubServiceException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof GitHubServiceException) {
+				throw (GitHubServiceException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new GitHubServiceException(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * @return the number of calls that were executed
+	 */
+	public long getExecutedCount() {
+		return executed.get();
+	}
+
+	/**
+	 * @return the number of calls that shared the result of a call in flight
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+}
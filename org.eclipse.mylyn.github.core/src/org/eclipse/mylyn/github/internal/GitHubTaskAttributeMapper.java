@@ -2,7 +2,6 @@ package org.eclipse.mylyn.github.internal;
 
 import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import org.eclipse.mylyn.tasks.core.TaskRepository;
@@ -15,8 +14,6 @@ import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
  */
 public class GitHubTaskAttributeMapper extends TaskAttributeMapper {
 
-	private DateFormat dateFormat = SimpleDateFormat.getDateTimeInstance();
-	
 	public GitHubTaskAttributeMapper(TaskRepository taskRepository) {
 		super(taskRepository);
 	}
@@ -26,16 +23,25 @@ public class GitHubTaskAttributeMapper extends TaskAttributeMapper {
 		return key;
 	}
 
+	/**
+	 * Dates are stored in milliseconds, task data of earlier versions holds
+	 * GitHub or localized dates.
+	 */
 	@Override
 	public Date getDateValue(TaskAttribute attribute) {
+		Date date = super.getDateValue(attribute);
 		String value = attribute.getValue();
-		if (value != null) {
+		if (date == null && value != null && value.length() > 0) {
+			long time = GitHubDateCodec.parse(value);
+			if (time >= 0) {
+				return new Date(time);
+			}
 			try {
-				return dateFormat.parse(value);
+				return DateFormat.getDateTimeInstance().parse(value);
 			} catch (ParseException e) {
-				return super.getDateValue(attribute);
+				return null;
 			}
 		}
-		return null;
+		return date;
 	}
 }
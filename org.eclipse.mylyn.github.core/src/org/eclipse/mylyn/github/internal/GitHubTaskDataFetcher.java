@@ -0,0 +1,250 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+
+/**
+ * Fetches issue details and comments for many issues. Issues that are stored
+ * unchanged are delivered without a request, issues known from the latest
+ * issue list only need their comments, and the rest are fetched with a
+ * bounded number of concurrent requests. Results are delivered to the
+ * {@link TaskDataCollector} on the calling thread as they complete.
+ *
+ * @see #PROPERTY_FETCH_THREADS
+ */
+public class GitHubTaskDataFetcher {
+
+	/**
+	 * {@link TaskRepository} property with the number of concurrent requests
+	 * used for fetching task data.
+	 */
+	public static final String PROPERTY_FETCH_THREADS = "github.fetchThreads";
+
+	public static final int DEFAULT_FETCH_THREADS = 4;
+
+	public static final int MAX_FETCH_THREADS = 16;
+
+	/**
+	 * how often (in milliseconds) the progress monitor is checked for
+	 * cancellation while waiting for a result
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	/**
+	 * how long (in seconds) an idle fetcher thread is kept
+	 */
+	private static final long KEEP_ALIVE = 60;
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final GitHubRepositoryConnector connector;
+
+	/**
+	 * Runs the requests of all fetches of the connector, threads are released
+	 * when idle. Each fetch keeps at most the configured number of requests in
+	 * it.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	public GitHubTaskDataFetcher(GitHubRepositoryConnector connector) {
+		this.connector = connector;
+		executor = new ThreadPoolExecutor(MAX_FETCH_THREADS,
+				MAX_FETCH_THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"GitHub task data fetcher-"
+										+ threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return the number of concurrent requests configured for the repository
+	 */
+	public static int getFetchThreads(TaskRepository repository) {
+		String value = repository.getProperty(PROPERTY_FETCH_THREADS);
+		if (value != null) {
+			try {
+				int threads = Integer.parseInt(value.trim());
+				return Math.max(1, Math.min(MAX_FETCH_THREADS, threads));
+			} catch (NumberFormatException e) {
+				// use default
+			}
+		}
+		return DEFAULT_FETCH_THREADS;
+	}
+
+	/**
+	 * Fetch the full task data of the given tasks, each task once.
+	 *
+	 * @return {@link Status#OK_STATUS}, {@link Status#CANCEL_STATUS} if the
+	 *         monitor was canceled, or a {@link MultiStatus} with one child per
+	 *         task that could not be fetched
+	 */
+	public IStatus fetch(final TaskRepository repository,
+			Collection<String> taskIds, TaskDataCollector collector,
+			IProgressMonitor monitor) {
+		GitHubRepositoryContext context = connector.getContext(repository);
+		final String user = context.getUser();
+		final String project = context.getProject();
+		final GitHubCredentials credentials = context.getCredentials();
+		Set<String> uniqueIds = new LinkedHashSet<String>(taskIds);
+
+		MultiStatus status = new MultiStatus(GitHub.BUNDLE_ID, 0,
+				"Failed to retrieve some issues", null);
+		monitor.beginTask("Retrieving issues ...", uniqueIds.size());
+		Map<Future<GitHubIssueStore.Entry>, String> pending = new HashMap<Future<GitHubIssueStore.Entry>, String>();
+		try {
+			// deliver stored issues right away
+			List<String> remoteIds = new ArrayList<String>();
+			for (String taskId : uniqueIds) {
+				GitHubIssueStore.Entry stored = connector.readStoredIssue(
+						repository, taskId);
+				if (stored == null) {
+					remoteIds.add(taskId);
+				} else {
+					accept(repository, user, project, stored, collector,
+							monitor);
+				}
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+			}
+			if (remoteIds.isEmpty()) {
+				return Status.OK_STATUS;
+			}
+
+			CompletionService<GitHubIssueStore.Entry> completion = new ExecutorCompletionService<GitHubIssueStore.Entry>(
+					executor);
+			Iterator<String> waiting = remoteIds.iterator();
+			int threads = getFetchThreads(repository);
+			while (pending.size() < threads && waiting.hasNext()) {
+				submit(completion, pending, repository, user, project,
+						waiting.next(), credentials);
+			}
+
+			while (!pending.isEmpty()) {
+				Future<GitHubIssueStore.Entry> future = await(completion,
+						monitor);
+				if (future == null) {
+					return Status.CANCEL_STATUS;
+				}
+				String taskId = pending.remove(future);
+				if (waiting.hasNext()) {
+					submit(completion, pending, repository, user, project,
+							waiting.next(), credentials);
+				}
+				try {
+					accept(repository, user, project, future.get(), collector,
+							monitor);
+				} catch (ExecutionException e) {
+					status.add(GitHub.createErrorStatus("Issue " + taskId
+							+ ": " + e.getCause().getMessage(), e.getCause()));
+					monitor.worked(1);
+				} catch (InterruptedException e) {
+					// the future is done
+					Thread.currentThread().interrupt();
+				}
+			}
+		} finally {
+			for (Future<GitHubIssueStore.Entry> future : pending.keySet()) {
+				future.cancel(true);
+			}
+			monitor.done();
+		}
+		return status.getChildren().length == 0 ? Status.OK_STATUS : status;
+	}
+
+	private void submit(CompletionService<GitHubIssueStore.Entry> completion,
+			Map<Future<GitHubIssueStore.Entry>, String> pending,
+			final TaskRepository repository, final String user,
+			final String project, final String taskId,
+			final GitHubCredentials credentials) {
+		final GitHubIssue listed = connector.getListedIssue(repository, taskId);
+		pending.put(completion.submit(new Callable<GitHubIssueStore.Entry>() {
+			public GitHubIssueStore.Entry call() throws Exception {
+				// canceled by interrupting the thread; each worker makes one
+				// request at a time
+				return connector.fetchIssue(repository, user, project, taskId,
+						listed, credentials, false, new NullProgressMonitor());
+			}
+		}), taskId);
+	}
+
+	private void accept(TaskRepository repository, String user,
+			String project, GitHubIssueStore.Entry entry,
+			TaskDataCollector collector, IProgressMonitor monitor) {
+		TaskData taskData = connector.getTaskDataHandler().createTaskData(
+				repository, monitor, user, project,
+				connector.getOutbox(repository).apply(entry.getIssue()),
+				entry.getComments());
+		collector.accept(taskData);
+		monitor.worked(1);
+	}
+
+	/**
+	 * wait for the next result, returns null if the monitor was canceled
+	 */
+	private Future<GitHubIssueStore.Entry> await(
+			CompletionService<GitHubIssueStore.Entry> completion,
+			IProgressMonitor monitor) {
+		while (!monitor.isCanceled()) {
+			try {
+				Future<GitHubIssueStore.Entry> future = completion.poll(
+						CANCEL_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (future != null) {
+					return future;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				monitor.setCanceled(true);
+			}
+		}
+		return null;
+	}
+}
@@ -1,14 +1,14 @@
 package org.eclipse.mylyn.github.internal;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.mylyn.internal.tasks.core.RepositoryPerson;
 import org.eclipse.mylyn.tasks.core.ITaskMapping;
 import org.eclipse.mylyn.tasks.core.RepositoryResponse;
@@ -17,10 +17,9 @@ import org.eclipse.mylyn.tasks.core.TaskRepository;
 import org.eclipse.mylyn.tasks.core.data.AbstractTaskDataHandler;
 import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
 import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
-import org.eclipse.mylyn.tasks.core.data.TaskAttributeMetaData;
 import org.eclipse.mylyn.tasks.core.data.TaskCommentMapper;
 import org.eclipse.mylyn.tasks.core.data.TaskData;
-import org.eclipse.mylyn.tasks.core.data.TaskOperation;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
 
 /**
  * 
@@ -28,15 +27,8 @@ import org.eclipse.mylyn.tasks.core.data.TaskOperation;
  */
 public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 
-	private static final String DATA_VERSION = "1";
-	/**
-	 * 
-	 */
-	private GitHubTaskAttributeMapper taskAttributeMapper = null;
+	private static final String DATA_VERSION = "2";
 	private final GitHubRepositoryConnector connector;
-	private DateFormat dateFormat = SimpleDateFormat.getDateTimeInstance();
-	
-	private DateFormat githubDateFormat = new SimpleDateFormat("yyyy/mm/dd HH:MM:ss Z");
 
 	public GitHubTaskDataHandler(GitHubRepositoryConnector connector) {
 		this.connector = connector;
@@ -44,10 +36,7 @@ public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 	
 	@Override
 	public TaskAttributeMapper getAttributeMapper(TaskRepository taskRepository) {
-		if (this.taskAttributeMapper == null)
-			this.taskAttributeMapper = new GitHubTaskAttributeMapper(
-					taskRepository);
-		return this.taskAttributeMapper;
+		return connector.getContext(taskRepository).getAttributeMapper();
 	}
 
 	public TaskData createPartialTaskData(TaskRepository repository,
@@ -64,36 +53,23 @@ public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 		createAttribute(data, GitHubTaskAttributes.TITLE, issue.getTitle());
 		createAttribute(data, GitHubTaskAttributes.BODY, issue.getBody());
 		createAttribute(data, GitHubTaskAttributes.STATUS, issue.getState());
-		createAttribute(data, GitHubTaskAttributes.CREATION_DATE, toLocalDate(issue.getCreated_at()));
-		createAttribute(data, GitHubTaskAttributes.MODIFICATION_DATE, toLocalDate(issue.getCreated_at()));
-		createAttribute(data, GitHubTaskAttributes.CLOSED_DATE, toLocalDate(issue.getClosed_at()));
+		createAttribute(data, GitHubTaskAttributes.CREATION_DATE, GitHubDateCodec.toAttributeValue(issue.getCreated_at()));
+		createAttribute(data, GitHubTaskAttributes.MODIFICATION_DATE, GitHubDateCodec.toAttributeValue(issue.getUpdated_at()));
+		createAttribute(data, GitHubTaskAttributes.CLOSED_DATE, GitHubDateCodec.toAttributeValue(issue.getClosed_at()));
 		createAttribute(data, GitHubTaskAttributes.NEWCOMMENT, null);
 		
 		if (comments != null) {
+			// the task data replaces the stored one as a whole, so all
+			// comments are mapped, not only those new to the comment history
 			int i = 1;
 			for (GitHubComment comment : comments) {
-				TaskAttribute attribute = data.getRoot().createAttribute(
-						TaskAttribute.PREFIX_COMMENT + i);
-				TaskCommentMapper taskComment = TaskCommentMapper
-						.createFrom(attribute);
-
-				final RepositoryPerson author = new RepositoryPerson(
-						repository, comment.getUser());
-				author.setName(comment.getUser());
-				taskComment.setAuthor(author);
-				taskComment.setNumber(i);
-				taskComment.setText(comment.getBody());
-				try {
-					taskComment.setCreationDate(githubDateFormat.parse(comment
-							.getCreated_at()));
-				} catch (ParseException e) {
-					// ignore
-				}
-				taskComment.applyTo(attribute);
+				createComment(repository, data, comment, i);
 				i++;
 			}
 		}
-		if (isPartial(data)) {
+		if (comments == null || isPartial(data)) {
+			// without comments (e.g. from a list query) the task data is
+			// not complete
 			data.setPartial(true);
 		}
 
@@ -101,76 +77,50 @@ public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 	}
 	
 	
-	private boolean isPartial(TaskData data) {
-		for (GitHubTaskAttributes attribute: GitHubTaskAttributes.values()) {
-			if (attribute.isRequiredForFullTaskData()) {
-				TaskAttribute taskAttribute = data.getRoot().getAttribute(attribute.getId());
-				if (taskAttribute == null) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
+	private void createComment(TaskRepository repository,
+			TaskData data, GitHubComment comment, int number) {
+		TaskAttribute attribute = data.getRoot().createAttribute(
+				TaskAttribute.PREFIX_COMMENT + number);
+		TaskCommentMapper taskComment = TaskCommentMapper
+				.createFrom(attribute);
 
-	private void createOperations(TaskData data, GitHubIssue issue) {
-		TaskAttribute operationAttribute = data.getRoot().createAttribute(TaskAttribute.OPERATION);
-		operationAttribute.getMetaData().setType(TaskAttribute.TYPE_OPERATION);
-		
-		if (!data.isNew()) {
-			if (issue.getState() != null) {
-				addOperation(data,issue,GitHubTaskOperation.LEAVE,true);
-				if (issue.getState().equals("open")) {
-					addOperation(data,issue,GitHubTaskOperation.CLOSE,false);
-				} else if (issue.getState().equals("closed")) {
-					addOperation(data,issue,GitHubTaskOperation.REOPEN,false);
-				}
-			}
+		final RepositoryPerson author = new RepositoryPerson(
+				repository, comment.getUser());
+		author.setName(comment.getUser());
+		taskComment.setAuthor(author);
+		taskComment.setNumber(number);
+		taskComment.setText(comment.getBody());
+		long created = GitHubDateCodec.parse(comment.getCreated_at());
+		if (created >= 0) {
+			taskComment.setCreationDate(new Date(created));
 		}
+		taskComment.applyTo(attribute);
 	}
 
-	private void addOperation(TaskData data, GitHubIssue issue, GitHubTaskOperation operation,boolean asDefault) {
-		TaskAttribute attribute = data.getRoot().createAttribute(TaskAttribute.PREFIX_OPERATION + operation.getId());
-		String label = createOperationLabel(issue, operation);
-		TaskOperation.applyTo(attribute, operation.getId(), label);
-		
-		if (asDefault) {
-			TaskAttribute operationAttribute = data.getRoot().getAttribute(TaskAttribute.OPERATION);
-			TaskOperation.applyTo(operationAttribute, operation.getId(), label);
+	private boolean isPartial(TaskData data) {
+		for (GitHubTaskAttributes attribute: GitHubTaskDataTemplates.getRequiredAttributes()) {
+			TaskAttribute taskAttribute = data.getRoot().getAttribute(attribute.getId());
+			if (taskAttribute == null) {
+				return true;
+			}
 		}
+		return false;
 	}
 
-	private String createOperationLabel(GitHubIssue issue,
-			GitHubTaskOperation operation) {
-		return operation==GitHubTaskOperation.LEAVE?operation.getLabel()+issue.getState():operation.getLabel();
-	}
-
-	private String toLocalDate(String date) {
-		if (date != null && date.trim().length() > 0) {
-			// expect "2010/02/02 22:58:39 -0800"
-			try {
-				Date d = githubDateFormat.parse(date);
-				date = dateFormat.format(d);
-			} catch (ParseException e) {
-				// ignore
-			}
+	private void createOperations(TaskData data, GitHubIssue issue) {
+		String state = data.isNew() ? null : issue.getState();
+		if (!GitHubTaskDataTemplates.createOperations(data, state)) {
+			// a state without template can only be left as it is
+			GitHubTaskDataTemplates.createOperations(data, null);
+			GitHubTaskDataTemplates.addOperation(data, state, GitHubTaskOperation.LEAVE, true);
 		}
-		return date;
 	}
 
 	private String toGitHubDate(TaskData taskData,
 			GitHubTaskAttributes attr) {
-		TaskAttribute attribute = taskData.getRoot().getAttribute(attr.name());
-		String value = attribute==null?null:attribute.getValue();
-		if (value != null) {
-			try {
-				Date d = dateFormat.parse(value);
-				value = githubDateFormat.format(d);
-			} catch (ParseException e) {
-				// ignore
-			}
-		}
-		return value;
+		TaskAttribute attribute = taskData.getRoot().getAttribute(attr.getId());
+		Date date = attribute==null?null:taskData.getAttributeMapper().getDateValue(attribute);
+		return date==null?null:GitHubDateCodec.format(date.getTime());
 	}
 
 	public TaskData createTaskData(TaskRepository repository,
@@ -191,8 +141,8 @@ public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 		issue.setTitle(getAttributeValue(taskData,GitHubTaskAttributes.TITLE));
 		issue.setState(getAttributeValue(taskData,GitHubTaskAttributes.STATUS));
 		issue.setCreated_at(toGitHubDate(taskData,GitHubTaskAttributes.CREATION_DATE));
-		issue.setCreated_at(toGitHubDate(taskData,GitHubTaskAttributes.MODIFICATION_DATE));
-		issue.setCreated_at(toGitHubDate(taskData,GitHubTaskAttributes.CLOSED_DATE));
+		issue.setUpdated_at(toGitHubDate(taskData,GitHubTaskAttributes.MODIFICATION_DATE));
+		issue.setClosed_at(toGitHubDate(taskData,GitHubTaskAttributes.CLOSED_DATE));
 		return issue;
 	}
 	
@@ -203,17 +153,77 @@ public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 	}
 
 	private void createAttribute(TaskData data, GitHubTaskAttributes attribute, String value) {
-		TaskAttribute attr = data.getRoot().createAttribute(attribute.getId());
-		TaskAttributeMetaData metaData = attr.getMetaData();
-		metaData.defaults()
-			.setType(attribute.getType())
-			.setKind(attribute.getKind())
-			.setLabel(attribute.getLabel())
-			.setReadOnly(attribute.isReadOnly());
+		GitHubTaskDataTemplates.createAttribute(data, attribute, value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @return always {@code true}
+	 */
+	@Override
+	public boolean canGetMultiTaskData(TaskRepository taskRepository) {
+		return true;
+	}
+
+	/**
+	 * Fetches the tasks concurrently, see {@link GitHubTaskDataFetcher}.
+	 * Tasks that fail are logged and skipped unless all of them fail. Changes
+	 * to the tasks that GitHub refused are reported once the tasks have been
+	 * fetched.
+	 */
+	@Override
+	public void getMultiTaskData(TaskRepository repository,
+			Set<String> taskIds, TaskDataCollector collector,
+			IProgressMonitor monitor) throws CoreException {
+		IStatus status = connector.getTaskDataFetcher().fetch(repository,
+				taskIds, collector, monitor);
+		if (status.getSeverity() == IStatus.CANCEL) {
+			throw new OperationCanceledException();
+		}
+		MultiStatus refused = new MultiStatus(GitHub.BUNDLE_ID, 0,
+				"GitHub refused changes to some issues", null);
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		for (String taskId : taskIds) {
+			IStatus taskRefused = outbox.takeRefused(taskId);
+			if (taskRefused != null) {
+				refused.add(taskRefused);
+			}
+		}
+		if (!status.isOK()) {
+			if (status.getChildren().length >= taskIds.size()
+					&& refused.isOK()) {
+				throw new CoreException(status);
+			}
+			GitHub.getLog().log(status);
+		}
+		if (!refused.isOK()) {
+			throw new CoreException(refused);
+		}
+	}
 
-		if (value != null) {
-			attr.addValue(value);
+	/**
+	 * Task data of version 1 holds localized or GitHub dates, they are
+	 * converted to milliseconds.
+	 */
+	@Override
+	public void migrateTaskData(TaskRepository taskRepository,
+			TaskData taskData) {
+		if (DATA_VERSION.equals(taskData.getVersion())) {
+			return;
 		}
+		TaskAttributeMapper mapper = taskData.getAttributeMapper();
+		for (GitHubTaskAttributes attr : new GitHubTaskAttributes[] {
+				GitHubTaskAttributes.CREATION_DATE,
+				GitHubTaskAttributes.MODIFICATION_DATE,
+				GitHubTaskAttributes.CLOSED_DATE }) {
+			TaskAttribute attribute = taskData.getRoot().getAttribute(
+					attr.getId());
+			if (attribute != null) {
+				mapper.setDateValue(attribute, mapper.getDateValue(attribute));
+			}
+		}
+		taskData.setVersion(DATA_VERSION);
 	}
 
 	@Override
@@ -223,10 +233,8 @@ public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 		
 		data.setVersion(DATA_VERSION);
 
-		for (GitHubTaskAttributes attr: GitHubTaskAttributes.values()) {
-			if (attr.isInitTask()) {
-				createAttribute(data, attr,null);		
-			}
+		for (GitHubTaskAttributes attr: GitHubTaskDataTemplates.getInitTaskAttributes()) {
+			createAttribute(data, attr,null);
 		}
 		
 		return true;
@@ -238,49 +246,86 @@ public class GitHubTaskDataHandler extends AbstractTaskDataHandler {
 			IProgressMonitor monitor) throws CoreException {
 		
 		GitHubIssue issue = createIssue(taskData);
-		String user = GitHub.computeTaskRepositoryUser(repository.getUrl());
-		String repo = GitHub.computeTaskRepositoryProject(repository.getUrl());
+		if (!taskData.isNew()) {
+			// sent in the background, the returned task data shows the
+			// changes until they are
+			connector.getOutbox(repository).add(createChange(taskData, issue,
+					oldAttributes));
+			return new RepositoryResponse(ResponseKind.TASK_UPDATED, issue
+					.getNumber());
+		}
+		GitHubRepositoryContext context = connector.getContext(repository);
+		String user = context.getUser();
+		String repo = context.getProject();
+		int calls = 0;
 		try {
-			
 			GitHubService service = connector.getService();
-			GitHubCredentials credentials = GitHubCredentials.create(repository);
-			if (taskData.isNew()) {
-				issue = service.openIssue(user , repo, issue, credentials);
-			} else {
-				TaskAttribute operationAttribute = taskData.getRoot().getAttribute(TaskAttribute.OPERATION);
-				
-				GitHubTaskOperation operation = null;
-				
-				if (operationAttribute != null) {
-					String opId = operationAttribute.getValue();
-					operation = GitHubTaskOperation.fromId(opId);
-					
-				}
+			GitHubCredentials credentials = context.getCredentials();
+			issue = service.openIssue(user , repo, issue, credentials);
+			calls++;
+			return new RepositoryResponse(ResponseKind.TASK_CREATED,issue.getNumber());
+		} catch (GitHubServiceException e) {
+			throw new CoreException(GitHub.createErrorStatus(e));
+		} finally {
+			connector.getInstrumentation().recordSubmit(calls);
+		}
+	}
 
-				service.editIssue(user , repo, issue, credentials);
+	/**
+	 * @return the changes to an existing issue that have to be sent
+	 */
+	private GitHubOutbox.Change createChange(TaskData taskData,
+			GitHubIssue issue, Set<TaskAttribute> oldAttributes) {
+		GitHubOutbox.Change change = new GitHubOutbox.Change(issue
+				.getNumber());
+		// only title and body are sent by an edit
+		if (isChanged(oldAttributes, GitHubTaskAttributes.TITLE,
+				GitHubTaskAttributes.BODY)) {
+			change.edit(issue.getTitle(), issue.getBody());
+		}
 
-				String newComment = getAttributeValue(taskData,GitHubTaskAttributes.NEWCOMMENT);
-				if (newComment != null && newComment.length() > 0) {
-					service.addComment(user, repo, issue.getNumber(), credentials, newComment);
-				}
+		String newComment = getAttributeValue(taskData,GitHubTaskAttributes.NEWCOMMENT);
+		if (newComment != null && newComment.length() > 0) {
+			change.addComment(newComment);
+		}
 
-				if (operation != null && operation != GitHubTaskOperation.LEAVE) {
-					switch (operation) {
-					case REOPEN:
-						service.reopenIssue(user,repo,issue,credentials);
-						break;
-					case CLOSE:
-						service.closeIssue(user,repo,issue,credentials);
-						break;
-					default:
-						throw new IllegalStateException("not implemented: "+operation);
-					}
+		TaskAttribute operationAttribute = taskData.getRoot().getAttribute(TaskAttribute.OPERATION);
+		GitHubTaskOperation operation = null;
+		if (operationAttribute != null) {
+			operation = GitHubTaskOperation.fromId(operationAttribute.getValue());
+		}
+		if (operation != null && operation != GitHubTaskOperation.LEAVE) {
+			switch (operation) {
+			case REOPEN:
+				change.setState("open");
+				break;
+			case CLOSE:
+				change.setState("closed");
+				break;
+			default:
+				throw new IllegalStateException("not implemented: "+operation);
+			}
+		}
+		return change;
+	}
+
+	/**
+	 * @return true if any of the attributes was changed, or if the changed
+	 *         attributes are unknown
+	 */
+	private static boolean isChanged(Set<TaskAttribute> oldAttributes,
+			GitHubTaskAttributes... attributes) {
+		if (oldAttributes == null) {
+			return true;
+		}
+		for (TaskAttribute oldAttribute : oldAttributes) {
+			for (GitHubTaskAttributes attribute : attributes) {
+				if (attribute.getId().equals(oldAttribute.getId())) {
+					return true;
 				}
 			}
-			return new RepositoryResponse(taskData.isNew()?ResponseKind.TASK_CREATED:ResponseKind.TASK_UPDATED,issue.getNumber());
-		} catch (GitHubServiceException e) {
-			throw new CoreException(GitHub.createErrorStatus(e));
 		}
+		return false;
 	}
 
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskAttributeMapper;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskOperation;
+
+/**
+ * The attributes and operations of GitHub task data, with their meta data
+ * built once from {@link GitHubTaskAttributes} and
+ * {@link GitHubTaskOperation}. Task data is built by copying the templates
+ * and assigning the values of the issue.
+ * <p>
+ * The templates are never modified after class initialization and may be
+ * copied by several threads at once.
+ */
+class GitHubTaskDataTemplates {
+
+	/**
+	 * the attributes of {@link GitHubTaskAttributes} without values
+	 */
+	private static final TaskData ATTRIBUTES = createTemplate();
+
+	/**
+	 * the operation attribute and operations of an issue by its state, the
+	 * operation attribute only for issues without state
+	 */
+	private static final Map<String, TaskData> OPERATIONS = new HashMap<String, TaskData>();
+
+	private static final List<GitHubTaskAttributes> REQUIRED = new ArrayList<GitHubTaskAttributes>();
+
+	private static final List<GitHubTaskAttributes> INIT_TASK = new ArrayList<GitHubTaskAttributes>();
+
+	static {
+		for (GitHubTaskAttributes attribute : GitHubTaskAttributes.values()) {
+			TaskAttribute template = ATTRIBUTES.getRoot().createAttribute(
+					attribute.getId());
+			template.getMetaData().defaults().setType(attribute.getType())
+					.setKind(attribute.getKind()).setLabel(
+							attribute.getLabel()).setReadOnly(
+							attribute.isReadOnly());
+			if (attribute.isRequiredForFullTaskData()) {
+				REQUIRED.add(attribute);
+			}
+			if (attribute.isInitTask()) {
+				INIT_TASK.add(attribute);
+			}
+		}
+		OPERATIONS.put(null, createOperations(null));
+		OPERATIONS.put("open", createOperations("open"));
+		OPERATIONS.put("closed", createOperations("closed"));
+	}
+
+	private GitHubTaskDataTemplates() {
+	}
+
+	private static TaskData createTemplate() {
+		TaskRepository repository = new TaskRepository(GitHub.CONNECTOR_KIND,
+				GitHub.HTTP_GITHUB_COM);
+		return new TaskData(new TaskAttributeMapper(repository),
+				GitHub.CONNECTOR_KIND, repository.getRepositoryUrl(), "");
+	}
+
+	private static TaskData createOperations(String state) {
+		TaskData template = createTemplate();
+		TaskAttribute operationAttribute = template.getRoot().createAttribute(
+				TaskAttribute.OPERATION);
+		operationAttribute.getMetaData().setType(TaskAttribute.TYPE_OPERATION);
+		if (state != null) {
+			addOperation(template, state, GitHubTaskOperation.LEAVE, true);
+			if (state.equals("open")) {
+				addOperation(template, state, GitHubTaskOperation.CLOSE, false);
+			} else if (state.equals("closed")) {
+				addOperation(template, state, GitHubTaskOperation.REOPEN, false);
+			}
+		}
+		return template;
+	}
+
+	/**
+	 * Add an operation, the default operation is also set as value of the
+	 * operation attribute.
+	 */
+	static void addOperation(TaskData data, String state,
+			GitHubTaskOperation operation, boolean asDefault) {
+		TaskAttribute attribute = data.getRoot().createAttribute(
+				TaskAttribute.PREFIX_OPERATION + operation.getId());
+		String label = operation == GitHubTaskOperation.LEAVE ? operation
+				.getLabel()
+				+ state : operation.getLabel();
+		TaskOperation.applyTo(attribute, operation.getId(), label);
+
+		if (asDefault) {
+			TaskAttribute operationAttribute = data.getRoot().getAttribute(
+					TaskAttribute.OPERATION);
+			TaskOperation.applyTo(operationAttribute, operation.getId(), label);
+		}
+	}
+
+	/**
+	 * Copy the attribute with its meta data into the task data.
+	 *
+	 * @param value
+	 *            - the value, or null
+	 * @return the copy
+	 */
+	static TaskAttribute createAttribute(TaskData data,
+			GitHubTaskAttributes attribute, String value) {
+		TaskAttribute root = data.getRoot();
+		root.deepAddCopy(ATTRIBUTES.getRoot().getAttribute(attribute.getId()));
+		TaskAttribute copy = root.getAttribute(attribute.getId());
+		if (value != null) {
+			copy.addValue(value);
+		}
+		return copy;
+	}
+
+	/**
+	 * Copy the operations of an issue in the given state into the task data.
+	 *
+	 * @return false if there is no template for the state
+	 */
+	static boolean createOperations(TaskData data, String state) {
+		TaskData template = OPERATIONS.get(state);
+		if (template == null) {
+			return false;
+		}
+		TaskAttribute root = data.getRoot();
+		for (TaskAttribute attribute : template.getRoot().getAttributes()
+				.values()) {
+			root.deepAddCopy(attribute);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the attributes that full task data has
+	 */
+	static Collection<GitHubTaskAttributes> getRequiredAttributes() {
+		return REQUIRED;
+	}
+
+	/**
+	 * @return the attributes of new tasks
+	 */
+	static Collection<GitHubTaskAttributes> getInitTaskAttributes() {
+		return INIT_TASK;
+	}
+}
@@ -7,7 +7,24 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses( { // 
 	GitHubServiceTest.class,
-	MarshalingTest.class
+	MarshalingTest.class,
+	GitHubRateLimiterTest.class,
+	GitHubServiceFaultTest.class,
+	GitHubSingleFlightTest.class,
+	GitHubServiceOfflineTest.class,
+	GitHubDateCodecTest.class,
+	GitHubCompactIssueTest.class,
+	GitHubIssueStoreTest.class,
+	GitHubIssueIndexTest.class,
+	GitHubTaskDataFetcherTest.class,
+	GitHubRepositoryConnectorTest.class,
+	GitHubTaskDataHandlerTest.class,
+	GitHubOutboxTest.class,
+	GitHubRepositoryContextTest.class,
+	GitHubTaskDataTemplatesTest.class,
+	GitHubCommentHistoryTest.class,
+	GitHubSynchronizationTest.class,
+	GitHubQueryPipelineTest.class
 	})
 public class AllHeadlessTests {
 
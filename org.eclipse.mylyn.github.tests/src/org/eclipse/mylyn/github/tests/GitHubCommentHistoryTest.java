@@ -0,0 +1,182 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubCommentHistory;
+import org.eclipse.mylyn.github.internal.GitHubCommentHistory.Change;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests merging fetched comments into the {@link GitHubCommentHistory}.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubCommentHistoryTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private static GitHubComment comment(String id, String body) {
+		GitHubComment comment = new GitHubComment();
+		comment.setId(id);
+		comment.setBody(body);
+		return comment;
+	}
+
+	/**
+	 * @return equal comments as fetched again
+	 */
+	private static List<GitHubComment> fetch(GitHubComment... comments) {
+		List<GitHubComment> fetched = new ArrayList<GitHubComment>();
+		for (GitHubComment comment : comments) {
+			fetched.add(comment(comment.getId(), comment.getBody()));
+		}
+		return fetched;
+	}
+
+	@Test
+	public void newCommentsAreAppended() {
+		GitHubCommentHistory history = new GitHubCommentHistory();
+		GitHubComment first = comment("10", "first");
+		GitHubComment second = comment("12", "second");
+
+		assertEquals(Change.REFRESHED, history.merge("1", fetch(first)));
+		assertEquals(Change.NONE, history.merge("1", fetch(first)));
+		assertEquals(1, history.getCommentCount("1"));
+		assertEquals(10, history.getWatermark("1"));
+
+		assertEquals(Change.APPENDED, history.merge("1", fetch(first, second)));
+		assertEquals(12, history.getWatermark("1"));
+		assertEquals(2, history.getCommentCount("1"));
+	}
+
+	@Test
+	public void editedCommentRefreshes() {
+		GitHubCommentHistory history = new GitHubCommentHistory();
+		history.merge("1", fetch(comment("10", "first"), comment("12",
+				"second")));
+
+		assertEquals(Change.REFRESHED, history.merge("1", fetch(comment("10",
+				"first"), comment("12", "edited"), comment("13", "third"))));
+		assertEquals(3, history.getCommentCount("1"));
+		assertEquals(13, history.getWatermark("1"));
+		assertEquals(Change.NONE, history.merge("1", fetch(comment("10",
+				"first"), comment("12", "edited"), comment("13", "third"))));
+	}
+
+	@Test
+	public void deletedCommentRefreshes() {
+		GitHubCommentHistory history = new GitHubCommentHistory();
+		history.merge("1", fetch(comment("10", "first"), comment("12",
+				"second")));
+
+		assertEquals(Change.REFRESHED, history.merge("1", fetch(comment("12",
+				"second"), comment("13", "third"))));
+		assertEquals(2, history.getCommentCount("1"));
+	}
+
+	@Test
+	public void commentBelowWatermarkRefreshes() {
+		GitHubCommentHistory history = new GitHubCommentHistory();
+		history.merge("1", fetch(comment("10", "first"), comment("12",
+				"second")));
+
+		assertEquals(Change.REFRESHED, history.merge("1", fetch(comment("10",
+				"first"), comment("12", "second"), comment("11", "late"))));
+		assertEquals(12, history.getWatermark("1"));
+	}
+
+	@Test
+	public void leastRecentlyUsedIssuesAreDropped() {
+		GitHubCommentHistory history = new GitHubCommentHistory(2);
+		history.merge("1", fetch(comment("10", "first")));
+		history.merge("2", fetch(comment("11", "second")));
+		history.getWatermark("1");
+		history.merge("3", fetch(comment("12", "third")));
+
+		assertEquals(2, history.size());
+		assertEquals(-1, history.getCommentCount("2"));
+		assertEquals(10, history.getWatermark("1"));
+		assertEquals(Change.REFRESHED, history.merge("2", fetch(comment("11",
+				"second"))));
+	}
+
+	@Test
+	public void refetchedIssueOnlyMergesNewComments() throws Exception {
+		GitHubApiStub api = new GitHubApiStub(USER, "token", USER, PROJECT)
+				.generate(3, 0, 2);
+		StubHttpServer server = new StubHttpServer(api);
+		server.start();
+		GitHubHttpTransport transport = new GitHubHttpTransport();
+		try {
+			GitHubService service = new GitHubService(server.getUrl()
+					+ GitHubApiStub.API_PATH, transport,
+					new GitHubRateLimiter());
+			GitHubRepositoryConnector connector = new GitHubRepositoryConnector(
+					service, null);
+			TaskRepository repository = new TaskRepository(
+					GitHub.CONNECTOR_KIND, api.getRepositoryUrl());
+			repository.setCredentials(AuthenticationType.REPOSITORY,
+					new AuthenticationCredentials(USER, "token"), false);
+
+			TaskData known = connector.getTaskData(repository, "2",
+					new NullProgressMonitor());
+			service.addComment(USER, PROJECT, "2", new GitHubCredentials(
+					USER, "token"), "a unique remark");
+			TaskData taskData = connector.getTaskData(repository, "2",
+					new NullProgressMonitor());
+
+			assertEquals(1, connector.getInstrumentation()
+					.getCommentAppendCount());
+			assertEquals(1, connector.getInstrumentation()
+					.getCommentRefreshCount());
+			assertEquals(3, connector.getCommentHistory(repository)
+					.getCommentCount("2"));
+			assertEquals("a unique remark", taskData.getRoot().getAttribute(
+					TaskAttribute.PREFIX_COMMENT + 3).getAttribute(
+					TaskAttribute.COMMENT_TEXT).getValue());
+			assertEquals(known.getRoot().getAttribute(
+					TaskAttribute.PREFIX_COMMENT + 1).getAttribute(
+					TaskAttribute.COMMENT_TEXT).getValue(), taskData.getRoot()
+					.getAttribute(TaskAttribute.PREFIX_COMMENT + 1)
+					.getAttribute(TaskAttribute.COMMENT_TEXT).getValue());
+			assertEquals(Arrays.asList("2"), numbers(connector, repository,
+					"unique remark"));
+		} finally {
+			transport.shutdown();
+			server.stop();
+		}
+	}
+
+	private static List<String> numbers(GitHubRepositoryConnector connector,
+			TaskRepository repository, String text) {
+		List<String> numbers = new ArrayList<String>();
+		for (org.eclipse.mylyn.github.internal.GitHubIssue issue : connector
+				.getIssueIndex(repository).search(text, null)) {
+			numbers.add(issue.getNumber());
+		}
+		return numbers;
+	}
+}
@@ -0,0 +1,93 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.eclipse.mylyn.github.internal.GitHubCompactIssue;
+import org.eclipse.mylyn.github.internal.GitHubDateCodec;
+import org.eclipse.mylyn.github.internal.GitHubInterner;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubJsonDecoder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GitHubCompactIssueTest {
+
+	private static final String ISSUES = "{\"issues\":["
+			+ "{\"number\":1,\"user\":\"dgreen99\",\"state\":\"closed\",\"title\":\"one\","
+			+ "\"body\":\"first\",\"labels\":[\"bug\",\"ui\"],"
+			+ "\"created_at\":\"2010/02/02 22:58:39 -0800\","
+			+ "\"updated_at\":\"2010/02/04 17:56:02 -0800\","
+			+ "\"closed_at\":\"2010/02/04 17:56:02 -0800\"},"
+			+ "{\"number\":2,\"user\":\"dgreen99\",\"state\":\"open\",\"title\":\"two\","
+			+ "\"labels\":[\"bug\",\"ui\"],\"closed_at\":null}]}";
+
+	@Test
+	public void convert() throws Exception {
+		GitHubIssue[] issues = GitHubJsonDecoder.decodeIssues(
+				new StringReader(ISSUES)).getIssues();
+		GitHubCompactIssue issue = GitHubCompactIssue.from(issues[0],
+				new GitHubInterner());
+
+		assertEquals(1, issue.getNumber());
+		assertEquals(GitHubCompactIssue.State.CLOSED, issue.getState());
+		assertEquals("dgreen99", issue.getUser());
+		assertEquals("one", issue.getTitle());
+		assertEquals("first", issue.getBody());
+		assertEquals(2, issue.getLabelCount());
+		assertTrue(issue.hasLabel("ui"));
+		assertFalse(issue.hasLabel("wontfix"));
+		assertEquals(GitHubDateCodec.parse("2010/02/02 22:58:39 -0800"), issue
+				.getCreatedAt());
+
+		GitHubIssue converted = issue.toIssue();
+		assertEquals("1", converted.getNumber());
+		assertEquals("closed", converted.getState());
+		assertArrayEquals(new String[] { "bug", "ui" }, converted.getLabels());
+		assertEquals(issue.getClosedAt(), GitHubDateCodec.parse(converted
+				.getClosed_at()));
+	}
+
+	@Test
+	public void openIssueHasNoClosedDate() throws Exception {
+		GitHubIssue[] issues = GitHubJsonDecoder.decodeIssues(
+				new StringReader(ISSUES)).getIssues();
+		GitHubCompactIssue issue = GitHubCompactIssue.from(issues[1],
+				new GitHubInterner());
+
+		assertEquals(GitHubCompactIssue.State.OPEN, issue.getState());
+		assertEquals(-1, issue.getClosedAt());
+		assertEquals(-1, issue.getCreatedAt());
+		assertNull(issue.toIssue().getClosed_at());
+	}
+
+	@Test
+	public void usersAndLabelSetsAreShared() {
+		GitHubInterner interner = new GitHubInterner();
+		GitHubIssue first = new GitHubIssue("1", new String("dgreen99"), "a",
+				"");
+		first.setLabels(new String[] { new String("bug") });
+		GitHubIssue second = new GitHubIssue("2", new String("dgreen99"), "b",
+				"");
+		second.setLabels(new String[] { new String("bug") });
+
+		GitHubCompactIssue one = GitHubCompactIssue.from(first, interner);
+		GitHubCompactIssue two = GitHubCompactIssue.from(second, interner);
+		assertSame(one.getUser(), two.getUser());
+		assertSame(one.getLabel(0), two.getLabel(0));
+		assertEquals(3, interner.size());
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void newIssueCannotBeConverted() {
+		GitHubCompactIssue.from(new GitHubIssue(), new GitHubInterner());
+	}
+}
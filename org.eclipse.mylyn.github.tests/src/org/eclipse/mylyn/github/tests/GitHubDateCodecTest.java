@@ -0,0 +1,61 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.text.SimpleDateFormat;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.eclipse.mylyn.github.internal.GitHubDateCodec;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GitHubDateCodecTest {
+
+	@Test
+	public void parse() throws Exception {
+		assertEquals(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss Z").parse(
+				"2010/02/04 21:03:54 -0800").getTime(), GitHubDateCodec
+				.parse("2010/02/04 21:03:54 -0800"));
+		assertEquals(0, GitHubDateCodec.parse("1970/01/01 00:00:00 +0000"));
+		assertEquals(3600000, GitHubDateCodec.parse("1970/01/01 00:00:00 -0100"));
+	}
+
+	@Test
+	public void parseMatchesSimpleDateFormat() throws Exception {
+		Random random = new Random(42);
+		String[] zones = { "GMT-08:00", "GMT+05:30", "UTC", "GMT+14:00" };
+		for (int i = 0; i < 1000; i++) {
+			long time = (random.nextLong() >>> 1) % 4102444800000L / 1000 * 1000;
+			SimpleDateFormat format = new SimpleDateFormat(
+					"yyyy/MM/dd HH:mm:ss Z");
+			format.setTimeZone(TimeZone.getTimeZone(zones[i % zones.length]));
+			String date = format.format(time);
+			assertEquals(date, time, GitHubDateCodec.parse(date));
+			assertEquals(time, GitHubDateCodec.parse(GitHubDateCodec
+					.format(time)));
+		}
+	}
+
+	@Test
+	public void format() {
+		assertEquals("2010/02/05 05:03:54 +0000", GitHubDateCodec
+				.format(GitHubDateCodec.parse("2010/02/04 21:03:54 -0800")));
+		assertEquals("2000/02/29 00:00:00 +0000", GitHubDateCodec
+				.format(GitHubDateCodec.parse("2000/02/29 00:00:00 +0000")));
+		assertNull(GitHubDateCodec.format(-1));
+	}
+
+	@Test
+	public void invalidDates() {
+		assertEquals(-1, GitHubDateCodec.parse(null));
+		assertEquals(-1, GitHubDateCodec.parse(""));
+		assertEquals(-1, GitHubDateCodec.parse("2010-02-04T21:03:54Z"));
+		assertEquals(-1, GitHubDateCodec.parse("2010/13/04 21:03:54 -0800"));
+		assertEquals(-1, GitHubDateCodec.parse("2010/02/04 21:03:54 x0800"));
+		assertNull(GitHubDateCodec.toAttributeValue("Feb 4, 2010 9:03:54 PM"));
+	}
+}
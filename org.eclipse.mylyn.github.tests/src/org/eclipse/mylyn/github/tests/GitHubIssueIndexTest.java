@@ -0,0 +1,327 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubIssueFilter;
+import org.eclipse.mylyn.github.internal.GitHubIssueIndex;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationSession;
+import org.eclipse.mylyn.tasks.core.ITask;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+import org.eclipse.mylyn.tasks.core.sync.ISynchronizationSession;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests {@link GitHubIssueIndex} and queries answered from it.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubIssueIndexTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private static GitHubIssue issue(String number, String state, String title,
+			String body, String updated) {
+		GitHubIssue issue = new GitHubIssue(number, USER, title, body);
+		issue.setState(state);
+		issue.setUpdated_at(updated);
+		return issue;
+	}
+
+	private static List<String> numbers(List<GitHubIssue> issues) {
+		List<String> numbers = new ArrayList<String>();
+		for (GitHubIssue issue : issues) {
+			numbers.add(issue.getNumber());
+		}
+		return numbers;
+	}
+
+	private static GitHubIssueIndex index() {
+		GitHubIssueIndex index = new GitHubIssueIndex();
+		index.updateAll(Arrays.asList(
+				issue("10", "open", "Editor crashes", "on save", "1"),
+				issue("2", "open", "Save fails", "NPE in the editor", "1"),
+				issue("3", "closed", "Editor: save-as", "works now", "1")));
+		return index;
+	}
+
+	@Test
+	public void allWordsMustMatch() {
+		GitHubIssueIndex index = index();
+		assertTrue(index.isComplete());
+		assertEquals(Arrays.asList("2", "10"), numbers(index.search(
+				"editor SAVE", "open")));
+		assertEquals(Arrays.asList("3"), numbers(index.search("editor save",
+				"closed")));
+		assertEquals(Collections.emptyList(), numbers(index.search(
+				"editor missing", "open")));
+	}
+
+	@Test
+	public void excludedWordsMustNotMatch() {
+		GitHubIssueIndex index = index();
+		assertEquals(Arrays.asList("2"), numbers(index.search(GitHubIssueFilter
+				.parse("open", "editor NOT crashes"))));
+		assertEquals(Arrays.asList("3"), numbers(index.search(GitHubIssueFilter
+				.parse("all", "save -npe -crashes"))));
+		assertEquals(Arrays.asList("2", "3", "10"), numbers(index
+				.search(GitHubIssueFilter.parse("all", "-missing"))));
+	}
+
+	@Test
+	public void changedIssueReplacesItsWords() {
+		GitHubIssueIndex index = index();
+		index.update(issue("2", "open", "Save fails", "on startup", "2"));
+		assertEquals(Arrays.asList("10"), numbers(index.search("editor",
+				"open")));
+		assertEquals(Arrays.asList("2"), numbers(index.search("startup",
+				"open")));
+	}
+
+	@Test
+	public void commentsAreSearched() {
+		GitHubIssueIndex index = index();
+		GitHubComment comment = new GitHubComment();
+		comment.setBody("Duplicate of #2");
+		index.updateComments("10", Collections.singletonList(comment));
+		assertEquals(Arrays.asList("10"), numbers(index.search("duplicate",
+				"open")));
+
+		index.updateComments("10", new ArrayList<GitHubComment>());
+		assertEquals(Collections.emptyList(), numbers(index.search(
+				"duplicate", "open")));
+	}
+
+	@Test
+	public void appendedCommentsAreSearched() {
+		GitHubIssueIndex index = index();
+		GitHubComment first = new GitHubComment();
+		first.setBody("Duplicate of #2");
+		GitHubComment second = new GitHubComment();
+		second.setBody("Fixed upstream");
+		index.appendComments("10", Collections.singletonList(first));
+		index.appendComments("10", Arrays.asList(first, second));
+
+		assertEquals(Arrays.asList("10"), numbers(index.search("duplicate",
+				"open")));
+		assertEquals(Arrays.asList("10"), numbers(index.search("upstream",
+				"open")));
+	}
+
+	@Test
+	public void unlistedIssuesAreRemoved() {
+		GitHubIssueIndex index = index();
+		int words = index.getWordCount();
+		index.updateAll(Arrays.asList(
+				issue("10", "open", "Editor crashes", "on save", "1"),
+				issue("2", "open", "Save fails", "NPE in the editor", "1")));
+		assertEquals(Collections.emptyList(), numbers(index.search("works",
+				"closed")));
+		assertTrue(index.getWordCount() < words);
+	}
+
+	private static GitHubIssue labeled(String number, String state,
+			String user, String... labels) {
+		GitHubIssue issue = new GitHubIssue(number, user, "title", "body");
+		issue.setState(state);
+		issue.setUpdated_at("1");
+		issue.setLabels(labels);
+		return issue;
+	}
+
+	@Test
+	public void labelsAndAuthorsAreFiltered() {
+		GitHubIssueIndex index = new GitHubIssueIndex();
+		index.updateAll(Arrays.asList(labeled("1", "open", "joe", "bug"),
+				labeled("2", "open", "ann", "bug", "wontfix"),
+				labeled("3", "closed", "joe", "bug"),
+				labeled("4", "open", "ann"),
+				labeled("5", "open", "bob", "bug")));
+
+		assertEquals(Arrays.asList("1", "5"), numbers(index
+				.search(GitHubIssueFilter.parse("open",
+						"label:bug AND NOT label:wontfix"))));
+		assertEquals(Arrays.asList("1", "3", "5"), numbers(index
+				.search(GitHubIssueFilter.parse("all",
+						"label:bug -label:wontfix"))));
+		assertEquals(Arrays.asList("1", "2", "4"), numbers(index
+				.search(GitHubIssueFilter.parse("open",
+						"author:joe author:ann"))));
+		assertEquals(Arrays.asList("4"), numbers(index.search(GitHubIssueFilter
+				.parse("all", "-author:joe -label:bug"))));
+		assertEquals(Arrays.asList("1", "5"), numbers(index
+				.search(GitHubIssueFilter.parse("open",
+						"title label:bug -author:ann"))));
+	}
+
+	@Test
+	public void changedLabelsAreReindexed() {
+		GitHubIssueIndex index = new GitHubIssueIndex();
+		index.updateAll(Arrays.asList(labeled("1", "open", "joe", "bug")));
+		GitHubIssue issue = labeled("1", "closed", "joe", "wontfix");
+		index.update(issue);
+
+		assertEquals(Collections.emptyList(), numbers(index
+				.search(GitHubIssueFilter.parse("all", "label:bug"))));
+		assertEquals(Arrays.asList("1"), numbers(index.search(GitHubIssueFilter
+				.parse("closed", "label:wontfix"))));
+		assertEquals(Collections.emptyList(), numbers(index
+				.search(GitHubIssueFilter.parse("open", ""))));
+	}
+
+	@Test
+	public void issuesShareUsersAndLabels() {
+		GitHubIssueIndex index = new GitHubIssueIndex();
+		index.updateAll(Arrays.asList(labeled("1", "open", new String("joe"),
+				new String("bug")), labeled("2", "closed", new String("joe"),
+				new String("bug"))));
+
+		GitHubIssue one = index.getIssue("1");
+		GitHubIssue two = index.getIssue("2");
+		assertSame(one.getUser(), two.getUser());
+		assertSame(one.getLabels()[0], two.getLabels()[0]);
+		assertEquals("closed", two.getState());
+	}
+
+	@Test
+	public void qualifiersAreParsed() {
+		GitHubIssueFilter filter = GitHubIssueFilter.parse("all",
+				"crash label:bug NOT label:wontfix -author:joe label: AND editor");
+		assertEquals(null, filter.getState());
+		assertEquals("crash label: editor", filter.getText());
+		assertEquals(Collections.singleton("bug"), filter.getLabels());
+		assertEquals(Collections.singleton("wontfix"), filter
+				.getExcludedLabels());
+		assertEquals(Collections.singleton("joe"), filter
+				.getExcludedAuthors());
+		assertTrue(filter.hasQualifiers());
+		assertFalse(GitHubIssueFilter.parse("open", "crash").hasQualifiers());
+
+		filter = GitHubIssueFilter.parse("open", "crash NOT editor -ui");
+		assertEquals("crash", filter.getText());
+		assertEquals("editor ui", filter.getExcludedText());
+		assertTrue(filter.hasQualifiers());
+	}
+
+	@Test
+	public void qualifiedQueryListsIssues() throws Exception {
+		GitHubApiStub api = new GitHubApiStub(USER, "token", USER, PROJECT)
+				.generate(5, 3, 2);
+		StubHttpServer server = new StubHttpServer(api);
+		server.start();
+		GitHubHttpTransport transport = new GitHubHttpTransport();
+		try {
+			GitHubRepositoryConnector connector = new GitHubRepositoryConnector(
+					new GitHubService(server.getUrl() + GitHubApiStub.API_PATH,
+							transport, new GitHubRateLimiter()), null);
+			TaskRepository repository = new TaskRepository(
+					GitHub.CONNECTOR_KIND, api.getRepositoryUrl());
+			repository.setCredentials(AuthenticationType.REPOSITORY,
+					new AuthenticationCredentials(USER, "token"), false);
+
+			// each one lists all issues to index them
+			List<String> all = query(connector, repository, "-label:none",
+					null);
+			assertEquals(8, all.size());
+			assertEquals(2, server.getRequestCount());
+			query(connector, repository, "label:bug", null);
+			assertEquals(4, server.getRequestCount());
+		} finally {
+			transport.shutdown();
+			server.stop();
+		}
+	}
+
+	@Test
+	public void queryIsAnsweredFromIndexDuringSynchronization()
+			throws Exception {
+		GitHubApiStub api = new GitHubApiStub(USER, "token", USER, PROJECT)
+				.generate(5, 3, 2);
+		StubHttpServer server = new StubHttpServer(api);
+		server.start();
+		GitHubHttpTransport transport = new GitHubHttpTransport();
+		try {
+			GitHubService service = new GitHubService(server.getUrl()
+					+ GitHubApiStub.API_PATH, transport,
+					new GitHubRateLimiter());
+			GitHubRepositoryConnector connector = new GitHubRepositoryConnector(
+					service, null);
+			TaskRepository repository = new TaskRepository(
+					GitHub.CONNECTOR_KIND, api.getRepositoryUrl());
+			repository.setCredentials(AuthenticationType.REPOSITORY,
+					new AuthenticationCredentials(USER, "token"), false);
+			GitHubIssue first = service.searchIssues(USER, PROJECT, "open",
+					"", new GitHubCredentials(USER, "token")).getIssues()[0];
+			String word = first.getTitle().split(" ")[0];
+
+			SynchronizationSession session = new SynchronizationSession();
+			session.setFullSynchronization(true);
+			session.setTaskRepository(repository);
+			session.setTasks(Collections.<ITask> emptySet());
+			connector.preSynchronization(session, new NullProgressMonitor());
+			server.resetCounters();
+
+			assertTrue(query(connector, repository, word, session).contains(
+					first.getNumber()));
+			query(connector, repository, "label:bug", session);
+			assertEquals(0, server.getRequestCount());
+
+			// searched remotely outside of a synchronization
+			connector.postSynchronization(session, new NullProgressMonitor());
+			assertTrue(connector.getIssueIndex(repository).isComplete());
+			assertTrue(query(connector, repository, word, null).contains(
+					first.getNumber()));
+			assertTrue(server.getRequestCount() > 0);
+		} finally {
+			transport.shutdown();
+			server.stop();
+		}
+	}
+
+	private static List<String> query(GitHubRepositoryConnector connector,
+			TaskRepository repository, String text,
+			ISynchronizationSession session) {
+		RepositoryQuery query = new RepositoryQuery(GitHub.CONNECTOR_KIND,
+				"test");
+		query.setAttribute("status", "all");
+		query.setAttribute("queryText", text);
+		final List<String> taskIds = new ArrayList<String>();
+		IStatus status = connector.performQuery(repository, query,
+				new TaskDataCollector() {
+					@Override
+					public void accept(TaskData taskData) {
+						taskIds.add(taskData.getTaskId());
+					}
+				}, session, new NullProgressMonitor());
+		assertTrue(status.isOK());
+		return taskIds;
+	}
+}
@@ -0,0 +1,239 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubIssueStore;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationSession;
+import org.eclipse.mylyn.tasks.core.ITask;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests the local {@link GitHubIssueStore} and its use by
+ * {@link GitHubRepositoryConnector#getTaskData} against the local
+ * {@link GitHubApiStub}.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubIssueStoreTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private static final GitHubCredentials CREDENTIALS = new GitHubCredentials(
+			USER, "token");
+
+	private File directory;
+	private GitHubApiStub api;
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubService service;
+	private GitHubRepositoryConnector connector;
+	private TaskRepository repository;
+
+	@Before
+	public void beforeTest() throws Exception {
+		directory = File.createTempFile("issues", "");
+		directory.delete();
+		api = new GitHubApiStub(USER, "token", USER, PROJECT).generate(5, 3, 2);
+		server = new StubHttpServer(api);
+		server.start();
+		transport = new GitHubHttpTransport();
+		service = new GitHubService(server.getUrl() + GitHubApiStub.API_PATH,
+				transport, new GitHubRateLimiter());
+		connector = new GitHubRepositoryConnector(service, directory);
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, api
+				.getRepositoryUrl());
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(USER, "token"), false);
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void storeAndReadIssue() throws Exception {
+		GitHubIssue issue = new GitHubIssue("7", USER, "Title", "Body\u00e9");
+		issue.setState("open");
+		issue.setCreated_at("2009/12/13 10:00:00 -0800");
+		issue.setUpdated_at("2009/12/14 10:00:00 -0800");
+		issue.setLabels(new String[] { "bug", "ui" });
+		List<GitHubComment> comments = new ArrayList<GitHubComment>();
+		GitHubComment comment = new GitHubComment();
+		comment.setId("42");
+		comment.setUser(USER);
+		comment.setBody("comment");
+		comment.setCreated_at("2009/12/14 10:00:00 -0800");
+		comments.add(comment);
+
+		File storeDirectory = new File(directory, "repository");
+		new GitHubIssueStore(storeDirectory).put(issue, comments);
+		GitHubIssueStore.Entry entry = new GitHubIssueStore(storeDirectory)
+				.get("7");
+
+		assertNotNull(entry);
+		assertEquals("7", entry.getIssue().getNumber());
+		assertEquals("Body\u00e9", entry.getIssue().getBody());
+		assertEquals("open", entry.getIssue().getState());
+		assertNull(entry.getIssue().getClosed_at());
+		assertEquals("2009/12/14 10:00:00 -0800", entry.getIssue()
+				.getUpdated_at());
+		assertEquals(2, entry.getIssue().getLabels().length);
+		assertEquals("ui", entry.getIssue().getLabels()[1]);
+		assertEquals(1, entry.getComments().size());
+		assertEquals("42", entry.getComments().get(0).getId());
+		assertEquals("comment", entry.getComments().get(0).getBody());
+	}
+
+	@Test
+	public void unreadableIssueIsDiscarded() throws Exception {
+		directory.mkdirs();
+		File file = new File(directory, "3.issue");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[] { 0, 0, 0, 1, 0, 0 });
+		out.close();
+
+		assertNull(new GitHubIssueStore(directory).get("3"));
+		assertEquals(false, file.exists());
+	}
+
+	@Test
+	public void otherTaskIdsAreNotStored() throws Exception {
+		GitHubIssueStore store = new GitHubIssueStore(directory);
+		store.put(new GitHubIssue("../7", USER, "Title", "Body"),
+				new ArrayList<GitHubComment>());
+		store.remove("../7");
+
+		assertNull(store.get("../7"));
+		assertNull(store.get("new"));
+		assertEquals(false, directory.exists());
+		try {
+			connector.getTaskData(repository, "new", new NullProgressMonitor());
+			fail("unknown issue returned");
+		} catch (CoreException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void listedIssueIsReadFromStore() throws Exception {
+		connector.getTaskData(repository, "2", new NullProgressMonitor());
+		connector.getIssueStore(repository).setListed(
+				service.searchIssues(USER, PROJECT, "open", "", CREDENTIALS)
+						.getIssues());
+		server.resetCounters();
+
+		TaskData taskData = connector.getTaskData(repository, "2",
+				new NullProgressMonitor());
+
+		assertEquals("2", taskData.getTaskId());
+		assertEquals(0, server.getRequestCount());
+	}
+
+	@Test
+	public void listingIsTrustedUntilSynchronizationEnds() throws Exception {
+		connector.getTaskData(repository, "2", new NullProgressMonitor());
+		SynchronizationSession session = new SynchronizationSession();
+		session.setFullSynchronization(true);
+		session.setTaskRepository(repository);
+		session.setTasks(Collections.<ITask> emptySet());
+		connector.preSynchronization(session, new NullProgressMonitor());
+		server.resetCounters();
+
+		connector.getTaskData(repository, "2", new NullProgressMonitor());
+		assertEquals(0, server.getRequestCount());
+
+		connector.postSynchronization(session, new NullProgressMonitor());
+		connector.getTaskData(repository, "2", new NullProgressMonitor());
+
+		// the issue and its comments at the same time
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void unchangedIssueReusesStoredComments() throws Exception {
+		TaskData stored = connector.getTaskData(repository, "2",
+				new NullProgressMonitor());
+		server.resetCounters();
+
+		TaskData taskData = connector.getTaskData(repository, "2",
+				new NullProgressMonitor());
+
+		// both are requested at the same time, the fetched comments of the
+		// unchanged issue are dropped
+		assertEquals(2, server.getRequestCount());
+		assertEquals(stored.getRoot().getAttributes().size(), taskData
+				.getRoot().getAttributes().size());
+	}
+
+	@Test
+	public void changedIssueIsRetrieved() throws Exception {
+		connector.getTaskData(repository, "2", new NullProgressMonitor());
+		connector.getIssueStore(repository).setListed(
+				service.searchIssues(USER, PROJECT, "open", "", CREDENTIALS)
+						.getIssues());
+		api.touch(2);
+		connector.getIssueStore(repository).setListed(
+				service.searchIssues(USER, PROJECT, "open", "", CREDENTIALS)
+						.getIssues());
+		server.resetCounters();
+
+		connector.getTaskData(repository, "2", new NullProgressMonitor());
+
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void storedIssueIsUsedWhenGitHubIsUnreachable() throws Exception {
+		connector.getTaskData(repository, "2", new NullProgressMonitor());
+		server.stop();
+
+		TaskData taskData = connector.getTaskData(repository, "2",
+				new NullProgressMonitor());
+
+		assertEquals("2", taskData.getTaskId());
+	}
+}
@@ -0,0 +1,313 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubCircuitBreaker;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubInstrumentation;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubOutbox;
+import org.eclipse.mylyn.github.internal.GitHubOutbox.Change;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubRetryPolicy;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.internal.GitHubTaskAttributes;
+import org.eclipse.mylyn.github.tests.stub.FaultInjectingHandler;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Handler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Sends the changes of a {@link GitHubOutbox} to the local
+ * {@link GitHubApiStub}, which can be made unavailable.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubOutboxTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private static final GitHubCredentials CREDENTIALS = new GitHubCredentials(
+			USER, "token");
+
+	private static final int TIMEOUT = 10;
+
+	private File directory;
+	private FaultInjectingHandler handler;
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubService service;
+	private GitHubRepositoryConnector connector;
+	private TaskRepository repository;
+
+	@Before
+	public void beforeTest() throws Exception {
+		directory = File.createTempFile("issues", "");
+		directory.delete();
+		GitHubApiStub api = new GitHubApiStub(USER, "token", USER, PROJECT)
+				.generate(5, 3, 2);
+		handler = new FaultInjectingHandler(api);
+		transport = new GitHubHttpTransport();
+		start(handler);
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, api
+				.getRepositoryUrl());
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(USER, "token"), false);
+	}
+
+	/**
+	 * serve the API through the handler, replacing the running server
+	 */
+	private void start(Handler handler) throws IOException {
+		if (server != null) {
+			server.stop();
+		}
+		server = new StubHttpServer(handler);
+		server.start();
+		service = new GitHubService(server.getUrl() + GitHubApiStub.API_PATH,
+				transport, new GitHubRateLimiter());
+		// keep sending while the stub is made unavailable
+		service.setRetryPolicy(new GitHubRetryPolicy(3, 10, 50));
+		service.setCircuitBreaker(new GitHubCircuitBreaker(100, 200));
+		connector = new GitHubRepositoryConnector(service, directory);
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void changesAreMergedWhileGitHubIsDown() throws Exception {
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		handler.failAll(503);
+		outbox.add(new Change("1").edit("first", "body"));
+		outbox.add(new Change("1").addComment("one"));
+		outbox.add(new Change("1").edit("second", "body").addComment("two")
+				.setState("closed"));
+		assertFalse(outbox.drain());
+		assertEquals(1, outbox.size());
+
+		handler.reset();
+		assertTrue(outbox.drain());
+
+		assertEquals(0, outbox.size());
+		GitHubInstrumentation instrumentation = connector.getInstrumentation();
+		assertEquals(1, instrumentation.getSubmitCount());
+		// one edit, two comments and the state
+		assertEquals(4, instrumentation.getSubmitCallCount());
+		assertEquals(2, instrumentation.getCoalescedSubmitCount());
+		GitHubIssue issue = service.showIssue(USER, PROJECT, "1", CREDENTIALS);
+		assertEquals("second", issue.getTitle());
+		assertEquals("closed", issue.getState());
+		assertEquals(4, service.getIssueComments(USER, PROJECT, "1",
+				CREDENTIALS).size());
+	}
+
+	@Test
+	public void labelChangesCancelOut() throws Exception {
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		handler.failAll(503);
+		outbox.add(new Change("2").addLabel("bug"));
+		outbox.add(new Change("2").removeLabel("bug").addLabel("ui"));
+		outbox.drain();
+
+		handler.reset();
+		assertTrue(outbox.drain());
+
+		String[] labels = service.showIssue(USER, PROJECT, "2", CREDENTIALS)
+				.getLabels();
+		assertTrue(Arrays.asList(labels).contains("ui"));
+		assertFalse(Arrays.asList(labels).contains("bug"));
+	}
+
+	@Test
+	public void changesSurviveRestart() throws Exception {
+		handler.failAll(503);
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		outbox.add(new Change("3").edit("offline", "body"));
+		outbox.drain();
+		outbox.dispose();
+
+		GitHubOutbox restarted = new GitHubRepositoryConnector(service,
+				directory).getOutbox(repository);
+		assertEquals(1, restarted.size());
+		handler.reset();
+		assertTrue(restarted.drain());
+
+		assertEquals("offline", service.showIssue(USER, PROJECT, "3",
+				CREDENTIALS).getTitle());
+	}
+
+	@Test
+	public void refusedChangesAreDropped() throws Exception {
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		outbox.add(new Change("99").edit("missing", "body"));
+
+		assertTrue(outbox.drain());
+		assertEquals(0, outbox.size());
+		assertNotNull(outbox.takeRefused("99"));
+		assertNull(outbox.takeRefused("99"));
+
+		outbox.add(new Change("first").addLabel("bug"));
+		assertTrue(outbox.drain());
+		assertEquals(0, outbox.size());
+		assertNotNull(outbox.takeRefused("first"));
+	}
+
+	@Test
+	public void unreadableResponsesAreRefused() throws Exception {
+		start(new Handler() {
+			public Response handle(Request request) throws IOException {
+				if (request.getPath().contains("/issues/edit/")) {
+					// the error page of a proxy
+					return new Response(200, "<html>Bad gateway</html>");
+				}
+				return handler.handle(request);
+			}
+		});
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		outbox.add(new Change("1").edit("proxied", "body"));
+
+		assertTrue(outbox.drain());
+		assertEquals(0, outbox.size());
+		assertNotNull(outbox.takeRefused("1"));
+	}
+
+	@Test
+	public void sentCommentsAreNotSentAfterRestart() throws Exception {
+		final AtomicInteger comments = new AtomicInteger();
+		final CountDownLatch arrived = new CountDownLatch(1);
+		final CountDownLatch killed = new CountDownLatch(1);
+		start(new Handler() {
+			public Response handle(Request request) throws IOException {
+				if (request.getPath().contains("/issues/comment/")
+						&& comments.incrementAndGet() == 2) {
+					// the outbox never learns the outcome, as if Eclipse was
+					// killed while it was sending
+					arrived.countDown();
+					try {
+						killed.await(TIMEOUT, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new IOException("interrupted");
+					}
+					return new Response(503, "");
+				}
+				return handler.handle(request);
+			}
+		});
+		int count = service.getIssueComments(USER, PROJECT, "2", CREDENTIALS)
+				.size();
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		outbox.add(new Change("2").addComment("one").addComment("two"));
+		try {
+			assertTrue(arrived.await(TIMEOUT, TimeUnit.SECONDS));
+
+			GitHubOutbox restarted = new GitHubRepositoryConnector(service,
+					directory).getOutbox(repository);
+			assertEquals(1, restarted.size());
+			assertTrue(restarted.drain());
+			assertEquals(count + 2, service.getIssueComments(USER, PROJECT,
+					"2", CREDENTIALS).size());
+		} finally {
+			killed.countDown();
+		}
+		// wait for the killed outbox before its directory is deleted
+		outbox.drain();
+		outbox.dispose();
+	}
+
+	@Test
+	public void refusedChangesAreReportedOnSynchronization() throws Exception {
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		handler.failAll(422);
+		outbox.add(new Change("1").edit("invalid", "body"));
+		assertTrue(outbox.drain());
+		handler.reset();
+
+		try {
+			connector.getTaskData(repository, "1", new NullProgressMonitor());
+			fail("refusal not reported");
+		} catch (CoreException e) {
+			assertTrue(e.getStatus().getMessage().contains("refused"));
+		}
+		assertEquals("1", connector.getTaskData(repository, "1",
+				new NullProgressMonitor()).getTaskId());
+	}
+
+	@Test
+	public void deniedChangesAreKept() throws Exception {
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		handler.failAll(401);
+		outbox.add(new Change("5").edit("expired", "body"));
+		assertFalse(outbox.drain());
+		assertEquals(1, outbox.size());
+
+		handler.reset();
+		assertTrue(outbox.drain());
+
+		assertEquals(0, outbox.size());
+		assertNull(outbox.takeRefused("5"));
+		assertEquals("expired", service.showIssue(USER, PROJECT, "5",
+				CREDENTIALS).getTitle());
+	}
+
+	@Test
+	public void waitingChangesAreShownInTaskData() throws Exception {
+		connector.getTaskData(repository, "4", new NullProgressMonitor());
+		handler.failAll(503);
+		GitHubOutbox outbox = connector.getOutbox(repository);
+		outbox.add(new Change("4").edit("waiting", "body").setState("closed"));
+		outbox.drain();
+
+		TaskData taskData = connector.getTaskData(repository, "4",
+				new NullProgressMonitor());
+
+		assertEquals("waiting", taskData.getRoot().getAttribute(
+				GitHubTaskAttributes.TITLE.getId()).getValue());
+		assertEquals("closed", taskData.getRoot().getAttribute(
+				GitHubTaskAttributes.STATUS.getId()).getValue());
+	}
+}
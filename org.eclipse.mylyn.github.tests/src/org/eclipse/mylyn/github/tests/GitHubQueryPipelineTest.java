@@ -0,0 +1,119 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubQueryPipeline;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.internal.GitHubTaskDataHandler;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs queries through the {@link GitHubQueryPipeline} against the local
+ * {@link GitHubApiStub}.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubQueryPipelineTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubService service;
+	private TaskRepository repository;
+
+	@Before
+	public void beforeTest() throws Exception {
+		GitHubApiStub api = new GitHubApiStub(USER, "token", USER, PROJECT)
+				.generate(20, 0, 0);
+		server = new StubHttpServer(api);
+		server.start();
+		transport = new GitHubHttpTransport();
+		service = new GitHubService(server.getUrl() + GitHubApiStub.API_PATH,
+				transport, new GitHubRateLimiter());
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, api
+				.getRepositoryUrl());
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(USER, "token"), false);
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+	}
+
+	private static class Collector extends TaskDataCollector {
+
+		private final List<TaskData> taskData = new ArrayList<TaskData>();
+
+		@Override
+		public void accept(TaskData data) {
+			taskData.add(data);
+		}
+	}
+
+	@Test
+	public void issuesAreDelivered() throws Exception {
+		GitHubQueryPipeline pipeline = new GitHubQueryPipeline(
+				new GitHubRepositoryConnector(service, null), 1);
+		Collector collector = new Collector();
+
+		IStatus status = pipeline.run(repository, new String[] { "open" },
+				"", collector, new NullProgressMonitor());
+
+		assertEquals(IStatus.OK, status.getSeverity());
+		assertEquals(20, collector.taskData.size());
+	}
+
+	@Test(timeout = 10000, expected = IllegalStateException.class)
+	public void failedBuilderDoesNotBlockQuery() throws Exception {
+		GitHubRepositoryConnector connector = new GitHubRepositoryConnector(
+				service, null) {
+			private final GitHubTaskDataHandler handler = new GitHubTaskDataHandler(
+					this) {
+				@Override
+				public TaskData createPartialTaskData(
+						TaskRepository repository, IProgressMonitor monitor,
+						String user, String project, GitHubIssue issue,
+						List<GitHubComment> comments) {
+					throw new IllegalStateException();
+				}
+			};
+
+			@Override
+			public GitHubTaskDataHandler getTaskDataHandler() {
+				return handler;
+			}
+		};
+		// the fetcher is left blocked on the full queue
+		new GitHubQueryPipeline(connector, 1).run(repository,
+				new String[] { "open" }, "", new Collector(),
+				new NullProgressMonitor());
+	}
+}
@@ -0,0 +1,114 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubRateLimiterTest {
+
+	private static final GitHubCredentials ALICE = new GitHubCredentials(
+			"alice", "token");
+	private static final GitHubCredentials BOB = new GitHubCredentials("bob",
+			"token");
+
+	/**
+	 * A clock whose waits pass at once and advance its time.
+	 */
+	private static class TestClock extends GitHubRateLimiter.Clock {
+
+		private long now = 1000000;
+
+		private final List<Long> waits = new ArrayList<Long>();
+
+		@Override
+		public long currentTimeMillis() {
+			return now;
+		}
+
+		@Override
+		public void await(Object monitor, long millis) {
+			waits.add(millis);
+			now += millis;
+		}
+
+		long getWaited() {
+			long waited = 0;
+			for (long wait : waits) {
+				waited += wait;
+			}
+			return waited;
+		}
+	}
+
+	@Test
+	public void burstWithinLimitIsNotDelayed() throws Exception {
+		TestClock clock = new TestClock();
+		GitHubRateLimiter limiter = new GitHubRateLimiter(10, 60 * 1000, clock);
+		for (int i = 0; i < 10; i++) {
+			limiter.acquire(ALICE);
+		}
+		assertTrue(clock.waits.isEmpty());
+		assertEquals(0, limiter.getBudget(ALICE).getRemaining());
+		assertEquals(10, limiter.getBudget(BOB).getRemaining());
+	}
+
+	@Test
+	public void exhaustedBucketQueuesRequests() throws Exception {
+		// one token every 100 ms
+		TestClock clock = new TestClock();
+		GitHubRateLimiter limiter = new GitHubRateLimiter(2, 200, clock);
+		limiter.acquire(ALICE);
+		limiter.acquire(ALICE);
+		assertTrue(clock.waits.isEmpty());
+		limiter.acquire(ALICE);
+		limiter.acquire(ALICE);
+		assertEquals(200, clock.getWaited());
+	}
+
+	@Test
+	public void waitIsCanceled() throws Exception {
+		TestClock clock = new TestClock();
+		GitHubRateLimiter limiter = new GitHubRateLimiter(1, 60 * 1000, clock);
+		limiter.acquire(ALICE);
+		IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			limiter.acquire(ALICE, monitor);
+			fail("expected OperationCanceledException");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+		assertTrue(clock.waits.isEmpty());
+	}
+
+	@Test
+	public void serverQuotaCorrectsBucket() throws Exception {
+		TestClock clock = new TestClock();
+		GitHubRateLimiter limiter = new GitHubRateLimiter(60, 60 * 1000, clock);
+		limiter.update(ALICE, 5000, 42, 0);
+		assertEquals(5000, limiter.getBudget(ALICE).getLimit());
+		assertEquals(42, limiter.getBudget(ALICE).getRemaining());
+
+		long reset = clock.currentTimeMillis() + 200;
+		limiter.update(ALICE, 5000, 0, reset);
+		assertEquals(0, limiter.getBudget(ALICE).getRemaining());
+		limiter.acquire(ALICE);
+		assertEquals(200, clock.getWaited());
+		assertEquals(reset, clock.currentTimeMillis());
+		assertEquals(4999, limiter.getBudget(ALICE).getRemaining());
+	}
+}
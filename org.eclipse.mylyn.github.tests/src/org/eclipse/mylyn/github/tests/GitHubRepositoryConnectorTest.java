@@ -0,0 +1,153 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubInstrumentation;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Handler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs {@link GitHubRepositoryConnector#getTaskData} against the local
+ * {@link GitHubApiStub} answering only once the test lets it.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubRepositoryConnectorTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	/**
+	 * how long (in seconds) a request waits for the test at most
+	 */
+	private static final long TIMEOUT = 10;
+
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubRepositoryConnector connector;
+	private TaskRepository repository;
+
+	/**
+	 * counted down by each request as it arrives
+	 */
+	private CountDownLatch arrived;
+
+	/**
+	 * requests are answered once it is counted down
+	 */
+	private CountDownLatch answer;
+
+	@Before
+	public void beforeTest() throws Exception {
+		final GitHubApiStub api = new GitHubApiStub(USER, "token", USER,
+				PROJECT).generate(5, 3, 2);
+		arrived = new CountDownLatch(2);
+		answer = new CountDownLatch(1);
+		server = new StubHttpServer(new Handler() {
+			public Response handle(Request request) throws IOException {
+				arrived.countDown();
+				try {
+					answer.await(TIMEOUT, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new IOException("interrupted");
+				}
+				return api.handle(request);
+			}
+		});
+		server.start();
+		transport = new GitHubHttpTransport();
+		connector = new GitHubRepositoryConnector(new GitHubService(server
+				.getUrl()
+				+ GitHubApiStub.API_PATH, transport, new GitHubRateLimiter()),
+				null);
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, api
+				.getRepositoryUrl());
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(USER, "token"), false);
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+	}
+
+	@Test
+	public void issueAndCommentsAreRequestedConcurrently() throws Exception {
+		final boolean[] concurrent = new boolean[1];
+		Thread answering = new Thread() {
+			@Override
+			public void run() {
+				try {
+					// both requests are sent before either is answered
+					concurrent[0] = arrived.await(TIMEOUT / 2, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// not concurrent
+				}
+				answer.countDown();
+			}
+		};
+		answering.start();
+		TaskData taskData = connector.getTaskData(repository, "2",
+				new NullProgressMonitor());
+		answering.join();
+
+		assertTrue(concurrent[0]);
+		assertEquals("2", taskData.getTaskId());
+		assertEquals(2, server.getRequestCount());
+		GitHubInstrumentation instrumentation = connector.getInstrumentation();
+		assertEquals(1, instrumentation.getConcurrentFetchCount());
+		assertTrue(instrumentation.getLatencySavedNanos() > 0);
+	}
+
+	@Test(timeout = TIMEOUT * 1000 / 2)
+	public void canceledMonitorAbortsRequests() throws Exception {
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+		new Thread() {
+			@Override
+			public void run() {
+				try {
+					arrived.await(TIMEOUT, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					// cancel now
+				}
+				monitor.setCanceled(true);
+			}
+		}.start();
+		try {
+			connector.getTaskData(repository, "2", monitor);
+			fail("not canceled");
+		} catch (OperationCanceledException e) {
+			// the requests have not been answered
+			assertEquals(1, answer.getCount());
+		} finally {
+			answer.countDown();
+		}
+	}
+}
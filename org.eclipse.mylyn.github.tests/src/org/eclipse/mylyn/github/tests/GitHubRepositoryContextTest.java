@@ -0,0 +1,131 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryContext;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests the {@link GitHubRepositoryContext} kept by the connector for each
+ * repository.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubRepositoryContextTest {
+
+	private GitHubRepositoryConnector connector;
+	private TaskRepository repository;
+
+	@Before
+	public void beforeTest() {
+		connector = new GitHubRepositoryConnector(new GitHubService(), null);
+		repository = repository("eclipse-github-plugin", "issues");
+	}
+
+	private static TaskRepository repository(String user, String project) {
+		TaskRepository repository = new TaskRepository(GitHub.CONNECTOR_KIND,
+				GitHub.createGitHubUrl(user, project));
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(user, "token"), false);
+		return repository;
+	}
+
+	@Test
+	public void contextIsReused() {
+		GitHubRepositoryContext context = connector.getContext(repository);
+
+		assertEquals("eclipse-github-plugin", context.getUser());
+		assertEquals("issues", context.getProject());
+		assertEquals("token", context.getCredentials().getApiToken());
+		assertEquals(repository.getRepositoryUrl() + "/issues/issue/3",
+				context.getTaskUrl("3"));
+		assertSame(context, connector.getContext(repository));
+	}
+
+	@Test
+	public void changedCredentialsReplaceContext() {
+		GitHubRepositoryContext context = connector.getContext(repository);
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials("other", "secret"), false);
+		// the credentials are only read again once the change is reported
+		assertSame(context, connector.getContext(repository));
+
+		connector.repositorySettingsChanged(repository);
+		GitHubRepositoryContext changed = connector.getContext(repository);
+
+		assertNotSame(context, changed);
+		assertEquals("other", changed.getCredentials().getUsername());
+		assertEquals("secret", changed.getCredentials().getApiToken());
+	}
+
+	@Test
+	public void unreportedCredentialsAreNoticed() {
+		connector.setCredentialsCheckInterval(0);
+		GitHubRepositoryContext context = connector.getContext(repository);
+		assertSame(context, connector.getContext(repository));
+
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials("other", "secret"), false);
+
+		assertEquals("secret", connector.getContext(repository)
+				.getCredentials().getApiToken());
+	}
+
+	@Test
+	public void missingCredentialsAreReported() {
+		TaskRepository anonymous = new TaskRepository(GitHub.CONNECTOR_KIND,
+				GitHub.createGitHubUrl("user", "project"));
+		try {
+			connector.getTaskData(anonymous, "1", new NullProgressMonitor());
+			fail("request without credentials");
+		} catch (CoreException e) {
+			assertTrue(e.getStatus().getMessage().contains(
+					"Missing credentials"));
+		}
+	}
+
+	@Test
+	public void updatedConfigurationReplacesContext() throws Exception {
+		GitHubRepositoryContext context = connector.getContext(repository);
+
+		connector.updateRepositoryConfiguration(repository, null);
+
+		assertNotSame(context, connector.getContext(repository));
+	}
+
+	@Test
+	public void eachRepositoryHasItsMapper() {
+		TaskRepository other = repository("eclipse-github-plugin", "other");
+
+		assertSame(repository, connector.getTaskDataHandler()
+				.getAttributeMapper(repository).getTaskRepository());
+		assertSame(other, connector.getTaskDataHandler().getAttributeMapper(
+				other).getTaskRepository());
+	}
+
+	@Test
+	public void repositoryWithoutCredentials() {
+		TaskRepository anonymous = new TaskRepository(GitHub.CONNECTOR_KIND,
+				GitHub.createGitHubUrl("user", "project"));
+
+		assertNull(connector.getContext(anonymous).getCredentials());
+		assertSame(connector.getContext(anonymous), connector
+				.getContext(anonymous));
+	}
+}
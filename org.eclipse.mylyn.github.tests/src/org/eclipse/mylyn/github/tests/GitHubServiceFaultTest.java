@@ -0,0 +1,214 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.mylyn.github.internal.GitHubCircuitBreaker;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRetryPolicy;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.internal.GitHubServiceException;
+import org.eclipse.mylyn.github.tests.stub.FaultInjectingHandler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Handler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs {@link GitHubService} against a local server that injects faults.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubServiceFaultTest {
+
+	private static final GitHubCredentials CREDENTIALS = new GitHubCredentials(
+			"user", "token");
+
+	private FaultInjectingHandler handler;
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubService service;
+
+	@Before
+	public void beforeTest() throws Exception {
+		handler = new FaultInjectingHandler(new Handler() {
+			public Response handle(Request request) {
+				return new Response(200,
+						"{\"issue\":{\"number\":1,\"title\":\"test\",\"state\":\"open\"}}");
+			}
+		});
+		server = new StubHttpServer(handler);
+		server.start();
+		transport = new GitHubHttpTransport();
+		service = new GitHubService(server.getUrl() + "api/v2/json/",
+				transport, new GitHubRateLimiter());
+		service.setRetryPolicy(new GitHubRetryPolicy(3, 10, 50));
+		service.setCircuitBreaker(new GitHubCircuitBreaker(100, 200));
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+	}
+
+	@Test
+	public void serverErrorIsRetried() throws Exception {
+		handler.failNext(2, 503);
+		GitHubIssue issue = service.showIssue("user", "repo", "1", CREDENTIALS);
+		assertEquals("test", issue.getTitle());
+		assertEquals(3, server.getRequestCount());
+	}
+
+	@Test
+	public void droppedConnectionIsRetried() throws Exception {
+		// the requests were sent before the connection was dropped, so they
+		// are retried by the service, not resent by the transport
+		handler.failNext(2, FaultInjectingHandler.DROP_CONNECTION);
+		GitHubIssue issue = service.showIssue("user", "repo", "1", CREDENTIALS);
+		assertEquals("test", issue.getTitle());
+		assertEquals(3, server.getRequestCount());
+	}
+
+	@Test
+	public void retriesAreBounded() throws Exception {
+		handler.failAll(500);
+		try {
+			service.showIssue("user", "repo", "1", CREDENTIALS);
+			fail("expected GitHubServiceException");
+		} catch (GitHubServiceException e) {
+			assertEquals(500, e.getHttpStatusCode());
+		}
+		assertEquals(4, server.getRequestCount());
+	}
+
+	@Test
+	public void retryWaitIsCanceled() throws Exception {
+		service.setRetryPolicy(new GitHubRetryPolicy(3, 60 * 1000, 60 * 1000));
+		handler.failAll(503);
+		IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		service.setMonitor(monitor);
+		try {
+			service.showIssue("user", "repo", "1", CREDENTIALS);
+			fail("expected OperationCanceledException");
+		} catch (OperationCanceledException e) {
+			// expected
+		} finally {
+			service.setMonitor(null);
+		}
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void writesAreNotRetried() throws Exception {
+		handler.failNext(1, 503);
+		GitHubIssue issue = new GitHubIssue();
+		issue.setTitle("test");
+		issue.setBody("body");
+		try {
+			service.openIssue("user", "repo", issue, CREDENTIALS);
+			fail("expected GitHubServiceException");
+		} catch (GitHubServiceException e) {
+			assertEquals(503, e.getHttpStatusCode());
+		}
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void writesAreNotResentOnDroppedConnection() throws Exception {
+		handler.failNext(1, FaultInjectingHandler.DROP_CONNECTION);
+		try {
+			service.addComment("user", "repo", "1", CREDENTIALS, "comment");
+			fail("expected GitHubServiceException");
+		} catch (GitHubServiceException e) {
+			// expected
+		}
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void openCircuitFailsFast() throws Exception {
+		GitHubCircuitBreaker breaker = new GitHubCircuitBreaker(3, 200);
+		service.setCircuitBreaker(breaker);
+		service.setRetryPolicy(new GitHubRetryPolicy(0, 10, 50));
+		handler.failAll(503);
+		for (int i = 0; i < 5; i++) {
+			try {
+				service.showIssue("user", "repo", "1", CREDENTIALS);
+				fail("expected GitHubServiceException");
+			} catch (GitHubServiceException e) {
+				// expected
+			}
+		}
+		assertEquals(3, server.getRequestCount());
+		assertEquals(2, breaker.getRejectedCount());
+		assertEquals(GitHubCircuitBreaker.State.OPEN, breaker
+				.getState("127.0.0.1"));
+
+		// a probe is let through once the open time has passed
+		handler.reset();
+		Thread.sleep(250);
+		service.showIssue("user", "repo", "1", CREDENTIALS);
+		assertEquals(GitHubCircuitBreaker.State.CLOSED, breaker
+				.getState("127.0.0.1"));
+	}
+
+	@Test
+	public void halfOpenCircuitExpires() throws Exception {
+		GitHubCircuitBreaker breaker = new GitHubCircuitBreaker(1, 0);
+		breaker.recordFailure("host");
+		breaker.checkRequest("host");
+		assertEquals(GitHubCircuitBreaker.State.HALF_OPEN, breaker
+				.getState("host"));
+
+		// the probe got no outcome within the open time
+		breaker.checkRequest("host");
+		assertEquals(0, breaker.getRejectedCount());
+	}
+
+	@Test
+	public void probeThatIsNotSentIsAborted() throws Exception {
+		GitHubCircuitBreaker breaker = new GitHubCircuitBreaker(1, 0);
+		service.setCircuitBreaker(breaker);
+		service.setRetryPolicy(new GitHubRetryPolicy(0, 10, 50));
+		handler.failNext(1, 503);
+		try {
+			service.showIssue("user", "repo", "1", CREDENTIALS);
+			fail("expected GitHubServiceException");
+		} catch (GitHubServiceException e) {
+			// expected
+		}
+		assertEquals(GitHubCircuitBreaker.State.OPEN, breaker
+				.getState("127.0.0.1"));
+
+		// the quota is exhausted for longer than a request waits
+		service.getRateLimiter().update(CREDENTIALS, 60, 0,
+				System.currentTimeMillis() + 2 * GitHubRateLimiter.MAX_WAIT);
+		try {
+			service.showIssue("user", "repo", "1", CREDENTIALS);
+			fail("expected GitHubServiceException");
+		} catch (GitHubServiceException e) {
+			// expected
+		}
+		assertEquals(1, server.getRequestCount());
+		assertEquals(GitHubCircuitBreaker.State.OPEN, breaker
+				.getState("127.0.0.1"));
+
+		service.showIssue("user", "repo", "1", new GitHubCredentials("other",
+				"token"));
+		assertEquals(GitHubCircuitBreaker.State.CLOSED, breaker
+				.getState("127.0.0.1"));
+	}
+}
@@ -0,0 +1,161 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubIssueCollector;
+import org.eclipse.mylyn.github.internal.GitHubIssues;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubResponseCache;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs the {@link GitHubService} API operations against the local
+ * {@link GitHubApiStub}.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubServiceOfflineTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private static final GitHubCredentials CREDENTIALS = new GitHubCredentials(
+			USER, "token");
+
+	private GitHubApiStub api;
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubService service;
+
+	@Before
+	public void beforeTest() throws Exception {
+		api = new GitHubApiStub(USER, "token", USER, PROJECT).generate(5, 3, 2);
+		server = new StubHttpServer(api);
+		server.start();
+		transport = new GitHubHttpTransport();
+		service = new GitHubService(server.getUrl() + GitHubApiStub.API_PATH,
+				transport, new GitHubRateLimiter());
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+	}
+
+	@Test
+	public void verifyCredentials() throws Exception {
+		assertTrue(service.verifyCredentials(CREDENTIALS));
+		assertFalse(service.verifyCredentials(new GitHubCredentials(USER,
+				"wrong")));
+	}
+
+	@Test
+	public void listIssues() throws Exception {
+		GitHubIssues open = service.searchIssues(USER, PROJECT, "open", "",
+				CREDENTIALS);
+		GitHubIssues closed = service.searchIssues(USER, PROJECT, "closed",
+				"", CREDENTIALS);
+		assertEquals(5, open.getIssues().length);
+		assertEquals(3, closed.getIssues().length);
+		assertEquals("1", open.getIssues()[0].getNumber());
+		assertNull(open.getIssues()[0].getClosed_at());
+		assertTrue(closed.getIssues()[0].getClosed_at() != null);
+	}
+
+	@Test
+	public void unchangedListIsRevalidated() throws Exception {
+		service.searchIssues(USER, PROJECT, "open", "", CREDENTIALS);
+		GitHubIssues issues = service.searchIssues(USER, PROJECT, "open", "",
+				CREDENTIALS);
+		assertEquals(5, issues.getIssues().length);
+		assertEquals(1, service.getResponseCache().getRevalidationCount());
+	}
+
+	@Test
+	public void unchangedStreamedListIsRevalidated() throws Exception {
+		final List<GitHubIssue> issues = new ArrayList<GitHubIssue>();
+		GitHubIssueCollector collector = new GitHubIssueCollector() {
+			@Override
+			public void accept(GitHubIssue issue) {
+				issues.add(issue);
+			}
+		};
+		service.searchIssues(USER, PROJECT, "open", "", CREDENTIALS,
+				collector);
+		service.searchIssues(USER, PROJECT, "open", "", CREDENTIALS,
+				collector);
+
+		assertEquals(10, issues.size());
+		assertEquals(1, service.getResponseCache().getRevalidationCount());
+	}
+
+	@Test
+	public void responsesAreNotSharedBetweenTokens() throws Exception {
+		// "Aa" and "BB" have the same hash code
+		assertFalse(GitHubResponseCache.createKey("url",
+				new GitHubCredentials(USER, "Aa")).equals(
+				GitHubResponseCache.createKey("url", new GitHubCredentials(
+						USER, "BB"))));
+	}
+
+	@Test
+	public void showIssueAndComments() throws Exception {
+		GitHubIssue issue = service.showIssue(USER, PROJECT, "2", CREDENTIALS);
+		assertEquals("2", issue.getNumber());
+		List<GitHubComment> comments = service.getIssueComments(USER, PROJECT,
+				"2", CREDENTIALS);
+		assertEquals(2, comments.size());
+	}
+
+	@Test
+	public void openEditCloseAndReopen() throws Exception {
+		GitHubIssue issue = new GitHubIssue();
+		issue.setTitle("Issue Title");
+		issue.setBody("This is a test body");
+		GitHubIssue created = service.openIssue(USER, PROJECT, issue,
+				CREDENTIALS);
+		assertEquals("9", created.getNumber());
+		assertEquals("open", created.getState());
+
+		created.setTitle("Issue Title - modified");
+		service.editIssue(USER, PROJECT, created, CREDENTIALS);
+		assertEquals("Issue Title - modified", service.showIssue(USER,
+				PROJECT, "9", CREDENTIALS).getTitle());
+
+		assertEquals("closed", service.closeIssue(USER, PROJECT, created,
+				CREDENTIALS).getState());
+		assertEquals("open", service.reopenIssue(USER, PROJECT, created,
+				CREDENTIALS).getState());
+	}
+
+	@Test
+	public void addCommentAndLabels() throws Exception {
+		service.addComment(USER, PROJECT, "1", CREDENTIALS, "new comment");
+		List<GitHubComment> comments = service.getIssueComments(USER, PROJECT,
+				"1", CREDENTIALS);
+		assertEquals("new comment", comments.get(comments.size() - 1)
+				.getBody());
+
+		assertTrue(service.addLabel(USER, PROJECT, "lame", 1, CREDENTIALS));
+		assertTrue(service.removeLabel(USER, PROJECT, "lame", 1, CREDENTIALS));
+	}
+}
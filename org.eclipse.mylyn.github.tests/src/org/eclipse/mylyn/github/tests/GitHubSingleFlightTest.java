@@ -0,0 +1,140 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.internal.GitHubSingleFlight;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Handler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubSingleFlightTest {
+
+	private static final int CALLERS = 8;
+
+	@Test
+	public void concurrentReadsShareOneRequest() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		StubHttpServer server = new StubHttpServer(new Handler() {
+			public Response handle(Request request) {
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new Response(200,
+						"{\"issue\":{\"number\":1,\"title\":\"test\"}}");
+			}
+		});
+		server.start();
+		GitHubHttpTransport transport = new GitHubHttpTransport();
+		final GitHubService service = new GitHubService(server.getUrl()
+				+ "api/v2/json/", transport, new GitHubRateLimiter());
+		final GitHubCredentials credentials = new GitHubCredentials("user",
+				"token");
+		ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<GitHubIssue>> results = new ArrayList<Future<GitHubIssue>>();
+			for (int i = 0; i < CALLERS; i++) {
+				results.add(executor.submit(new Callable<GitHubIssue>() {
+					public GitHubIssue call() throws Exception {
+						return service.showIssue("user", "repo", "1",
+								credentials);
+					}
+				}));
+			}
+			GitHubSingleFlight singleFlight = service.getSingleFlight();
+			long deadline = System.currentTimeMillis() + 10000;
+			while (singleFlight.getExecutedCount()
+					+ singleFlight.getCoalescedCount() < CALLERS
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			GitHubIssue first = results.get(0).get();
+			for (Future<GitHubIssue> result : results) {
+				assertSame(first, result.get());
+			}
+			assertEquals(1, server.getRequestCount());
+			assertEquals(1, singleFlight.getExecutedCount());
+			assertEquals(CALLERS - 1, singleFlight.getCoalescedCount());
+		} finally {
+			executor.shutdownNow();
+			transport.shutdown();
+			server.stop();
+		}
+	}
+
+	@Test
+	public void failureIsShared() throws Exception {
+		final GitHubSingleFlight singleFlight = new GitHubSingleFlight();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Object> first = executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					return singleFlight.execute("key", new Callable<Object>() {
+						public Object call() throws Exception {
+							started.countDown();
+							release.await(10, TimeUnit.SECONDS);
+							throw new IllegalStateException("failed");
+						}
+					});
+				}
+			});
+			started.await(10, TimeUnit.SECONDS);
+			Future<Object> second = executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					return singleFlight.execute("key", new Callable<Object>() {
+						public Object call() {
+							return "not executed";
+						}
+					});
+				}
+			});
+			while (singleFlight.getCoalescedCount() == 0) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			assertFailed(first);
+			assertFailed(second);
+			assertEquals(1, singleFlight.getExecutedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void assertFailed(Future<Object> result) throws Exception {
+		try {
+			result.get();
+			fail("expected failure");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
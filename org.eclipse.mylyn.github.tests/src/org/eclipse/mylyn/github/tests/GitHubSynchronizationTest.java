@@ -0,0 +1,135 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.internal.tasks.core.TaskTask;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationSession;
+import org.eclipse.mylyn.tasks.core.ITask;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs synchronizations of {@link GitHubRepositoryConnector} against the
+ * local {@link GitHubApiStub}.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubSynchronizationTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private GitHubApiStub api;
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubRepositoryConnector connector;
+	private TaskRepository repository;
+	private Set<ITask> tasks;
+
+	@Before
+	public void beforeTest() throws Exception {
+		api = new GitHubApiStub(USER, "token", USER, PROJECT).generate(5, 3, 2);
+		server = new StubHttpServer(api);
+		server.start();
+		transport = new GitHubHttpTransport();
+		connector = new GitHubRepositoryConnector(new GitHubService(server
+				.getUrl()
+				+ GitHubApiStub.API_PATH, transport, new GitHubRateLimiter()),
+				null);
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, api
+				.getRepositoryUrl());
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(USER, "token"), false);
+		tasks = new HashSet<ITask>();
+		for (int number = 1; number <= 8; number++) {
+			tasks.add(new TaskTask(GitHub.CONNECTOR_KIND, repository
+					.getRepositoryUrl(), Integer.toString(number)));
+		}
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+	}
+
+	/**
+	 * run the pre and post synchronization of a full synchronization
+	 */
+	private SynchronizationSession synchronize() throws Exception {
+		SynchronizationSession session = new SynchronizationSession();
+		session.setFullSynchronization(true);
+		session.setTaskRepository(repository);
+		session.setTasks(tasks);
+		connector.preSynchronization(session, new NullProgressMonitor());
+		connector.postSynchronization(session, new NullProgressMonitor());
+		return session;
+	}
+
+	private static Set<String> taskIds(Set<ITask> tasks) {
+		Set<String> ids = new HashSet<String>();
+		for (ITask task : tasks) {
+			ids.add(task.getTaskId());
+		}
+		return ids;
+	}
+
+	@Test
+	public void unchangedRepositoryNeedsNoQueries() throws Exception {
+		SynchronizationSession first = synchronize();
+		assertEquals(8, first.getStaleTasks().size());
+		assertTrue(first.needsPerformQueries());
+
+		SynchronizationSession second = synchronize();
+
+		assertTrue(second.getStaleTasks().isEmpty());
+		assertFalse(second.needsPerformQueries());
+	}
+
+	@Test
+	public void updatedIssueIsStale() throws Exception {
+		synchronize();
+		api.touch(3);
+
+		SynchronizationSession session = synchronize();
+
+		assertEquals(Collections.singleton("3"), taskIds(session
+				.getStaleTasks()));
+		assertTrue(session.needsPerformQueries());
+		assertTrue(synchronize().getStaleTasks().isEmpty());
+	}
+
+	@Test
+	public void issueUpdatedInWatermarkSecondIsStale() throws Exception {
+		synchronize();
+		api.touchLike(2, 8);
+
+		SynchronizationSession session = synchronize();
+
+		assertEquals(Collections.singleton("2"), taskIds(session
+				.getStaleTasks()));
+		assertTrue(session.needsPerformQueries());
+		assertTrue(synchronize().getStaleTasks().isEmpty());
+	}
+}
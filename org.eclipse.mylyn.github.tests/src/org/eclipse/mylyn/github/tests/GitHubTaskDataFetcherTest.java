@@ -0,0 +1,204 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.internal.GitHubTaskDataFetcher;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Handler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+import org.eclipse.mylyn.internal.tasks.core.sync.SynchronizationSession;
+import org.eclipse.mylyn.tasks.core.ITask;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs the {@link GitHubTaskDataFetcher} against the local
+ * {@link GitHubApiStub}.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubTaskDataFetcherTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private File directory;
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubService service;
+	private GitHubRepositoryConnector connector;
+	private TaskRepository repository;
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+
+	@Before
+	public void beforeTest() throws Exception {
+		directory = File.createTempFile("issues", "");
+		directory.delete();
+		final GitHubApiStub api = new GitHubApiStub(USER, "token", USER,
+				PROJECT).generate(5, 3, 2);
+		server = new StubHttpServer(new Handler() {
+			public Response handle(Request request) throws IOException {
+				int count = active.incrementAndGet();
+				int max = maxActive.get();
+				while (count > max && !maxActive.compareAndSet(max, count)) {
+					max = maxActive.get();
+				}
+				try {
+					return api.handle(request);
+				} finally {
+					active.decrementAndGet();
+				}
+			}
+		});
+		server.start();
+		transport = new GitHubHttpTransport();
+		service = new GitHubService(server.getUrl() + GitHubApiStub.API_PATH,
+				transport, new GitHubRateLimiter());
+		connector = new GitHubRepositoryConnector(service, directory);
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, api
+				.getRepositoryUrl());
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(USER, "token"), false);
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private IStatus fetch(List<String> received, String... taskIds) {
+		final List<String> ids = received;
+		return connector.getTaskDataFetcher().fetch(repository,
+				Arrays.asList(taskIds), new TaskDataCollector() {
+					@Override
+					public void accept(TaskData taskData) {
+						ids.add(taskData.getTaskId());
+					}
+				}, new NullProgressMonitor());
+	}
+
+	/**
+	 * start a full synchronization, which lists all issues
+	 */
+	private SynchronizationSession list() throws Exception {
+		SynchronizationSession session = new SynchronizationSession();
+		session.setFullSynchronization(true);
+		session.setTaskRepository(repository);
+		session.setTasks(Collections.<ITask> emptySet());
+		connector.preSynchronization(session, new NullProgressMonitor());
+		return session;
+	}
+
+	@Test
+	public void duplicateIdsAreFetchedOnce() throws Exception {
+		List<String> received = new ArrayList<String>();
+		IStatus status = fetch(received, "1", "2", "1", "3", "2");
+
+		assertTrue(status.isOK());
+		Collections.sort(received);
+		assertEquals(Arrays.asList("1", "2", "3"), received);
+		// issue and comments of each
+		assertEquals(6, server.getRequestCount());
+	}
+
+	@Test
+	public void requestsAreBoundedByFetchThreads() throws Exception {
+		repository.setProperty(GitHubTaskDataFetcher.PROPERTY_FETCH_THREADS,
+				"2");
+		List<String> received = new ArrayList<String>();
+		assertTrue(fetch(received, "1", "2", "3", "4", "5", "6").isOK());
+
+		assertEquals(6, received.size());
+		assertTrue(maxActive.get() <= 2);
+	}
+
+	@Test
+	public void listedIssuesOnlyNeedComments() throws Exception {
+		list();
+		server.resetCounters();
+
+		List<String> received = new ArrayList<String>();
+		assertTrue(fetch(received, "1", "2", "7").isOK());
+
+		assertEquals(3, received.size());
+		assertEquals(3, server.getRequestCount());
+	}
+
+	@Test
+	public void listedIssuesAreRequestedAfterSynchronization()
+			throws Exception {
+		connector.postSynchronization(list(), new NullProgressMonitor());
+		server.resetCounters();
+
+		List<String> received = new ArrayList<String>();
+		assertTrue(fetch(received, "1", "2", "7").isOK());
+
+		assertEquals(3, received.size());
+		assertEquals(6, server.getRequestCount());
+	}
+
+	@Test
+	public void storedIssuesAreDeliveredWithoutRequests() throws Exception {
+		fetch(new ArrayList<String>(), "1", "2");
+		list();
+		server.resetCounters();
+
+		List<String> received = new ArrayList<String>();
+		assertTrue(fetch(received, "2", "1").isOK());
+
+		assertEquals(Arrays.asList("2", "1"), received);
+		assertEquals(0, server.getRequestCount());
+	}
+
+	@Test
+	public void failedIssuesAreReported() throws Exception {
+		List<String> received = new ArrayList<String>();
+		IStatus status = fetch(received, "1", "99", "2");
+
+		assertFalse(status.isOK());
+		assertEquals(1, status.getChildren().length);
+		Collections.sort(received);
+		assertEquals(Arrays.asList("1", "2"), received);
+	}
+}
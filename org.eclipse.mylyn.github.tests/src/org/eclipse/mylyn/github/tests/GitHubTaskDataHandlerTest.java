@@ -0,0 +1,180 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.DateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubDateCodec;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.internal.GitHubTaskAttributes;
+import org.eclipse.mylyn.github.internal.GitHubTaskDataHandler;
+import org.eclipse.mylyn.github.internal.GitHubTaskOperation;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests the requests made by {@link GitHubTaskDataHandler#postTaskData}
+ * against the local {@link GitHubApiStub}.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubTaskDataHandlerTest {
+
+	private static final String USER = "eclipse-github-plugin";
+
+	private static final String PROJECT = "org.eclipse.mylyn.github.issues";
+
+	private static final GitHubCredentials CREDENTIALS = new GitHubCredentials(
+			USER, "token");
+
+	private StubHttpServer server;
+	private GitHubHttpTransport transport;
+	private GitHubService service;
+	private GitHubRepositoryConnector connector;
+	private TaskRepository repository;
+
+	@Before
+	public void beforeTest() throws Exception {
+		GitHubApiStub api = new GitHubApiStub(USER, "token", USER, PROJECT)
+				.generate(5, 3, 2);
+		server = new StubHttpServer(api);
+		server.start();
+		transport = new GitHubHttpTransport();
+		service = new GitHubService(server.getUrl() + GitHubApiStub.API_PATH,
+				transport, new GitHubRateLimiter());
+		connector = new GitHubRepositoryConnector(service, null);
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, api
+				.getRepositoryUrl());
+		repository.setCredentials(AuthenticationType.REPOSITORY,
+				new AuthenticationCredentials(USER, "token"), false);
+	}
+
+	@After
+	public void afterTest() {
+		transport.shutdown();
+		server.stop();
+	}
+
+	private TaskData taskData(String taskId) throws Exception {
+		TaskData taskData = connector.getTaskData(repository, taskId,
+				new NullProgressMonitor());
+		server.resetCounters();
+		return taskData;
+	}
+
+	/**
+	 * set the value and return the attribute with the old value
+	 */
+	private static TaskAttribute change(TaskData taskData, String id,
+			String value) {
+		TaskAttribute attribute = taskData.getRoot().getAttribute(id);
+		TaskAttribute old = new TaskData(taskData.getAttributeMapper(),
+				taskData.getConnectorKind(), taskData.getRepositoryUrl(),
+				taskData.getTaskId()).getRoot().createAttribute(id);
+		old.setValue(attribute.getValue());
+		attribute.setValue(value);
+		return old;
+	}
+
+	private void post(TaskData taskData, Set<TaskAttribute> oldAttributes)
+			throws Exception {
+		connector.getTaskDataHandler().postTaskData(repository, taskData,
+				oldAttributes, new NullProgressMonitor());
+		connector.getOutbox(repository).drain();
+	}
+
+	@Test
+	public void commentIsAddedWithoutEdit() throws Exception {
+		TaskData taskData = taskData("1");
+		Set<TaskAttribute> old = Collections.singleton(change(taskData,
+				GitHubTaskAttributes.NEWCOMMENT.getId(), "a comment"));
+
+		post(taskData, old);
+
+		assertEquals(1, server.getRequestCount());
+		assertEquals(1, connector.getInstrumentation().getSubmitCallCount());
+	}
+
+	@Test
+	public void stateIsChangedWithSingleEdit() throws Exception {
+		TaskData taskData = taskData("2");
+		Set<TaskAttribute> old = new HashSet<TaskAttribute>();
+		old.add(change(taskData, GitHubTaskAttributes.TITLE.getId(),
+				"new title"));
+		old.add(change(taskData, TaskAttribute.OPERATION,
+				GitHubTaskOperation.CLOSE.getId()));
+
+		post(taskData, old);
+
+		assertEquals(2, server.getRequestCount());
+		assertEquals("closed", service.showIssue(USER, PROJECT, "2",
+				CREDENTIALS).getState());
+		assertEquals("new title", service.showIssue(USER, PROJECT, "2",
+				CREDENTIALS).getTitle());
+		assertEquals(2, connector.getInstrumentation().getSubmitCallCount());
+	}
+
+	@Test
+	public void stateIsChangedWithoutEdit() throws Exception {
+		TaskData taskData = taskData("3");
+		Set<TaskAttribute> old = Collections.singleton(change(taskData,
+				TaskAttribute.OPERATION, GitHubTaskOperation.CLOSE.getId()));
+
+		post(taskData, old);
+
+		assertEquals(1, server.getRequestCount());
+		assertEquals("closed", service.showIssue(USER, PROJECT, "3",
+				CREDENTIALS).getState());
+	}
+
+	@Test
+	public void datesOfVersionOneAreMigrated() throws Exception {
+		TaskData taskData = taskData("1");
+		long time = GitHubDateCodec.parse("2010/02/04 21:03:54 -0800");
+		taskData.setVersion("1");
+		taskData.getRoot().getAttribute(
+				GitHubTaskAttributes.CREATION_DATE.getId()).setValue(
+				"2010/02/04 21:03:54 -0800");
+		taskData.getRoot().getAttribute(
+				GitHubTaskAttributes.MODIFICATION_DATE.getId()).setValue(
+				DateFormat.getDateTimeInstance().format(new Date(time)));
+
+		connector.getTaskDataHandler().migrateTaskData(repository, taskData);
+
+		assertEquals("2", taskData.getVersion());
+		assertEquals(Long.toString(time), taskData.getRoot().getAttribute(
+				GitHubTaskAttributes.CREATION_DATE.getId()).getValue());
+		assertEquals(Long.toString(time), taskData.getRoot().getAttribute(
+				GitHubTaskAttributes.MODIFICATION_DATE.getId()).getValue());
+	}
+
+	@Test
+	public void unknownChangesAreEdited() throws Exception {
+		TaskData taskData = taskData("4");
+
+		post(taskData, null);
+
+		assertEquals(1, server.getRequestCount());
+		assertEquals(1, connector.getInstrumentation().getSubmitCount());
+	}
+}
@@ -0,0 +1,135 @@
+package org.eclipse.mylyn.github.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubIssue;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.internal.GitHubTaskAttributes;
+import org.eclipse.mylyn.github.internal.GitHubTaskDataHandler;
+import org.eclipse.mylyn.github.internal.GitHubTaskOperation;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskAttribute;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests the task data {@link GitHubTaskDataHandler} builds from its
+ * attribute and operation templates.
+ */
+@SuppressWarnings("restriction")
+@RunWith(JUnit4.class)
+public class GitHubTaskDataTemplatesTest {
+
+	private GitHubTaskDataHandler handler;
+	private TaskRepository repository;
+
+	@Before
+	public void beforeTest() {
+		handler = new GitHubRepositoryConnector(new GitHubService(), null)
+				.getTaskDataHandler();
+		repository = new TaskRepository(GitHub.CONNECTOR_KIND, GitHub
+				.createGitHubUrl("user", "project"));
+	}
+
+	private TaskData taskData(String state) {
+		GitHubIssue issue = new GitHubIssue("7", "user", "title", "body");
+		issue.setState(state);
+		return handler.createTaskData(repository, new NullProgressMonitor(),
+				"user", "project", issue, Collections
+						.<GitHubComment> emptyList());
+	}
+
+	private static String operationLabel(TaskData data,
+			GitHubTaskOperation operation) {
+		TaskAttribute attribute = data.getRoot().getAttribute(
+				TaskAttribute.PREFIX_OPERATION + operation.getId());
+		return attribute == null ? null : attribute.getMetaData().getLabel();
+	}
+
+	@Test
+	public void attributesHaveMetaDataAndValues() {
+		TaskData data = taskData("open");
+
+		for (GitHubTaskAttributes attribute : GitHubTaskAttributes.values()) {
+			TaskAttribute taskAttribute = data.getRoot().getAttribute(
+					attribute.getId());
+			assertNotNull(attribute.name(), taskAttribute);
+			assertEquals(attribute.getLabel(), taskAttribute.getMetaData()
+					.getLabel());
+			assertEquals(attribute.getType(), taskAttribute.getMetaData()
+					.getType());
+			assertEquals(attribute.isReadOnly(), taskAttribute.getMetaData()
+					.isReadOnly());
+		}
+		assertEquals("title", data.getRoot().getAttribute(
+				GitHubTaskAttributes.TITLE.getId()).getValue());
+		assertFalse(data.isPartial());
+	}
+
+	@Test
+	public void copiesAreIndependent() {
+		TaskData first = taskData("open");
+		first.getRoot().getAttribute(GitHubTaskAttributes.TITLE.getId())
+				.getMetaData().setLabel("changed");
+		first.getRoot().getAttribute(TaskAttribute.OPERATION).setValue(
+				GitHubTaskOperation.CLOSE.getId());
+
+		TaskData second = taskData("open");
+
+		assertEquals(GitHubTaskAttributes.TITLE.getLabel(), second.getRoot()
+				.getAttribute(GitHubTaskAttributes.TITLE.getId()).getMetaData()
+				.getLabel());
+		assertEquals(GitHubTaskOperation.LEAVE.getId(), second.getRoot()
+				.getAttribute(TaskAttribute.OPERATION).getValue());
+	}
+
+	@Test
+	public void operationsDependOnState() {
+		TaskData open = taskData("open");
+		assertEquals("Leave as open", operationLabel(open,
+				GitHubTaskOperation.LEAVE));
+		assertNotNull(operationLabel(open, GitHubTaskOperation.CLOSE));
+		assertNull(operationLabel(open, GitHubTaskOperation.REOPEN));
+
+		TaskData closed = taskData("closed");
+		assertEquals("Leave as closed", operationLabel(closed,
+				GitHubTaskOperation.LEAVE));
+		assertNotNull(operationLabel(closed, GitHubTaskOperation.REOPEN));
+		assertNull(operationLabel(closed, GitHubTaskOperation.CLOSE));
+	}
+
+	@Test
+	public void unknownStateCanOnlyBeLeft() {
+		TaskData data = taskData("locked");
+
+		assertEquals("Leave as locked", operationLabel(data,
+				GitHubTaskOperation.LEAVE));
+		assertEquals(GitHubTaskOperation.LEAVE.getId(), data.getRoot()
+				.getAttribute(TaskAttribute.OPERATION).getValue());
+		assertNull(operationLabel(data, GitHubTaskOperation.CLOSE));
+		assertNull(operationLabel(data, GitHubTaskOperation.REOPEN));
+	}
+
+	@Test
+	public void issueWithoutStateHasNoOperations() {
+		TaskData data = taskData(null);
+
+		assertNotNull(data.getRoot().getAttribute(TaskAttribute.OPERATION));
+		assertNull(operationLabel(data, GitHubTaskOperation.LEAVE));
+		assertTrue(data.getRoot().getAttribute(TaskAttribute.OPERATION)
+				.getValue().length() == 0);
+	}
+}
@@ -3,14 +3,20 @@ package org.eclipse.mylyn.github.tests;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 
+import org.eclipse.mylyn.github.internal.GitHubComment;
+import org.eclipse.mylyn.github.internal.GitHubComments;
 import org.eclipse.mylyn.github.internal.GitHubIssue;
 import org.eclipse.mylyn.github.internal.GitHubIssues;
+import org.eclipse.mylyn.github.internal.GitHubJsonDecoder;
+import org.eclipse.mylyn.github.internal.GitHubShowIssue;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -52,6 +58,75 @@ public class MarshalingTest {
 		assertEquals("open",issue.getState());
 	}
 
+	@Test
+	public void decodeIssues() throws Exception {
+		String json = getResource("resources/issues.json");
+		GitHubIssue[] expected = gson.fromJson(json, GitHubIssues.class)
+				.getIssues();
+		GitHubIssue[] issues = GitHubJsonDecoder.decodeIssues(
+				new StringReader(json)).getIssues();
+
+		assertEquals(expected.length, issues.length);
+		for (int i = 0; i < issues.length; i++) {
+			assertEquals(expected[i].getNumber(), issues[i].getNumber());
+			assertEquals(expected[i].getTitle(), issues[i].getTitle());
+			assertEquals(expected[i].getBody(), issues[i].getBody());
+			assertEquals(expected[i].getUser(), issues[i].getUser());
+			assertEquals(expected[i].getState(), issues[i].getState());
+			assertEquals(expected[i].getCreated_at(), issues[i]
+					.getCreated_at());
+			assertEquals(expected[i].getUpdated_at(), issues[i]
+					.getUpdated_at());
+			assertEquals(expected[i].getClosed_at(), issues[i].getClosed_at());
+		}
+	}
+
+	@Test
+	public void decodeComments() throws Exception {
+		String json = "{\"comments\":[{\"gravatar_id\":\"abc\",\"id\":42,"
+				+ "\"nested\":{\"a\":[1,{\"b\":\"}\"}]},"
+				+ "\"body\":\"line\\none \\\"quoted\\\" \\u00e9\","
+				+ "\"user\":\"dgreen99\",\"created_at\":null}]}";
+		GitHubComment[] comments = GitHubJsonDecoder.decodeComments(
+				new StringReader(json)).getComments();
+
+		assertEquals(1, comments.length);
+		assertEquals("42", comments[0].getId());
+		assertEquals("line\none \"quoted\" \u00e9", comments[0].getBody());
+		assertEquals("dgreen99", comments[0].getUser());
+		assertNull(comments[0].getCreated_at());
+	}
+
+	@Test
+	public void decodeShowIssue() throws Exception {
+		String json = "{\"issue\":{\"number\":7,\"labels\":[\"bug\",\"ui\"],"
+				+ "\"title\":\"client enum support\",\"state\":\"closed\","
+				+ "\"closed_at\":\"2010/02/04 21:09:37 -0800\"},\"extra\":true}";
+		GitHubIssue issue = GitHubJsonDecoder.decodeShowIssue(
+				new StringReader(json)).getIssue();
+
+		assertEquals("7", issue.getNumber());
+		assertEquals("client enum support", issue.getTitle());
+		assertEquals("closed", issue.getState());
+		assertEquals("2010/02/04 21:09:37 -0800", issue.getClosed_at());
+
+		GitHubShowIssue empty = GitHubJsonDecoder
+				.decodeShowIssue(new StringReader(""));
+		assertNull(empty.getIssue());
+	}
+
+	@Test
+	public void decodedUsersAndStatesAreShared() throws Exception {
+		GitHubIssue[] issues = GitHubJsonDecoder.decodeIssues(
+				new StringReader(getResource("resources/issues.json")))
+				.getIssues();
+
+		for (GitHubIssue issue : issues) {
+			assertSame(issues[0].getUser(), issue.getUser());
+			assertSame(issues[0].getState(), issue.getState());
+		}
+	}
+
 	private String getResource(String resource) {
 		try {
 			InputStream stream = MarshalingTest.class
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.tests.benchmarks;
+
+import java.io.IOException;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+
+/**
+ * Compares requests/sec of a new {@link HttpClient} per request (the former
+ * behaviour of GitHubService) with the pooled {@link GitHubHttpTransport}
+ * against a local stub server.
+ * <p>
+ * Usage: <code>HttpTransportBenchmark [requests]</code>
+ */
+public class HttpTransportBenchmark {
+
+	private static final String BODY = "{\"issue\":{\"number\":1,\"title\":\"benchmark\",\"body\":\"\",\"state\":\"open\"}}";
+
+	public static void main(String[] args) throws Exception {
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+		StubHttpServer server = new StubHttpServer(
+				new StubHttpServer.Handler() {
+					public Response handle(Request request) {
+						return new Response(200, BODY);
+					}
+				});
+		server.start();
+		try {
+			String url = server.getUrl() + "issues/show/user/repo/1";
+
+			// warm up both paths
+			runUnpooled(url, requests / 10);
+			runPooled(url, requests / 10);
+
+			server.resetCounters();
+			long unpooled = runUnpooled(url, requests);
+			report("new HttpClient per request", requests, unpooled, server
+					.getConnectionCount());
+
+			server.resetCounters();
+			long pooled = runPooled(url, requests);
+			report("GitHubHttpTransport", requests, pooled, server
+					.getConnectionCount());
+		} finally {
+			server.stop();
+		}
+	}
+
+	private static long runUnpooled(String url, int requests)
+			throws IOException {
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			PostMethod method = new PostMethod(url);
+			try {
+				new HttpClient().executeMethod(method);
+				method.getResponseBody();
+			} finally {
+				method.releaseConnection();
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long runPooled(String url, int requests) throws Exception {
+		GitHubHttpTransport transport = new GitHubHttpTransport();
+		try {
+			long start = System.nanoTime();
+			for (int i = 0; i < requests; i++) {
+				PostMethod method = new PostMethod(url);
+				try {
+					transport.execute(method);
+					method.getResponseBody();
+				} finally {
+					method.releaseConnection();
+				}
+			}
+			return System.nanoTime() - start;
+		} finally {
+			transport.shutdown();
+		}
+	}
+
+	private static void report(String name, int requests, long nanos,
+			int connections) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format(
+				"%-28s %8.0f requests/sec  (%d requests, %d connections)",
+				name, requests / seconds, requests, connections));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.tests.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
+import org.eclipse.mylyn.commons.net.AuthenticationType;
+import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.github.internal.GitHubHttpTransport;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
+import org.eclipse.mylyn.github.internal.GitHubService;
+import org.eclipse.mylyn.github.tests.stub.GitHubApiStub;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer;
+import org.eclipse.mylyn.internal.tasks.core.RepositoryQuery;
+import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.core.data.TaskData;
+import org.eclipse.mylyn.tasks.core.data.TaskDataCollector;
+
+/**
+ * End-to-end synchronization of a generated repository served by the local
+ * {@link GitHubApiStub}: a query for all issues followed by retrieving the
+ * full task data of every issue, as done for a new task list. Reports wall
+ * time, requests and response bytes of a cold sync, a sync without changes
+ * and a sync after 1% of the issues have changed.
+ * <p>
+ * Usage: <code>SyncBenchmark [openIssues] [closedIssues] [commentsPerIssue]</code>
+ */
+@SuppressWarnings("restriction")
+public class SyncBenchmark {
+
+	private static final String USER = "benchmark";
+
+	private static final String PROJECT = "project";
+
+	public static void main(String[] args) throws Exception {
+		int open = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int closed = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int comments = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		GitHubApiStub api = new GitHubApiStub(USER, "token", USER, PROJECT)
+				.generate(open, closed, comments);
+		StubHttpServer server = new StubHttpServer(api);
+		server.start();
+		GitHubHttpTransport transport = new GitHubHttpTransport();
+		try {
+			// the stub does not enforce the API rate limit
+			GitHubService service = new GitHubService(server.getUrl()
+					+ GitHubApiStub.API_PATH, transport, new GitHubRateLimiter(
+					Integer.MAX_VALUE, 1000));
+			GitHubRepositoryConnector connector = new GitHubRepositoryConnector(
+					service, null);
+			TaskRepository repository = new TaskRepository(
+					GitHub.CONNECTOR_KIND, api.getRepositoryUrl());
+			repository.setCredentials(AuthenticationType.REPOSITORY,
+					new AuthenticationCredentials(USER, "token"), false);
+
+			System.out.println(String.format(
+					"%d open and %d closed issues with %d comments each", open,
+					closed, comments));
+			server.resetCounters();
+			report("cold sync", sync(connector, repository), server);
+
+			server.resetCounters();
+			report("unchanged sync", sync(connector, repository), server);
+
+			for (int number = 1; number <= api.getIssueCount(); number += 100) {
+				api.touch(number);
+			}
+			server.resetCounters();
+			report("sync with 1% changed", sync(connector, repository), server);
+		} finally {
+			transport.shutdown();
+			server.stop();
+		}
+	}
+
+	/**
+	 * @return the wall time in nanoseconds
+	 */
+	private static long sync(GitHubRepositoryConnector connector,
+			TaskRepository repository) throws Exception {
+		long start = System.nanoTime();
+		RepositoryQuery query = new RepositoryQuery(GitHub.CONNECTOR_KIND,
+				"benchmark");
+		query.setAttribute("status", "all");
+		query.setAttribute("queryText", "");
+		final List<String> taskIds = new ArrayList<String>();
+		IStatus status = connector.performQuery(repository, query,
+				new TaskDataCollector() {
+					@Override
+					public void accept(TaskData taskData) {
+						taskIds.add(taskData.getTaskId());
+					}
+				}, null, new NullProgressMonitor());
+		if (!status.isOK()) {
+			throw new IllegalStateException(status.getMessage());
+		}
+		final int[] received = new int[1];
+		connector.getTaskDataHandler().getMultiTaskData(repository,
+				new HashSet<String>(taskIds),
+				new TaskDataCollector() {
+					@Override
+					public void accept(TaskData taskData) {
+						received[0]++;
+					}
+				}, new NullProgressMonitor());
+		if (received[0] != taskIds.size()) {
+			throw new IllegalStateException("received " + received[0]
+					+ " of " + taskIds.size() + " tasks");
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String name, long nanos, StubHttpServer server) {
+		System.out.println(String.format(
+				"%-22s %8.1f ms  %6d requests  %10d bytes", name, nanos / 1e6,
+				server.getRequestCount(), server.getBytesSent()));
+	}
+}
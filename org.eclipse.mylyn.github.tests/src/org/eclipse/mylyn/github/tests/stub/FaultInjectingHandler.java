@@ -0,0 +1,86 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.tests.stub;
+
+import java.io.IOException;
+import java.util.LinkedList;
+
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Handler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+
+/**
+ * Wraps a {@link Handler} and fails the next requests with a given status or
+ * by dropping the connection.
+ */
+public class FaultInjectingHandler implements Handler {
+
+	/**
+	 * fault that closes the connection without a response
+	 */
+	public static final int DROP_CONNECTION = -1;
+
+	private final Handler delegate;
+
+	private final LinkedList<Integer> faults = new LinkedList<Integer>();
+
+	private int permanentFault;
+
+	public FaultInjectingHandler(Handler delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Fail the next <code>count</code> requests.
+	 * 
+	 * @param status
+	 *            the status to respond with, or {@link #DROP_CONNECTION}
+	 */
+	public synchronized FaultInjectingHandler failNext(int count, int status) {
+		for (int i = 0; i < count; i++) {
+			faults.add(status);
+		}
+		return this;
+	}
+
+	/**
+	 * Fail all requests until {@link #reset()}.
+	 */
+	public synchronized FaultInjectingHandler failAll(int status) {
+		permanentFault = status;
+		return this;
+	}
+
+	public synchronized void reset() {
+		faults.clear();
+		permanentFault = 0;
+	}
+
+	public Response handle(Request request) throws IOException {
+		int fault;
+		synchronized (this) {
+			fault = faults.isEmpty() ? permanentFault : faults.removeFirst();
+		}
+		if (fault == DROP_CONNECTION) {
+			throw new IOException("connection dropped");
+		}
+		if (fault != 0) {
+			return new Response(fault, "{\"error\":\"injected fault\"}");
+		}
+		return delegate.handle(request);
+	}
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.tests.stub;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Handler;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Request;
+import org.eclipse.mylyn.github.tests.stub.StubHttpServer.Response;
+
+/**
+ * In-process stub of the GitHub API v2 issue and user endpoints used by the
+ * connector, backed by generated issues and comments of a single repository.
+ * <p>
+ * List, search, show and comments responses carry an ETag and are answered
+ * with 304 Not Modified to matching conditional requests. Requests must carry
+ * the configured login and token.
+ *
+ * @see #generate(int, int, int)
+ */
+public class GitHubApiStub implements Handler {
+
+	/**
+	 * Path of the API below the server URL.
+	 */
+	public static final String API_PATH = "api/v2/json/";
+
+	private static final String[] WORDS = { "editor", "sync", "query",
+			"repository", "task", "comment", "label", "crash", "slow",
+			"connector", "attribute", "proxy", "token", "hyperlink", "update",
+			"release", "build", "error", "window", "commit" };
+
+	private static final long BASE_TIME = 1265346234000L; // 2010/02/04
+
+	private static class Issue {
+		int number;
+		String title;
+		String body;
+		String user;
+		String state;
+		long createdAt;
+		long updatedAt;
+		long closedAt;
+		final Set<String> labels = new LinkedHashSet<String>();
+		final List<Comment> comments = new ArrayList<Comment>();
+	}
+
+	private static class Comment {
+		int id;
+		String body;
+		String user;
+		long createdAt;
+	}
+
+	private final String login;
+	private final String token;
+	private final String user;
+	private final String repo;
+
+	private final Map<Integer, Issue> issues = new TreeMap<Integer, Issue>();
+	private int nextNumber = 1;
+	private int nextCommentId = 1;
+	private final Random random = new Random(42);
+
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat(
+			"yyyy/MM/dd HH:mm:ss Z", Locale.US);
+
+	public GitHubApiStub(String login, String token, String user, String repo) {
+		this.login = login;
+		this.token = token;
+		this.user = user;
+		this.repo = repo;
+		dateFormat.setTimeZone(TimeZone.getTimeZone("GMT-08:00"));
+	}
+
+	/**
+	 * Add generated issues, each with the given number of comments. The
+	 * generated content only depends on the order of calls.
+	 */
+	public synchronized GitHubApiStub generate(int openIssues,
+			int closedIssues, int commentsPerIssue) {
+		for (int i = 0; i < openIssues + closedIssues; i++) {
+			Issue issue = new Issue();
+			issue.number = nextNumber++;
+			issue.title = sentence(6);
+			issue.body = sentence(40);
+			issue.user = "user" + random.nextInt(20);
+			issue.createdAt = BASE_TIME + issue.number * 3600000L;
+			issue.updatedAt = issue.createdAt;
+			issue.state = i < openIssues ? "open" : "closed";
+			if (random.nextInt(3) == 0) {
+				issue.labels.add(WORDS[random.nextInt(WORDS.length)]);
+			}
+			for (int c = 0; c < commentsPerIssue; c++) {
+				Comment comment = new Comment();
+				comment.id = nextCommentId++;
+				comment.body = sentence(25);
+				comment.user = "user" + random.nextInt(20);
+				comment.createdAt = issue.createdAt + (c + 1) * 60000L;
+				issue.comments.add(comment);
+				issue.updatedAt = comment.createdAt;
+			}
+			if (issue.state.equals("closed")) {
+				issue.closedAt = issue.updatedAt;
+			}
+			issues.put(issue.number, issue);
+		}
+		return this;
+	}
+
+	/**
+	 * Change an issue the way a user on the web site would, which updates its
+	 * modification date.
+	 */
+	public synchronized void touch(int number) {
+		Issue issue = issues.get(number);
+		issue.body = issue.body + " (edited)";
+		issue.updatedAt = Math.max(System.currentTimeMillis(),
+				issue.updatedAt + 1000);
+	}
+
+	/**
+	 * Change an issue within the same second as another issue was last
+	 * changed, which GitHub does not tell apart.
+	 */
+	public synchronized void touchLike(int number, int other) {
+		Issue issue = issues.get(number);
+		issue.body = issue.body + " (edited)";
+		issue.updatedAt = issues.get(other).updatedAt;
+	}
+
+	public synchronized int getIssueCount() {
+		return issues.size();
+	}
+
+	/**
+	 * @return the repository URL to configure a task repository with
+	 */
+	public String getRepositoryUrl() {
+		return "http://github.com/" + user + "/" + repo;
+	}
+
+	public Response handle(Request request) throws IOException {
+		String path = request.getPath();
+		int apiIndex = path.indexOf(API_PATH);
+		if (apiIndex == -1) {
+			return error(404, "Not Found");
+		}
+		String[] segments = split(path.substring(apiIndex + API_PATH.length()));
+		Map<String, String> form = parseForm(request.getBody());
+		if (!login.equals(form.get("login")) || !token.equals(form.get("token"))) {
+			return error(401, "not authorized");
+		}
+
+		synchronized (this) {
+			if (segments.length == 2 && segments[0].equals("user")
+					&& segments[1].equals("emails")) {
+				return json(request, "{\"emails\":[\"" + login
+						+ "@example.com\"]}");
+			}
+			if (segments.length < 4 || !segments[0].equals("issues")) {
+				return error(404, "Not Found");
+			}
+			String action = segments[1];
+			int offset = 2;
+			if (action.equals("label")) {
+				action = "label/" + segments[2];
+				offset = 3;
+			}
+			if (segments.length < offset + 2
+					|| !segments[offset].equals(user)
+					|| !segments[offset + 1].equals(repo)) {
+				return error(404, "Repository not found");
+			}
+			String[] args = new String[segments.length - offset - 2];
+			System.arraycopy(segments, offset + 2, args, 0, args.length);
+			return dispatch(request, action, args, form);
+		}
+	}
+
+	private Response dispatch(Request request, String action, String[] args,
+			Map<String, String> form) {
+		if (action.equals("list") && args.length == 1) {
+			return json(request, issueList(args[0], null));
+		}
+		if (action.equals("search") && args.length >= 1) {
+			String term = args.length > 1 ? args[1] : "";
+			return json(request, issueList(args[0], term));
+		}
+		if (action.equals("open") && args.length == 0) {
+			Issue issue = new Issue();
+			issue.number = nextNumber++;
+			issue.title = value(form.get("title"));
+			issue.body = value(form.get("body"));
+			issue.user = login;
+			issue.state = "open";
+			issue.createdAt = System.currentTimeMillis();
+			issue.updatedAt = issue.createdAt;
+			issues.put(issue.number, issue);
+			return new Response(201, "{\"issue\":" + toJson(issue) + "}");
+		}
+
+		Issue issue = args.length > 0 ? issues.get(parseNumber(args[args
+				.length - 1])) : null;
+		if (issue == null) {
+			return error(404, "Issue not found");
+		}
+		long now = System.currentTimeMillis();
+		if (action.equals("show")) {
+			return json(request, "{\"issue\":" + toJson(issue) + "}");
+		}
+		if (action.equals("comments")) {
+			StringBuilder json = new StringBuilder("{\"comments\":[");
+			for (int i = 0; i < issue.comments.size(); i++) {
+				if (i > 0) {
+					json.append(',');
+				}
+				json.append(toJson(issue.comments.get(i)));
+			}
+			return json(request, json.append("]}").toString());
+		}
+		if (action.equals("edit")) {
+			if (form.containsKey("title")) {
+				issue.title = form.get("title");
+			}
+			if (form.containsKey("body")) {
+				issue.body = form.get("body");
+			}
+		} else if (action.equals("close")) {
+			issue.state = "closed";
+			issue.closedAt = now;
+		} else if (action.equals("reopen")) {
+			issue.state = "open";
+			issue.closedAt = 0;
+		} else if (action.equals("comment")) {
+			Comment comment = new Comment();
+			comment.id = nextCommentId++;
+			comment.body = value(form.get("comment"));
+			comment.user = login;
+			comment.createdAt = now;
+			issue.comments.add(comment);
+			issue.updatedAt = now;
+			return new Response(200, "{\"comment\":" + toJson(comment) + "}");
+		} else if (action.equals("label/add") && args.length == 2) {
+			issue.labels.add(args[0]);
+		} else if (action.equals("label/remove") && args.length == 2) {
+			issue.labels.remove(args[0]);
+		} else {
+			return error(404, "Not Found");
+		}
+		issue.updatedAt = Math.max(now, issue.updatedAt + 1000);
+		if (action.startsWith("label/")) {
+			return new Response(200, "{\"labels\":" + toJson(issue.labels)
+					+ "}");
+		}
+		return new Response(200, "{\"issue\":" + toJson(issue) + "}");
+	}
+
+	private String issueList(String state, String term) {
+		String needle = term == null ? null : term.toLowerCase();
+		StringBuilder json = new StringBuilder("{\"issues\":[");
+		boolean first = true;
+		for (Issue issue : issues.values()) {
+			if (!issue.state.equals(state)) {
+				continue;
+			}
+			if (needle != null
+					&& issue.title.toLowerCase().indexOf(needle) == -1
+					&& issue.body.toLowerCase().indexOf(needle) == -1) {
+				continue;
+			}
+			if (!first) {
+				json.append(',');
+			}
+			first = false;
+			json.append(toJson(issue));
+		}
+		return json.append("]}").toString();
+	}
+
+	/**
+	 * answer with the body, or with 304 if the client has it already
+	 */
+	private static Response json(Request request, String body) {
+		String etag = "\"" + Integer.toHexString(body.hashCode()) + "-"
+				+ body.length() + "\"";
+		if (etag.equals(request.getHeader("If-None-Match"))) {
+			return new Response(304, (byte[]) null).setHeader("ETag", etag);
+		}
+		return new Response(200, body).setHeader("ETag", etag);
+	}
+
+	private static Response error(int status, String message) {
+		return new Response(status, "{\"error\":" + quote(message) + "}");
+	}
+
+	private String toJson(Issue issue) {
+		StringBuilder json = new StringBuilder(256 + issue.body.length());
+		json.append("{\"number\":").append(issue.number);
+		json.append(",\"votes\":0");
+		json.append(",\"created_at\":").append(quote(format(issue.createdAt)));
+		json.append(",\"body\":").append(quote(issue.body));
+		json.append(",\"title\":").append(quote(issue.title));
+		json.append(",\"updated_at\":").append(quote(format(issue.updatedAt)));
+		json.append(",\"closed_at\":").append(
+				issue.closedAt == 0 ? "null" : quote(format(issue.closedAt)));
+		json.append(",\"user\":").append(quote(issue.user));
+		json.append(",\"labels\":").append(toJson(issue.labels));
+		json.append(",\"state\":").append(quote(issue.state));
+		json.append(",\"position\":").append(issue.number).append(".0");
+		json.append(",\"gravatar_id\":\"").append(
+				Integer.toHexString(issue.user.hashCode())).append('"');
+		return json.append('}').toString();
+	}
+
+	private String toJson(Comment comment) {
+		StringBuilder json = new StringBuilder(192 + comment.body.length());
+		json.append("{\"gravatar_id\":\"").append(
+				Integer.toHexString(comment.user.hashCode())).append('"');
+		json.append(",\"created_at\":").append(
+				quote(format(comment.createdAt)));
+		json.append(",\"body\":").append(quote(comment.body));
+		json.append(",\"updated_at\":").append(
+				quote(format(comment.createdAt)));
+		json.append(",\"id\":").append(comment.id);
+		json.append(",\"user\":").append(quote(comment.user));
+		return json.append('}').toString();
+	}
+
+	private static String toJson(Set<String> labels) {
+		StringBuilder json = new StringBuilder("[");
+		for (String label : labels) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			json.append(quote(label));
+		}
+		return json.append(']').toString();
+	}
+
+	private String format(long time) {
+		return dateFormat.format(new Date(time));
+	}
+
+	private String sentence(int words) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				text.append(' ');
+			}
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return text.toString();
+	}
+
+	private static String quote(String value) {
+		StringBuilder json = new StringBuilder(value.length() + 2);
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	private static String value(String value) {
+		return value == null ? "" : value;
+	}
+
+	private static int parseNumber(String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static String[] split(String path) throws UnsupportedEncodingException {
+		int query = path.indexOf('?');
+		if (query != -1) {
+			path = path.substring(0, query);
+		}
+		String[] segments = path.split("/");
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = URLDecoder.decode(segments[i], "UTF-8");
+		}
+		return segments;
+	}
+
+	private static Map<String, String> parseForm(byte[] body)
+			throws UnsupportedEncodingException {
+		Map<String, String> form = new HashMap<String, String>();
+		if (body == null || body.length == 0) {
+			return form;
+		}
+		for (String pair : new String(body, "ISO-8859-1").split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				form.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+						URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+			}
+		}
+		return form;
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2009 Christian Trutz
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.eclipse.mylyn.github.tests.stub;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process HTTP/1.1 server with keep-alive support, used to run the
+ * connector against a local endpoint in tests and benchmarks.
+ */
+public class StubHttpServer {
+
+	/**
+	 * Produces the response for a request.
+	 */
+	public interface Handler {
+		Response handle(Request request) throws IOException;
+	}
+
+	public static class Request {
+		private final String method;
+		private final String path;
+		private final Map<String, String> headers;
+		private final byte[] body;
+
+		Request(String method, String path, Map<String, String> headers,
+				byte[] body) {
+			this.method = method;
+			this.path = path;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * @param name
+		 *            the header name, case insensitive
+		 */
+		public String getHeader(String name) {
+			return headers.get(name.toLowerCase());
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+	}
+
+	public static class Response {
+		private final int status;
+		private final Map<String, String> headers = new LinkedHashMap<String, String>();
+		private final byte[] body;
+
+		public Response(int status, byte[] body) {
+			this.status = status;
+			this.body = body == null ? new byte[0] : body;
+		}
+
+		public Response(int status, String body) {
+			this(status, toBytes(body));
+		}
+
+		public Response setHeader(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+	}
+
+	private final Handler handler;
+	private final ServerSocket serverSocket;
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private volatile boolean running;
+
+	public StubHttpServer(Handler handler) throws IOException {
+		this.handler = handler;
+		serverSocket = new ServerSocket(0, 50, InetAddress
+				.getByName("127.0.0.1"));
+	}
+
+	public void start() {
+		running = true;
+		Thread acceptor = new Thread("StubHttpServer-" + getPort()) {
+			@Override
+			public void run() {
+				while (running) {
+					try {
+						final Socket socket = serverSocket.accept();
+						connectionCount.incrementAndGet();
+						Thread worker = new Thread("StubHttpServer-connection") {
+							@Override
+							public void run() {
+								serve(socket);
+							}
+						};
+						worker.setDaemon(true);
+						worker.start();
+					} catch (IOException e) {
+						// closed
+					}
+				}
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public void stop() {
+		running = false;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return the base URL of this server, ending with a slash
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + getPort() + "/";
+	}
+
+	/**
+	 * @return the number of TCP connections accepted so far
+	 */
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	/**
+	 * @return the number of requests served so far
+	 */
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the number of response body bytes sent so far
+	 */
+	public long getBytesSent() {
+		return bytesSent.get();
+	}
+
+	public void resetCounters() {
+		connectionCount.set(0);
+		requestCount.set(0);
+		bytesSent.set(0);
+	}
+
+	private void serve(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = socket.getOutputStream();
+			boolean keepAlive = true;
+			while (keepAlive && running) {
+				String requestLine = readLine(in);
+				if (requestLine == null) {
+					break;
+				}
+				if (requestLine.length() == 0) {
+					continue;
+				}
+				String[] parts = requestLine.split(" ");
+				Map<String, String> headers = new HashMap<String, String>();
+				String line;
+				while ((line = readLine(in)) != null && line.length() > 0) {
+					int colon = line.indexOf(':');
+					if (colon > 0) {
+						headers.put(line.substring(0, colon).trim()
+								.toLowerCase(), line.substring(colon + 1)
+								.trim());
+					}
+				}
+				byte[] body = readBody(in, headers.get("content-length"));
+				keepAlive = !"close".equalsIgnoreCase(headers.get("connection"))
+						&& parts.length > 2 && parts[2].equals("HTTP/1.1");
+
+				requestCount.incrementAndGet();
+				Response response;
+				try {
+					response = handler.handle(new Request(parts[0],
+							parts.length > 1 ? parts[1] : "/", headers, body));
+				} catch (RuntimeException e) {
+					response = new Response(500, String.valueOf(e));
+				}
+				write(out, response, keepAlive);
+			}
+		} catch (SocketException e) {
+			// client went away
+		} catch (IOException e) {
+			// client went away
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private void write(OutputStream out, Response response, boolean keepAlive)
+			throws IOException {
+		StringBuilder head = new StringBuilder();
+		head.append("HTTP/1.1 ").append(response.status).append(' ').append(
+				reason(response.status)).append("\r\n");
+		for (Map.Entry<String, String> header : response.headers.entrySet()) {
+			head.append(header.getKey()).append(": ").append(header.getValue())
+					.append("\r\n");
+		}
+		if (!response.headers.containsKey("Content-Type")) {
+			head.append("Content-Type: application/json; charset=utf-8\r\n");
+		}
+		head.append("Content-Length: ").append(response.body.length).append(
+				"\r\n");
+		head.append("Connection: ").append(keepAlive ? "keep-alive" : "close")
+				.append("\r\n\r\n");
+		byte[] headBytes = toBytes(head.toString());
+		byte[] message = new byte[headBytes.length + response.body.length];
+		System.arraycopy(headBytes, 0, message, 0, headBytes.length);
+		System.arraycopy(response.body, 0, message, headBytes.length,
+				response.body.length);
+		out.write(message);
+		out.flush();
+		bytesSent.addAndGet(response.body.length);
+	}
+
+	private static String reason(int status) {
+		switch (status) {
+		case 200:
+			return "OK";
+		case 201:
+			return "Created";
+		case 304:
+			return "Not Modified";
+		case 401:
+			return "Unauthorized";
+		case 403:
+			return "Forbidden";
+		case 404:
+			return "Not Found";
+		case 503:
+			return "Service Unavailable";
+		default:
+			return "Status";
+		}
+	}
+
+	private static byte[] readBody(InputStream in, String contentLength)
+			throws IOException {
+		if (contentLength == null) {
+			return new byte[0];
+		}
+		int length = Integer.parseInt(contentLength);
+		byte[] body = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			int read = in.read(body, offset, length - offset);
+			if (read < 0) {
+				throw new IOException("unexpected end of request body");
+			}
+			offset += read;
+		}
+		return body;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int c;
+		while ((c = in.read()) != -1) {
+			if (c == '\n') {
+				break;
+			}
+			if (c != '\r') {
+				line.write(c);
+			}
+		}
+		if (c == -1 && line.size() == 0) {
+			return null;
+		}
+		return new String(line.toByteArray(), "ISO-8859-1");
+	}
+
+	static byte[] toBytes(String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -26,6 +26,8 @@ import org.eclipse.jface.text.hyperlink.IHyperlink;
 import org.eclipse.jface.text.hyperlink.URLHyperlink;
 import org.eclipse.jface.wizard.IWizard;
 import org.eclipse.mylyn.github.internal.GitHub;
+import org.eclipse.mylyn.tasks.core.AbstractRepositoryConnector;
+import org.eclipse.mylyn.tasks.core.IRepositoryListener;
 import org.eclipse.mylyn.tasks.core.IRepositoryQuery;
 import org.eclipse.mylyn.tasks.core.ITaskMapping;
 import org.eclipse.mylyn.tasks.core.TaskRepository;
@@ -47,6 +49,19 @@ public class GitHubRepositoryConnectorUI extends AbstractRepositoryConnectorUi {
 
 	private final Pattern issuePattern = Pattern.compile("(?:([a-zA-Z0-9_\\.-]+)(?:/([a-zA-Z0-9_\\.-]+))?)?\\#(\\d+)");
 	
+	/**
+	 * Registers the connector with the repository manager, so that it
+	 * notices changed repository settings.
+	 */
+	public GitHubRepositoryConnectorUI() {
+		AbstractRepositoryConnector connector = TasksUi
+				.getRepositoryConnector(GitHub.CONNECTOR_KIND);
+		if (connector instanceof IRepositoryListener) {
+			TasksUi.getRepositoryManager().addListener(
+					(IRepositoryListener) connector);
+		}
+	}
+
 	/**
 	 * 
 	 * 
@@ -111,6 +111,8 @@ public class GitHubRepositoryQueryPage extends AbstractRepositoryQueryPage {
 		GridData gridData = new GridData();
 		gridData.widthHint = 250;
 		queryText.setLayoutData(gridData);
+		queryText.setToolTipText("Words to search for, label:name and author:name to filter,\n"
+				+ "-label:name or NOT label:name to exclude, e.g. crash label:bug -label:wontfix");
 		String queryModelText = getQuery()==null?null:getQuery().getAttribute(ATTR_QUERY_TEXT);
 		queryText.setText(queryModelText==null?"":queryModelText);
 
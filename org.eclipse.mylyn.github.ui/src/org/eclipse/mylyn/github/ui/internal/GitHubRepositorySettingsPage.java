@@ -27,9 +27,12 @@ import org.eclipse.mylyn.commons.net.AuthenticationCredentials;
 import org.eclipse.mylyn.commons.net.AuthenticationType;
 import org.eclipse.mylyn.github.internal.GitHub;
 import org.eclipse.mylyn.github.internal.GitHubCredentials;
+import org.eclipse.mylyn.github.internal.GitHubRateLimiter.Budget;
+import org.eclipse.mylyn.github.internal.GitHubRepositoryConnector;
 import org.eclipse.mylyn.github.internal.GitHubService;
 import org.eclipse.mylyn.github.internal.GitHubServiceException;
 import org.eclipse.mylyn.tasks.core.TaskRepository;
+import org.eclipse.mylyn.tasks.ui.TasksUi;
 import org.eclipse.mylyn.tasks.ui.wizards.AbstractRepositorySettingsPage;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Composite;
@@ -119,7 +122,12 @@ public class GitHubRepositorySettingsPage extends
 					AuthenticationCredentials auth = repository
 							.getCredentials(AuthenticationType.REPOSITORY);
 
-					GitHubService service = new GitHubService();
+					// the connector's service, so that validating does not
+					// open another connection pool
+					GitHubService service = ((GitHubRepositoryConnector) TasksUi
+							.getRepositoryConnector(GitHub.CONNECTOR_KIND))
+							.getService();
+					GitHubCredentials credentials = null;
 
 					monitor.subTask("Contacting server...");
 					try {
@@ -129,8 +137,8 @@ public class GitHubRepositorySettingsPage extends
 									.createErrorStatus("Credentials are required.  Please specify username and API Token."));
 							return;
 						}
-						GitHubCredentials credentials = new GitHubCredentials(
-								auth.getUserName(), auth.getPassword());
+						credentials = new GitHubCredentials(auth.getUserName(),
+								auth.getPassword());
 						if (!service.verifyCredentials(credentials)) {
 							setStatus(GitHubUi
 									.createErrorStatus("Invalid credentials.  Please check your GitHub User ID and API Token.\nYou can find your API Token on your GitHub account settings page."));
@@ -149,8 +157,12 @@ public class GitHubRepositorySettingsPage extends
 						return;
 					}
 
+					Budget budget = service.getRateLimiter().getBudget(
+							credentials);
 					setStatus(new Status(IStatus.OK, GitHubUi.BUNDLE_ID,
-							"Success!"));
+							"Success! " + budget.getRemaining() + " of "
+									+ budget.getLimit()
+									+ " API requests remaining."));
 				} finally {
 					monitor.done();
 				}